@@ -0,0 +1,317 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.InputStream;
+import java.io.LineNumberReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.maiereni.sling.util.bean.ArtifactStatus;
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.DependencyTree;
+
+/**
+ * Verifies the jars of the bundles against the .sha1 or, when missing, the .md5 files next to them in the Maven 
+ * repository, to detect the corrupted or truncated downloads. The jars are hashed in parallel, on a number of threads 
+ * given by the JVM property verify.threads, each thread streaming the jars through its own buffer. The verified jars 
+ * are recorded in a cache file given by the JVM property verify.cache (~/.sling-utils-verified.csv by default), 
+ * with their size, last modified time and hash, so that the next runs only hash the jars which have changed 
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class ArtifactVerifier {
+	private static final Logger logger = LoggerFactory.getLogger(ArtifactVerifier.class);
+	public static final String VERIFY_THREADS = "verify.threads";
+	public static final String VERIFY_CACHE = "verify.cache";
+	private static final String[][] ALGORITHMS = new String[][] {{"sha1", "SHA-1"}, {"md5", "MD5"}};
+	private static final ThreadLocal<byte[]> buffer = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+	private Map<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+	private File cacheFile;
+	private int threads;
+	
+	public ArtifactVerifier() throws Exception {
+		this(new File(System.getProperty(VERIFY_CACHE, System.getProperty("user.home") + "/.sling-utils-verified.csv")));
+	}
+	
+	/**
+	 * Create a verifier with a cache file
+	 * @param cacheFile
+	 * @throws Exception
+	 */
+	public ArtifactVerifier(@Nonnull final File cacheFile) throws Exception {
+		this.cacheFile = cacheFile;
+		threads = SlingUtil.getThreads(VERIFY_THREADS);
+		if (cacheFile.exists()) {
+			try (FileReader fr = new FileReader(cacheFile)) {
+				LineNumberReader lnr = new LineNumberReader(fr);
+				String line = null;
+				while((line = lnr.readLine()) != null)
+					if (!readCacheEntry(line))
+						logger.debug("Skipped the malformed line " + lnr.getLineNumber() + " of " + cacheFile.getPath());
+			}
+			logger.debug("Loaded " + cache.size() + " verified artifacts from " + cacheFile.getPath());
+		}
+	}
+	
+	/**
+	 * Verify the jars of a list of bundles in parallel and save the cache
+	 * @param bundles
+	 * @return the outcome for each bundle which has a location, in the order of the bundles
+	 * @throws Exception
+	 */
+	public List<ArtifactStatus> verify(@Nonnull final List<Bundle> bundles) throws Exception {
+		List<ArtifactStatus> ret = new ArrayList<ArtifactStatus>();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<ArtifactStatus>> futures = new ArrayList<Future<ArtifactStatus>>();
+			for(final Bundle bundle: bundles) 
+				if (bundle.getLocation() != null)
+					futures.add(executor.submit(() -> verify(bundle)));
+			for(Future<ArtifactStatus> future: futures) 
+				ret.add(future.get());
+		}
+		finally {
+			executor.shutdown();
+		}
+		saveCache();
+		return ret;
+	}
+	
+	/**
+	 * Verify the jar of a bundle. The jar is not hashed if the cache holds the expected hash for its size and last modified time
+	 * @param bundle
+	 * @return
+	 * @throws Exception
+	 */
+	public ArtifactStatus verify(@Nonnull final Bundle bundle) throws Exception {
+		ArtifactStatus ret = new ArtifactStatus();
+		ret.setBundle(bundle);
+		File file = new File(bundle.getLocation());
+		if (!file.isFile()) {
+			ret.setStatus(ArtifactStatus.MISSING);
+			return ret;
+		}
+		String digestName = null;
+		for(String[] algorithm: ALGORITHMS) {
+			File fChecksum = new File(file.getPath() + "." + algorithm[0]);
+			if (fChecksum.isFile()) {
+				ret.setAlgorithm(algorithm[0]);
+				ret.setExpected(readChecksum(fChecksum));
+				digestName = algorithm[1];
+				break;
+			}
+		}
+		if (ret.getAlgorithm() == null) {
+			ret.setStatus(ArtifactStatus.NO_CHECKSUM);
+			return ret;
+		}
+		String key = file.getAbsolutePath();
+		CacheEntry entry = cache.get(key);
+		if (entry != null && entry.size == file.length() && entry.lastModified == file.lastModified() && 
+			entry.algorithm.equals(ret.getAlgorithm()) && entry.hash.equals(ret.getExpected())) {
+			ret.setActual(entry.hash);
+			ret.setCached(true);
+		}
+		else {
+			ret.setActual(hash(file, digestName));
+			if (ret.getActual().equals(ret.getExpected())) {
+				entry = new CacheEntry();
+				entry.size = file.length();
+				entry.lastModified = file.lastModified();
+				entry.algorithm = ret.getAlgorithm();
+				entry.hash = ret.getActual();
+				cache.put(key, entry);
+			}
+			else
+				cache.remove(key);
+		}
+		ret.setStatus(ret.getActual().equals(ret.getExpected()) ? ArtifactStatus.VERIFIED : ArtifactStatus.MISMATCH);
+		return ret;
+	}
+	
+	/**
+	 * Write the outcome of a verification to an XML file. The artifacts which are not verified are listed first
+	 * @param statuses
+	 * @param xmlFile
+	 * @throws Exception
+	 */
+	public void writeReport(@Nonnull final List<ArtifactStatus> statuses, @Nonnull final String xmlFile) throws Exception {
+		Document document = XmlSupport.newDocument();
+		Element root = document.createElement("artifacts");
+		document.appendChild(root);
+		int verified = 0, cached = 0;
+		List<Element> others = new ArrayList<Element>();
+		for(ArtifactStatus status: statuses) {
+			Element el = document.createElement("artifact");
+			el.setAttribute("name", status.getBundle().getName());
+			el.setAttribute("pos", "" + status.getBundle().getPos());
+			el.setAttribute("location", status.getBundle().getLocation());
+			el.setAttribute("status", status.getStatus());
+			if (status.getAlgorithm() != null) {
+				el.setAttribute("algorithm", status.getAlgorithm());
+				el.setAttribute("expected", status.getExpected());
+				el.setAttribute("actual", status.getActual());
+			}
+			if (status.getStatus().equals(ArtifactStatus.VERIFIED)) {
+				verified++;
+				if (status.isCached())
+					cached++;
+				others.add(el);
+			}
+			else
+				root.appendChild(el);
+		}
+		for(Element el: others)
+			root.appendChild(el);
+		root.setAttribute("count", "" + statuses.size());
+		root.setAttribute("verified", "" + verified);
+		root.setAttribute("cached", "" + cached);
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(xmlFile))) {
+			XmlSupport.write(document, os);
+		}
+	}
+	
+	private String hash(final File file, final String algorithm) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance(algorithm);
+		byte[] b = buffer.get();
+		try (InputStream is = new FileInputStream(file)) {
+			int n = 0;
+			while((n = is.read(b)) >= 0)
+				digest.update(b, 0, n);
+		}
+		StringBuilder sb = new StringBuilder();
+		for(byte d: digest.digest())
+			sb.append(Character.forDigit((d >> 4) & 0xF, 16)).append(Character.forDigit(d & 0xF, 16));
+		return sb.toString();
+	}
+	
+	/**
+	 * Read a checksum file. The file holds the hash, possibly followed by the name of the jar
+	 * @param file
+	 * @return
+	 * @throws Exception
+	 */
+	private String readChecksum(final File file) throws Exception {
+		String s = new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII).trim();
+		int ix = StringUtils.indexOfAny(s, ' ', '\t', '\r', '\n');
+		return (ix > 0 ? s.substring(0, ix) : s).toLowerCase();
+	}
+	
+	/**
+	 * Read a line of the cache file, path,size,last modified,algorithm,hash. The fields are taken from the end of the 
+	 * line, since the path may contain commas
+	 * @param line
+	 * @return false if the line is malformed
+	 */
+	private boolean readCacheEntry(final String line) {
+		String[] sp = new String[4];
+		int end = line.length();
+		for(int i=sp.length - 1; i>=0; i--) {
+			int ix = end > 0 ? line.lastIndexOf(',', end - 1) : -1;
+			if (ix < 0)
+				return false;
+			sp[i] = line.substring(ix + 1, end);
+			end = ix;
+		}
+		if (end == 0 || !StringUtils.isNumeric(sp[0]) || !StringUtils.isNumeric(sp[1]) || sp[2].isEmpty() || sp[3].isEmpty())
+			return false;
+		CacheEntry entry = new CacheEntry();
+		try {
+			entry.size = Long.parseLong(sp[0]);
+			entry.lastModified = Long.parseLong(sp[1]);
+		}
+		catch(NumberFormatException e) {
+			return false;
+		}
+		entry.algorithm = sp[2];
+		entry.hash = sp[3];
+		cache.put(line.substring(0, end), entry);
+		return true;
+	}
+	
+	private synchronized void saveCache() throws Exception {
+		File parent = cacheFile.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory())
+			parent.mkdirs();
+		File fTemp = new File(cacheFile.getPath() + ".tmp");
+		try (PrintWriter pw = new PrintWriter(new FileWriter(fTemp))) {
+			for(Map.Entry<String, CacheEntry> entry: cache.entrySet())
+				pw.println(entry.getKey() + "," + entry.getValue().size + "," + entry.getValue().lastModified + "," + 
+					entry.getValue().algorithm + "," + entry.getValue().hash);
+		}
+		Files.move(fTemp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	private static class CacheEntry {
+		private long size, lastModified;
+		private String algorithm, hash;
+	}
+	
+	/**
+	 * Run the tool with the arguments of the command line
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void execute(final String[] args) throws Exception {
+		SlingModelInterpreter interpreter = new SlingModelInterpreter();
+		DependencyTree tree = interpreter.getDependencyTree(args[0]);
+		List<Bundle> bundles = tree.getBundles();
+		ArtifactVerifier verifier = new ArtifactVerifier();
+		long start = System.currentTimeMillis();
+		List<ArtifactStatus> statuses = verifier.verify(bundles);
+		logger.debug("Verified " + statuses.size() + " artifacts in " + (System.currentTimeMillis() - start) + " ms");
+		verifier.writeReport(statuses, args[1]);
+	}
+
+	public static void main(final String[] args) {
+		try {
+			execute(args);
+		}
+		catch(Exception e) {
+			logger.error("The artifacts could not be verified", e);
+			System.exit(1);
+		}
+	}
+}
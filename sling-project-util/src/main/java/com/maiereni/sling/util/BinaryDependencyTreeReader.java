@@ -0,0 +1,167 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.BundleDependencies;
+import com.maiereni.sling.util.bean.DependencyTree;
+import com.maiereni.sling.util.bean.Dependent;
+import com.maiereni.sling.util.bean.PackageCollision;
+import com.maiereni.sling.util.bean.PackageExport;
+import com.maiereni.sling.util.bean.PackageUsage;
+
+/**
+ * Reads a dependency tree written by the BinaryDependencyTreeWriter
+ * @author Petre Maierean
+ *
+ */
+public class BinaryDependencyTreeReader {
+
+	public DependencyTree read(@Nonnull final InputStream is) throws Exception {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+		if (in.readInt() != BinaryDependencyTreeWriter.MAGIC)
+			throw new Exception("Not a binary dependency tree");
+		int version = in.readUnsignedByte();
+		if (version < 1 || version > BinaryDependencyTreeWriter.FORMAT_VERSION)
+			throw new Exception("Unsupported format version " + version);
+		List<String> strings = new ArrayList<String>();
+		DependencyTree ret = new DependencyTree();
+		ret.setFeatured(readBundles(in, strings, version));
+		ret.setExtra(readBundles(in, strings, version));
+		int count = readVarInt(in);
+		Map<String, Bundle> exports = new HashMap<String, Bundle>();
+		for(int i=0; i<count; i++) {
+			String key = readString(in, strings);
+			Bundle bundle = new Bundle();
+			bundle.setName(readString(in, strings));
+			bundle.setPos(readVarInt(in));
+			exports.put(key, bundle);
+		}
+		ret.setExports(exports);
+		if (version > 2) {
+			count = readVarInt(in);
+			List<PackageCollision> collisions = new ArrayList<PackageCollision>(count);
+			for(int i=0; i<count; i++) {
+				PackageCollision collision = new PackageCollision();
+				collision.setPackageName(readString(in, strings));
+				collision.setType(readString(in, strings));
+				int size = readVarInt(in);
+				List<PackageExport> exporters = new ArrayList<PackageExport>(size);
+				for(int j=0; j<size; j++) {
+					Bundle bundle = new Bundle();
+					bundle.setName(readString(in, strings));
+					bundle.setPos(readVarInt(in));
+					PackageExport export = new PackageExport();
+					export.setBundle(bundle);
+					export.setVersion(readString(in, strings));
+					exporters.add(export);
+				}
+				collision.setExporters(exporters);
+				collisions.add(collision);
+			}
+			ret.setCollisions(collisions);
+		}
+		return ret;
+	}
+	
+	private List<BundleDependencies> readBundles(final DataInputStream in, final List<String> strings, final int version) throws IOException {
+		int count = readVarInt(in);
+		List<BundleDependencies> ret = new ArrayList<BundleDependencies>(count);
+		for(int i=0; i<count; i++) {
+			Bundle bundle = new Bundle();
+			bundle.setName(readString(in, strings));
+			bundle.setPos(readVarInt(in));
+			bundle.setPkgName(readString(in, strings));
+			bundle.setArtifactId(readString(in, strings));
+			bundle.setGroupId(readString(in, strings));
+			bundle.setVersion(readString(in, strings));
+			bundle.setFeatureName(readString(in, strings));
+			int size = readVarInt(in);
+			List<Dependent> dependents = new ArrayList<Dependent>(size);
+			for(int j=0; j<size; j++) {
+				Dependent dependent = new Dependent();
+				dependent.setName(readString(in, strings));
+				dependent.setPos(readVarInt(in));
+				dependent.setTentative(in.readBoolean());
+				dependents.add(dependent);
+			}
+			size = readVarInt(in);
+			List<String> unresolved = new ArrayList<String>(size);
+			for(int j=0; j<size; j++)
+				unresolved.add(readString(in, strings));
+			List<String> unresolvedRequirements = version > 3 ? readStrings(in, strings) : new ArrayList<String>();
+			BundleDependencies dependencies = new BundleDependencies();
+			dependencies.setBundle(bundle);
+			dependencies.setDependents(dependents);
+			dependencies.setUnresolved(unresolved);
+			dependencies.setUnresolvedRequirements(unresolvedRequirements);
+			if (version > 1 && in.readBoolean()) {
+				PackageUsage usage = new PackageUsage();
+				usage.setUnusedImports(readStrings(in, strings));
+				usage.setHiddenDependencies(readStrings(in, strings));
+				dependencies.setUsage(usage);
+			}
+			ret.add(dependencies);
+		}
+		return ret;
+	}
+	
+	private List<String> readStrings(final DataInputStream in, final List<String> strings) throws IOException {
+		int size = readVarInt(in);
+		List<String> ret = new ArrayList<String>(size);
+		for(int i=0; i<size; i++)
+			ret.add(readString(in, strings));
+		return ret;
+	}
+	
+	private String readString(final DataInputStream in, final List<String> strings) throws IOException {
+		String ret = null;
+		int v = readVarInt(in);
+		if (v == BinaryDependencyTreeWriter.NEW_STRING) {
+			ret = in.readUTF();
+			strings.add(ret);
+		}
+		else if (v >= BinaryDependencyTreeWriter.STRING_REFERENCE)
+			ret = strings.get(v - BinaryDependencyTreeWriter.STRING_REFERENCE);
+		return ret;
+	}
+	
+	private int readVarInt(final DataInputStream in) throws IOException {
+		int ret = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = in.readUnsignedByte();
+			ret |= (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while((b & 0x80) != 0);
+		return ret;
+	}
+}
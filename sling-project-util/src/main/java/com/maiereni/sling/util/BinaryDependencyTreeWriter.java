@@ -0,0 +1,145 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.BundleDependencies;
+import com.maiereni.sling.util.bean.DependencyTree;
+import com.maiereni.sling.util.bean.Dependent;
+import com.maiereni.sling.util.bean.PackageCollision;
+import com.maiereni.sling.util.bean.PackageExport;
+
+/**
+ * Writes the dependency tree in a compact binary format. The stream starts with a magic number and a format version,
+ * followed by the featured bundles, the extra bundles and the exports, each list being prefixed by its size. 
+ * Numbers are written as variable length integers. A string is written in full the first time it occurs and 
+ * as a reference to its first occurrence afterwards, so that the names repeated across the dependents cost 
+ * one or two bytes. Since version 2 each bundle ends with a flag telling whether the package usage follows, 
+ * as the count of unused imports and hidden dependencies followed by the package names. Since version 3 the 
+ * exports are followed by the package collisions. Since version 4 the unresolved imports of a bundle
+ * are followed by its unresolved requirements. The format is read back by the BinaryDependencyTreeReader
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class BinaryDependencyTreeWriter implements DependencyTreeWriter {
+	public static final int MAGIC = 0x534C4454;
+	public static final int FORMAT_VERSION = 4;
+	static final int NULL_STRING = 0;
+	static final int NEW_STRING = 1;
+	static final int STRING_REFERENCE = 2;
+
+	@Override
+	public void write(@Nonnull final DependencyTree tree, @Nonnull final OutputStream os) throws Exception {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+		Map<String, Integer> strings = new HashMap<String, Integer>();
+		out.writeInt(MAGIC);
+		out.writeByte(FORMAT_VERSION);
+		writeBundles(out, strings, tree.getFeatured());
+		writeBundles(out, strings, tree.getExtra());
+		writeVarInt(out, tree.getExports().size());
+		for(Map.Entry<String, Bundle> entry: tree.getExports().entrySet()) {
+			writeString(out, strings, entry.getKey());
+			writeString(out, strings, entry.getValue().getName());
+			writeVarInt(out, entry.getValue().getPos());
+		}
+		List<PackageCollision> collisions = tree.getCollisions() != null ? tree.getCollisions() : Collections.<PackageCollision>emptyList();
+		writeVarInt(out, collisions.size());
+		for(PackageCollision collision: collisions) {
+			writeString(out, strings, collision.getPackageName());
+			writeString(out, strings, collision.getType());
+			writeVarInt(out, collision.getExporters().size());
+			for(PackageExport export: collision.getExporters()) {
+				writeString(out, strings, export.getBundle().getName());
+				writeVarInt(out, export.getBundle().getPos());
+				writeString(out, strings, export.getVersion());
+			}
+		}
+		out.flush();
+	}
+	
+	private void writeBundles(final DataOutputStream out, final Map<String, Integer> strings, final List<BundleDependencies> bundles) throws IOException {
+		writeVarInt(out, bundles.size());
+		for(BundleDependencies dependencies: bundles) {
+			Bundle bundle = dependencies.getBundle();
+			writeString(out, strings, bundle.getName());
+			writeVarInt(out, bundle.getPos());
+			writeString(out, strings, bundle.getPkgName());
+			writeString(out, strings, bundle.getArtifactId());
+			writeString(out, strings, bundle.getGroupId());
+			writeString(out, strings, bundle.getVersion());
+			writeString(out, strings, bundle.getFeatureName());
+			writeVarInt(out, dependencies.getDependents().size());
+			for(Dependent dependent: dependencies.getDependents()) {
+				writeString(out, strings, dependent.getName());
+				writeVarInt(out, dependent.getPos());
+				out.writeBoolean(dependent.isTentative());
+			}
+			writeVarInt(out, dependencies.getUnresolved().size());
+			for(String s: dependencies.getUnresolved())
+				writeString(out, strings, s);
+			writeStrings(out, strings, dependencies.getUnresolvedRequirements() != null ? dependencies.getUnresolvedRequirements() : Collections.<String>emptyList());
+			out.writeBoolean(dependencies.getUsage() != null);
+			if (dependencies.getUsage() != null) {
+				writeStrings(out, strings, dependencies.getUsage().getUnusedImports());
+				writeStrings(out, strings, dependencies.getUsage().getHiddenDependencies());
+			}
+		}
+	}
+	
+	private void writeStrings(final DataOutputStream out, final Map<String, Integer> strings, final List<String> l) throws IOException {
+		writeVarInt(out, l.size());
+		for(String s: l)
+			writeString(out, strings, s);
+	}
+	
+	private void writeString(final DataOutputStream out, final Map<String, Integer> strings, final String s) throws IOException {
+		if (s == null)
+			writeVarInt(out, NULL_STRING);
+		else {
+			Integer ix = strings.get(s);
+			if (ix == null) {
+				strings.put(s, strings.size());
+				writeVarInt(out, NEW_STRING);
+				out.writeUTF(s);
+			}
+			else
+				writeVarInt(out, STRING_REFERENCE + ix);
+		}
+	}
+	
+	private void writeVarInt(final DataOutputStream out, final int value) throws IOException {
+		int v = value;
+		while((v & ~0x7F) != 0) {
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+}
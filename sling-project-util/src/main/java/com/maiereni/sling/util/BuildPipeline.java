@@ -0,0 +1,329 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.BuildResult;
+import com.maiereni.sling.util.bean.DependencyTree;
+import com.maiereni.sling.util.bean.SourceProject;
+import com.maiereni.sling.util.bean.SourceStatus;
+
+/**
+ * Builds a set of cloned repositories with Maven, in the order given by the dependencies between their projects. 
+ * A repository is built as soon as the repositories it depends on have been built, on a number of threads given by 
+ * the JVM property build.threads. The repositories which depend on a failed build are skipped, as are the ones 
+ * in a dependency cycle. The Maven executable is given by the JVM property maven.executable (mvn by default) and its 
+ * arguments by build.args (-B install -DskipTests by default). The output of each build is written to the directory 
+ * given by build.logs (.build-logs in the git home by default). If build.dry.run is true, the builds are only planned
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class BuildPipeline {
+	private static final Logger logger = LoggerFactory.getLogger(BuildPipeline.class);
+	public static final String MAVEN_EXECUTABLE = "maven.executable";
+	public static final String BUILD_ARGS = "build.args";
+	public static final String BUILD_THREADS = "build.threads";
+	public static final String BUILD_LOGS = "build.logs";
+	public static final String DRY_RUN = "build.dry.run";
+	private String executable;
+	private List<String> args;
+	private int threads;
+	private File fLogDir;
+	
+	public BuildPipeline(@Nonnull final File fLogDir) {
+		this.fLogDir = fLogDir;
+		executable = System.getProperty(MAVEN_EXECUTABLE, SystemUtils.IS_OS_WINDOWS ? "mvn.cmd" : "mvn");
+		args = Arrays.asList(System.getProperty(BUILD_ARGS, "-B install -DskipTests").trim().split("\\s+"));
+		threads = SlingUtil.getThreads(BUILD_THREADS);
+	}
+	
+	/**
+	 * Get the dependencies between a set of repositories. A repository depends on another when one of its projects 
+	 * depends on a project of the other
+	 * @param index the projects by groupId:artifactId
+	 * @param repositories
+	 * @return the repositories each repository depends on, in the order of the set
+	 */
+	public Map<String, Set<String>> getGraph(@Nonnull final Map<String, SourceProject> index, @Nonnull final Collection<String> repositories) {
+		Map<String, Set<String>> ret = new LinkedHashMap<String, Set<String>>();
+		for(String repository: repositories)
+			ret.put(repository, new LinkedHashSet<String>());
+		for(SourceProject project: index.values()) {
+			Set<String> dependencies = ret.get(project.getRepository());
+			if (dependencies == null || project.getDependencies() == null)
+				continue;
+			for(String dependency: project.getDependencies()) {
+				SourceProject dep = index.get(dependency);
+				if (dep != null && ret.containsKey(dep.getRepository()) && !dep.getRepository().equals(project.getRepository()))
+					dependencies.add(dep.getRepository());
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Order the repositories in waves. The repositories of a wave only depend on the repositories of the previous 
+	 * waves. The repositories in a dependency cycle are left out
+	 * @param graph
+	 * @return
+	 */
+	public List<List<String>> getWaves(@Nonnull final Map<String, Set<String>> graph) {
+		List<List<String>> ret = new ArrayList<List<String>>();
+		Map<String, Integer> pending = new HashMap<String, Integer>();
+		Map<String, List<String>> dependents = getDependents(graph, pending);
+		List<String> wave = new ArrayList<String>();
+		for(String repository: graph.keySet())
+			if (pending.get(repository) == 0)
+				wave.add(repository);
+		while(!wave.isEmpty()) {
+			ret.add(wave);
+			List<String> next = new ArrayList<String>();
+			for(String repository: wave)
+				for(String dependent: dependents.get(repository)) {
+					int count = pending.get(dependent) - 1;
+					pending.put(dependent, count);
+					if (count == 0)
+						next.add(dependent);
+				}
+			wave = next;
+		}
+		return ret;
+	}
+	
+	/**
+	 * Build the repositories of a graph
+	 * @param graph
+	 * @return the outcome of each build, in the order of completion
+	 * @throws Exception
+	 */
+	public List<BuildResult> build(@Nonnull final Map<String, Set<String>> graph) throws Exception {
+		Map<String, BuildResult> ret = new LinkedHashMap<String, BuildResult>();
+		Map<String, Integer> waves = new HashMap<String, Integer>();
+		List<List<String>> l = getWaves(graph);
+		for(int i=0; i<l.size(); i++) {
+			logger.debug("Wave " + (i + 1) + ": " + l.get(i));
+			for(String repository: l.get(i))
+				waves.put(repository, i + 1);
+		}
+		if (!fLogDir.exists() && !fLogDir.mkdirs())
+			throw new Exception("Cannot make the log directory at " + fLogDir.getPath());
+		Map<String, Integer> pending = new HashMap<String, Integer>();
+		Map<String, List<String>> dependents = getDependents(graph, pending);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			CompletionService<BuildResult> completion = new ExecutorCompletionService<BuildResult>(executor);
+			int running = 0;
+			for(String repository: graph.keySet())
+				if (pending.get(repository) == 0) {
+					submit(completion, repository, waves.get(repository));
+					running++;
+				}
+			while(running > 0) {
+				BuildResult result = completion.take().get();
+				running--;
+				ret.put(result.getRepository(), result);
+				logger.info("The build of " + result.getRepository() + " has " + (result.getStatus().equals(BuildResult.SUCCESS) ? "succeeded" : "failed") + " in " + result.getTime() + " ms");
+				for(String dependent: dependents.get(result.getRepository())) {
+					if (!result.getStatus().equals(BuildResult.SUCCESS))
+						skip(ret, dependent, dependents, waves, "Depends on " + result.getRepository());
+					else if (!ret.containsKey(dependent)) {
+						int count = pending.get(dependent) - 1;
+						pending.put(dependent, count);
+						if (count == 0) {
+							submit(completion, dependent, waves.get(dependent));
+							running++;
+						}
+					}
+				}
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		for(String repository: graph.keySet())
+			if (!ret.containsKey(repository))
+				ret.put(repository, getResult(repository, BuildResult.SKIPPED, 0, "In a dependency cycle"));
+		return new ArrayList<BuildResult>(ret.values());
+	}
+	
+	/**
+	 * Plan the builds without running them
+	 * @param graph
+	 * @return
+	 */
+	public List<BuildResult> plan(@Nonnull final Map<String, Set<String>> graph) {
+		Map<String, BuildResult> ret = new LinkedHashMap<String, BuildResult>();
+		List<List<String>> waves = getWaves(graph);
+		for(int i=0; i<waves.size(); i++)
+			for(String repository: waves.get(i))
+				ret.put(repository, getResult(repository, BuildResult.PLANNED, i + 1, null));
+		for(String repository: graph.keySet())
+			if (!ret.containsKey(repository))
+				ret.put(repository, getResult(repository, BuildResult.SKIPPED, 0, "In a dependency cycle"));
+		return new ArrayList<BuildResult>(ret.values());
+	}
+	
+	/**
+	 * Write the outcome of the builds to an XML file
+	 * @param results
+	 * @param xmlFile
+	 * @throws Exception
+	 */
+	public void writeReport(@Nonnull final List<BuildResult> results, @Nonnull final String xmlFile) throws Exception {
+		Document document = XmlSupport.newDocument();
+		Element root = document.createElement("builds");
+		document.appendChild(root);
+		for(BuildResult result: results) {
+			Element el = document.createElement("build");
+			el.setAttribute("repository", result.getRepository());
+			el.setAttribute("status", result.getStatus());
+			el.setAttribute("wave", "" + result.getWave());
+			el.setAttribute("time", "" + result.getTime());
+			if (result.getStatus().equals(BuildResult.FAILED))
+				el.setAttribute("exitCode", "" + result.getExitCode());
+			if (result.getLog() != null)
+				el.setAttribute("log", result.getLog());
+			if (result.getMessage() != null)
+				el.setTextContent(result.getMessage());
+			root.appendChild(el);
+		}
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(xmlFile))) {
+			XmlSupport.write(document, os);
+		}
+	}
+	
+	private void submit(final CompletionService<BuildResult> completion, final String repository, final int wave) {
+		completion.submit(() -> runBuild(repository, wave));
+	}
+	
+	private BuildResult runBuild(final String repository, final int wave) {
+		File fLog = new File(fLogDir, new File(repository).getName() + ".log");
+		List<String> command = new ArrayList<String>();
+		command.add(executable);
+		command.addAll(args);
+		BuildResult ret = getResult(repository, BuildResult.FAILED, wave, null);
+		ret.setLog(fLog.getPath());
+		long start = System.currentTimeMillis();
+		try {
+			logger.debug("Build " + repository);
+			Process process = new ProcessBuilder(command).directory(new File(repository)).redirectErrorStream(true).redirectOutput(fLog).start();
+			ret.setExitCode(process.waitFor());
+			if (ret.getExitCode() == 0)
+				ret.setStatus(BuildResult.SUCCESS);
+			else
+				ret.setMessage("The build has exited with " + ret.getExitCode());
+		}
+		catch(Exception e) {
+			logger.error("Cannot build " + repository, e);
+			ret.setMessage(e.getMessage());
+		}
+		ret.setTime(System.currentTimeMillis() - start);
+		return ret;
+	}
+	
+	private void skip(final Map<String, BuildResult> results, final String repository, final Map<String, List<String>> dependents, final Map<String, Integer> waves, final String message) {
+		if (results.containsKey(repository))
+			return;
+		Integer wave = waves.get(repository);
+		results.put(repository, getResult(repository, BuildResult.SKIPPED, wave == null ? 0 : wave, message));
+		for(String dependent: dependents.get(repository))
+			skip(results, dependent, dependents, waves, "Depends on " + repository);
+	}
+	
+	private BuildResult getResult(final String repository, final String status, final int wave, final String message) {
+		BuildResult ret = new BuildResult();
+		ret.setRepository(repository);
+		ret.setStatus(status);
+		ret.setWave(wave);
+		ret.setMessage(message);
+		return ret;
+	}
+	
+	private Map<String, List<String>> getDependents(final Map<String, Set<String>> graph, final Map<String, Integer> pending) {
+		Map<String, List<String>> ret = new HashMap<String, List<String>>();
+		for(String repository: graph.keySet())
+			ret.put(repository, new ArrayList<String>());
+		for(Map.Entry<String, Set<String>> entry: graph.entrySet()) {
+			pending.put(entry.getKey(), entry.getValue().size());
+			for(String dependency: entry.getValue())
+				ret.get(dependency).add(entry.getKey());
+		}
+		return ret;
+	}
+	
+	/**
+	 * Run the tool with the arguments of the command line
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void execute(final String[] args) throws Exception {
+		SlingModelInterpreter interpreter = new SlingModelInterpreter();
+		DependencyTree tree = interpreter.getDependencyTree(args[0]);
+		List<Bundle> bundles = tree.getBundles();
+		String userDir = System.getProperty(SlingGitCloner.USER_HOME);
+		File fGitDir = new File(System.getProperty(SlingGitCloner.GIT_HOME, userDir + "/git"));
+		SourceIndex sourceIndex = new SourceIndex();
+		Map<String, SourceProject> index = sourceIndex.index(fGitDir);
+		List<SourceStatus> statuses = sourceIndex.compare(index, bundles);
+		Set<String> repositories = SourceIndex.getRepositoriesToBuild(statuses);
+		BuildPipeline pipeline = new BuildPipeline(new File(System.getProperty(BUILD_LOGS, new File(fGitDir, ".build-logs").getPath())));
+		Map<String, Set<String>> graph = pipeline.getGraph(index, repositories);
+		long start = System.currentTimeMillis();
+		List<BuildResult> results = Boolean.getBoolean(DRY_RUN) ? pipeline.plan(graph) : pipeline.build(graph);
+		logger.info("Processed " + results.size() + " repositories in " + (System.currentTimeMillis() - start) + " ms");
+		if (args.length > 1)
+			pipeline.writeReport(results, args[1]);
+	}
+
+	public static void main(final String[] args) {
+		try {
+			execute(args);
+		}
+		catch(Exception e) {
+			logger.error("The repositories could not be built", e);
+			System.exit(1);
+		}
+	}
+}
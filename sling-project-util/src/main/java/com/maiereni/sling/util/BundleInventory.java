@@ -0,0 +1,103 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.LineNumberReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.maiereni.sling.util.bean.Bundle;
+
+/**
+ * Loads the list of installed bundles (bundles.csv) and keeps the parsed content so that
+ * several readers working on the same file do not parse it again
+ *
+ * @author Petre Maierean
+ *
+ */
+public class BundleInventory {
+	private static final Logger logger = LoggerFactory.getLogger(BundleInventory.class);
+	public static final String BUNDLES = "bundles";
+	private FileCache<Map<String, Bundle>> cache = new FileCache<Map<String, Bundle>>();
+
+	/**
+	 * Get the bundles listed in a file. The result is shared between callers and cannot be modified. The file is 
+	 * read again when it has changed
+	 * @param fBundles
+	 * @param byText if true the bundles are indexed by their description as well as by their name
+	 * @return
+	 */
+	public Map<String, Bundle> getBundles(@Nonnull final File fBundles, final boolean byText) {
+		String key = fBundles.getAbsolutePath() + (byText ? ":text" : ":name");
+		Map<String, Bundle> ret = cache.get(key, fBundles);
+		if (ret == null)
+			ret = cache.put(key, fBundles, Collections.unmodifiableMap(load(fBundles, byText)));
+		return ret;
+	}
+
+	/**
+	 * Read the bundles from a file. Each line has the format position,description,symbolic name,version[,category]
+	 * @param fBundles
+	 * @param byText if true the bundles are indexed by their description as well as by their name
+	 * @return
+	 */
+	public static Map<String, Bundle> load(@Nonnull final File fBundles, final boolean byText) {
+		Map<String, Bundle> bundles = new HashMap<String, Bundle>();
+		if (fBundles.exists()) {
+			try (FileReader fr = new FileReader(fBundles)) {
+				LineNumberReader lnr = new LineNumberReader(fr);
+				String s = null;
+				while((s = lnr.readLine()) != null) {
+					String[] sp = s.split(",");
+					Bundle bundle = new Bundle();
+					bundle.setPos(Integer.parseInt(sp[0]));
+					bundle.setText(sp[1]);
+					bundle.setName(sp[2]);
+					bundle.setVersion(sp[3]);
+					String pkgName = "";
+					for(int i=4; i<sp.length; i++) {
+						String sAdd = sp[i];
+						sAdd = sAdd.replaceAll("'", "");
+						if (pkgName.equals(""))
+							pkgName = sAdd;
+						else
+							pkgName = pkgName + "," + sp[i];
+					}
+					bundle.setPkgName(pkgName);
+					bundles.put(sp[2], bundle);
+					if (byText)
+						bundles.put(sp[1], bundle);
+				}
+				lnr.close();
+				logger.debug("Loaded {} bundles", bundles.size());
+			}
+			catch(Exception e) {
+				logger.error("Failed to load from file", e);
+			}
+		}
+		return bundles;
+	}
+}
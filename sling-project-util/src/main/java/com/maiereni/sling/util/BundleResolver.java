@@ -20,12 +20,17 @@ package com.maiereni.sling.util;
 import java.io.File;
 import java.io.FileInputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.jar.Attributes;
 import java.util.jar.JarInputStream;
 import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import javax.annotation.Nonnull;
 
@@ -36,6 +41,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.Footprint;
 
 /**
  * Resolve the bundles
@@ -45,10 +51,19 @@ import com.maiereni.sling.util.bean.Bundle;
 public class BundleResolver {
 	private static final Logger logger = LoggerFactory.getLogger(BundleResolver.class);
 	private File repositoryRootPath;
+	private FileCache<Bundle> manifests = new FileCache<Bundle>();
+	private FileCache<Footprint> footprints = new FileCache<Footprint>();
 	
 	public BundleResolver() {
-		String s = System.getProperty("user.home");
-		repositoryRootPath = new File(s, ".m2/repository");
+		this(new File(System.getProperty("user.home"), ".m2/repository"));
+	}
+	
+	/**
+	 * Create a resolver for the artifacts of a local Maven repository
+	 * @param repositoryRootPath
+	 */
+	public BundleResolver(@Nonnull final File repositoryRootPath) {
+		this.repositoryRootPath = repositoryRootPath;
 	}
 	
 	/**
@@ -91,25 +106,21 @@ public class BundleResolver {
 		if (fArtifactDir.isDirectory()) {
 			File fArtifact = new File(fArtifactDir, artifactId + "-" + version + ".jar");
 			if (fArtifact.isFile()) {
-			    try (FileInputStream stream = new FileInputStream(fArtifact);
-		    		JarInputStream jarStream = new JarInputStream(stream);) {
-			    	Manifest mf = jarStream.getManifest();
+				Bundle manifest = getManifest(fArtifact);
+				if (manifest != null) {
 			    	ret = new Bundle();
-			    	ret.setName(getAttributeValue(mf, "Bundle-SymbolicName"));
-			    	ret.setText(getAttributeValue(mf, "Bundle-Name"));
-			    	ret.setPkgName(getAttributeValue(mf, "Bundle-Category"));
-			    	ret.setVersion(getAttributeValue(mf, "Bundle-Version"));
-			    	
-			    	ret.setExportPackages(getAttributeValueAsList(mf, "Export-Package"));
-			    	ret.setImportPackages(getAttributeValueAsList(mf, "Import-Package"));
-			    	
-			    	
+			    	ret.setName(manifest.getName());
+			    	ret.setText(manifest.getText());
+			    	ret.setPkgName(manifest.getPkgName());
+			    	ret.setVersion(manifest.getVersion());
+			    	ret.setExportPackages(manifest.getExportPackages());
+			    	ret.setImportPackages(manifest.getImportPackages());
+			    	ret.setProvideCapabilities(manifest.getProvideCapabilities());
+			    	ret.setRequireCapabilities(manifest.getRequireCapabilities());
 			    	ret.setLocation(fArtifact.getPath());
 			    	ret.setFeatureName(featureName);
 			    	ret.setArtifactId(artifactId);
 			    	ret.setGroupId(groupId);
-				} catch (Exception e) {
-					logger.error("Failed to read the bundle due to an exception", e);
 				}
 			}
 		}
@@ -119,23 +130,80 @@ public class BundleResolver {
 		return ret;
 	}
 	
-	private List<String> getAttributeValueAsList(final Manifest mf, final String key) {
-		String value = getAttributeValue(mf, key);
-		List<String> ret = new ArrayList<String>();
-		if (StringUtils.isNotBlank(value)) {
-			String[] toks = value.split(",");
-			for(String tok: toks) {
-				if ((tok.indexOf(")\"") > 0 || tok.indexOf("]\"") > 0 ) && ret.size() > 0) {
-					String actual = ret.remove(ret.size() - 1);
-					ret.add(actual + "," + tok);
+	/**
+	 * Read the manifest headers of a bundle. The outcome is kept in memory and shared by all the callers, 
+	 * so that a jar is opened only once for the lifetime of the resolver, or until it is rebuilt
+	 * @param fArtifact
+	 * @return
+	 */
+	private Bundle getManifest(final File fArtifact) {
+		String key = fArtifact.getAbsolutePath();
+		Bundle ret = manifests.get(key, fArtifact);
+		if (ret == null) {
+		    try (FileInputStream stream = new FileInputStream(fArtifact);
+	    		JarInputStream jarStream = new JarInputStream(stream);) {
+		    	Manifest mf = jarStream.getManifest();
+		    	ret = new Bundle();
+		    	ret.setName(getAttributeValue(mf, "Bundle-SymbolicName"));
+		    	ret.setText(getAttributeValue(mf, "Bundle-Name"));
+		    	ret.setPkgName(getAttributeValue(mf, "Bundle-Category"));
+		    	ret.setVersion(getAttributeValue(mf, "Bundle-Version"));
+		    	ret.setExportPackages(Collections.unmodifiableList(getAttributeValueAsList(mf, "Export-Package")));
+		    	ret.setImportPackages(Collections.unmodifiableList(getAttributeValueAsList(mf, "Import-Package")));
+		    	ret.setProvideCapabilities(getAttributeValueAsList(mf, "Provide-Capability"));
+		    	ret.setRequireCapabilities(getAttributeValueAsList(mf, "Require-Capability"));
+		    	ret = manifests.put(key, fArtifact, ret);
+			} catch (Exception e) {
+				logger.error("Failed to read the bundle due to an exception", e);
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Get the footprint of a jar from its central directory, without decompressing the entries. Like the manifests, 
+	 * the outcome is kept in memory and shared by all the callers
+	 * @param fArtifact
+	 * @return
+	 * @throws Exception if the jar cannot be read
+	 */
+	public Footprint getFootprint(@Nonnull final File fArtifact) throws Exception {
+		String key = fArtifact.getAbsolutePath();
+		Footprint ret = footprints.get(key, fArtifact);
+		if (ret == null) {
+			ret = new Footprint();
+			ret.setBundles(1);
+			ret.setSize(fArtifact.length());
+			try (ZipFile zipFile = new ZipFile(fArtifact)) {
+				Enumeration<? extends ZipEntry> entries = zipFile.entries();
+				while(entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+					if (entry.isDirectory())
+						continue;
+					ret.setEntries(ret.getEntries() + 1);
+					if (entry.getCompressedSize() > 0)
+						ret.setCompressedSize(ret.getCompressedSize() + entry.getCompressedSize());
+					if (entry.getSize() > 0)
+						ret.setUncompressedSize(ret.getUncompressedSize() + entry.getSize());
+					if (entry.getName().endsWith(".class"))
+						ret.setClasses(ret.getClasses() + 1);
+					else if (entry.getName().endsWith(".jar"))
+						ret.setEmbeddedJars(ret.getEmbeddedJars() + 1);
 				}
-				else
-					ret.add(tok);
 			}
+			ret = footprints.put(key, fArtifact, ret);
 		}
 		return ret;
 	}
 	
+	private List<String> getAttributeValueAsList(final Manifest mf, final String key) {
+		String value = getAttributeValue(mf, key);
+		List<String> ret = new ArrayList<String>();
+		if (StringUtils.isNotBlank(value)) 
+			ret = ManifestClause.split(value, ',');
+		return ret;
+	}
+	
 	private String getAttributeValue(final Manifest mf, final String key) {
 		String ret = null;
 		Attributes attrib = mf.getMainAttributes();
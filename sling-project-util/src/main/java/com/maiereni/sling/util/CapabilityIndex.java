@@ -0,0 +1,221 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+
+import com.maiereni.sling.util.bean.Bundle;
+
+/**
+ * Indexes the capabilities given by the Provide-Capability headers of a set of bundles. The capabilities are 
+ * partitioned by namespace and, within a namespace, by the value of the attribute named after the namespace, 
+ * such as osgi.extender=osgi.component. A requirement whose filter asks for such a value, alone or as a term 
+ * of a top level conjunction, is matched against that partition only. The other requirements are matched against 
+ * all the capabilities of their namespace. The filters are parsed once and shared by the requirements which use them
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class CapabilityIndex {
+	private Map<String, Partition> namespaces = new HashMap<String, Partition>();
+	private Map<String, Filter> filters = new ConcurrentHashMap<String, Filter>();
+	private int size;
+	
+	/**
+	 * Add the capabilities provided by a bundle
+	 * @param bundle
+	 */
+	public void add(@Nonnull final Bundle bundle) {
+		if (bundle.getProvideCapabilities() == null)
+			return;
+		for(String cap: bundle.getProvideCapabilities()) {
+			ManifestClause clause = ManifestClause.parse(cap);
+			Map<String, Object> attributes = null;
+			try {
+				attributes = clause.getTypedAttributes();
+			}
+			catch(IllegalArgumentException e) {
+				attributes = new LinkedHashMap<String, Object>(clause.getAttributes());
+			}
+			for(String namespace: clause.getNames()) {
+				Partition partition = namespaces.get(namespace);
+				if (partition == null) {
+					partition = new Partition();
+					namespaces.put(namespace, partition);
+				}
+				partition.add(namespace, new Entry(bundle, attributes));
+				size++;
+			}
+		}
+	}
+	
+	/**
+	 * Find the bundles which provide a capability of a namespace matching a filter
+	 * @param namespace
+	 * @param filter the filter, or null for any capability of the namespace
+	 * @return the providers, in the order they have been added
+	 * @throws InvalidSyntaxException if the filter cannot be parsed
+	 */
+	public List<Bundle> find(@Nonnull final String namespace, final String filter) throws InvalidSyntaxException {
+		Partition partition = namespaces.get(namespace);
+		if (partition == null)
+			return Collections.emptyList();
+		List<Entry> candidates = partition.all;
+		Filter f = null;
+		if (filter != null) {
+			f = getFilter(filter);
+			String key = getKey(namespace, filter);
+			if (key != null) {
+				candidates = partition.byValue.get(key);
+				if (candidates == null)
+					candidates = partition.unkeyed;
+				else if (!partition.unkeyed.isEmpty()) {
+					candidates = new ArrayList<Entry>(candidates);
+					candidates.addAll(partition.unkeyed);
+				}
+			}
+		}
+		List<Bundle> ret = new ArrayList<Bundle>();
+		for(Entry entry: candidates)
+			if ((f == null || f.matches(entry.attributes)) && !ret.contains(entry.bundle))
+				ret.add(entry.bundle);
+		return ret;
+	}
+	
+	/**
+	 * Get the number of capabilities indexed
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+	
+	private Filter getFilter(final String filter) throws InvalidSyntaxException {
+		Filter ret = filters.get(filter);
+		if (ret == null) {
+			ret = FrameworkUtil.createFilter(filter);
+			filters.put(filter, ret);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Get the value of the namespace attribute required by a filter such as (ns=value) or (&amp;(ns=value)(...)), 
+	 * or null if the filter does not require a single literal value
+	 * @param namespace
+	 * @param filter
+	 * @return
+	 */
+	static String getKey(final String namespace, final String filter) {
+		String f = filter.trim();
+		String term = "(" + namespace + "=";
+		if (f.startsWith(term))
+			return getValue(f, term.length(), f.length());
+		String ret = null;
+		if (f.startsWith("(&") && f.endsWith(")")) {
+			int depth = 0, start = -1;
+			for(int i=2; i<f.length() - 1 && ret == null; i++) {
+				char c = f.charAt(i);
+				if (c == '\\')
+					return null;
+				if (c == '(') {
+					if (depth == 0)
+						start = i;
+					depth++;
+				}
+				else if (c == ')') {
+					depth--;
+					if (depth == 0 && f.startsWith(term, start))
+						ret = getValue(f, start + term.length(), i + 1);
+				}
+			}
+		}
+		return ret;
+	}
+	
+	private static String getValue(final String filter, final int start, final int end) {
+		String ret = null;
+		if (end > start && filter.charAt(end - 1) == ')') {
+			String value = filter.substring(start, end - 1);
+			if (value.indexOf('*') < 0 && value.indexOf('(') < 0 && value.indexOf(')') < 0 && value.indexOf('\\') < 0)
+				ret = value;
+		}
+		return ret;
+	}
+	
+	/**
+	 * The capabilities of a namespace. The capabilities whose namespace attribute is not a string, or a list of strings, 
+	 * cannot be looked up by value and are kept apart
+	 */
+	private static class Partition {
+		private List<Entry> all = new ArrayList<Entry>();
+		private Map<String, List<Entry>> byValue = new HashMap<String, List<Entry>>();
+		private List<Entry> unkeyed = new ArrayList<Entry>();
+		
+		private void add(final String namespace, final Entry entry) {
+			all.add(entry);
+			Object value = entry.attributes.get(namespace);
+			if (value instanceof String)
+				addValue((String)value, entry);
+			else if (value instanceof Collection && isStrings((Collection<?>)value))
+				for(Object o: (Collection<?>)value)
+					addValue((String)o, entry);
+			else if (value != null)
+				unkeyed.add(entry);
+		}
+		
+		private void addValue(final String value, final Entry entry) {
+			List<Entry> l = byValue.get(value);
+			if (l == null) {
+				l = new ArrayList<Entry>(1);
+				byValue.put(value, l);
+			}
+			l.add(entry);
+		}
+		
+		private static boolean isStrings(final Collection<?> values) {
+			for(Object o: values)
+				if (!(o instanceof String))
+					return false;
+			return true;
+		}
+	}
+	
+	private static class Entry {
+		private final Bundle bundle;
+		private final Map<String, Object> attributes;
+		
+		private Entry(final Bundle bundle, final Map<String, Object> attributes) {
+			this.bundle = bundle;
+			this.attributes = attributes;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.LineNumberReader;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.maiereni.sling.util.bean.CloneStatus;
+
+/**
+ * Keeps the status of the clone of each project in a file, so that an interrupted run can be resumed. Each line 
+ * has the format name,status,attempts,time,message. The file is written again after each change, to a temporary 
+ * file which then replaces it, so that it is never left half written. The journal can be updated by several threads
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class CloneJournal {
+	private static final Logger logger = LoggerFactory.getLogger(CloneJournal.class);
+	private File file;
+	private Map<String, CloneStatus> entries = new TreeMap<String, CloneStatus>();
+	
+	public CloneJournal(@Nonnull final File file) throws Exception {
+		this.file = file;
+		if (file.exists()) {
+			try (FileReader fr = new FileReader(file)) {
+				LineNumberReader lnr = new LineNumberReader(fr);
+				String s = null;
+				while((s = lnr.readLine()) != null) {
+					String[] sp = s.split(",", 5);
+					if (sp.length < 4)
+						continue;
+					CloneStatus status = new CloneStatus();
+					status.setName(sp[0]);
+					status.setStatus(sp[1]);
+					status.setAttempts(Integer.parseInt(sp[2]));
+					status.setTime(Long.parseLong(sp[3]));
+					status.setMessage(sp.length > 4 && sp[4].length() > 0 ? sp[4] : null);
+					entries.put(status.getName(), status);
+				}
+			}
+			logger.debug("Loaded the status of " + entries.size() + " projects from " + file.getPath());
+		}
+	}
+	
+	/**
+	 * Get the status of a project
+	 * @param name
+	 * @return the status or null if the project is not in the journal
+	 */
+	public synchronized CloneStatus get(@Nonnull final String name) {
+		return entries.get(name);
+	}
+	
+	/**
+	 * Change the status of a project and save the journal
+	 * @param name
+	 * @param status
+	 * @param attempts
+	 * @param message
+	 * @throws Exception
+	 */
+	public synchronized void update(@Nonnull final String name, @Nonnull final String status, final int attempts, final String message) throws Exception {
+		CloneStatus cloneStatus = new CloneStatus();
+		cloneStatus.setName(name);
+		cloneStatus.setStatus(status);
+		cloneStatus.setAttempts(attempts);
+		cloneStatus.setTime(System.currentTimeMillis());
+		cloneStatus.setMessage(message == null ? null : message.replaceAll("[\\r\\n]+", " "));
+		entries.put(name, cloneStatus);
+		File fTemp = new File(file.getPath() + ".tmp");
+		try (PrintWriter pw = new PrintWriter(new FileWriter(fTemp))) {
+			for(CloneStatus entry: entries.values())
+				pw.println(entry.getName() + "," + entry.getStatus() + "," + entry.getAttempts() + "," + entry.getTime() + "," + 
+					(entry.getMessage() == null ? "" : entry.getMessage()));
+		}
+		Files.move(fTemp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,413 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.annotation.Nonnull;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.ComponentReference;
+import com.maiereni.sling.util.bean.DependencyTree;
+import com.maiereni.sling.util.bean.ServiceComponent;
+
+/**
+ * Indexes the Declarative Services components of a set of bundles. The descriptors named by the Service-Component 
+ * header of a bundle, including the patterns such as OSGI-INF/*.xml, are read directly from the jar and parsed with 
+ * a pull parser. The jars are read in parallel, on a number of threads given by the JVM property scan.threads.
+ * The components are then linked into a graph of service providers and consumers. A component registers its services
+ * only when it is satisfied, so a component whose mandatory reference has no satisfied provider makes the components 
+ * depending on it unsatisfied as well. The services declared in an osgi.service capability of the Provide-Capability
+ * header are taken as registered by the bundle. The target filters of the references are not evaluated
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class ComponentIndex {
+	private static final Logger logger = LoggerFactory.getLogger(ComponentIndex.class);
+	public static final String SERVICE_COMPONENT = "Service-Component";
+	private static final String SERVICE_NAMESPACE = "osgi.service";
+	private static final String OBJECT_CLASS = "objectClass";
+	private int threads;
+	
+	public ComponentIndex() {
+		threads = SlingUtil.getThreads(PackageUsageScanner.SCAN_THREADS);
+	}
+	
+	/**
+	 * Read the components of a list of bundles in parallel. The bundles that cannot be read are left out
+	 * @param bundles
+	 * @return the components, in the order of the bundles
+	 * @throws Exception
+	 */
+	public List<ServiceComponent> scan(@Nonnull final List<Bundle> bundles) throws Exception {
+		List<ServiceComponent> ret = new ArrayList<ServiceComponent>();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Map<String, Future<List<ServiceComponent>>> futures = new LinkedHashMap<String, Future<List<ServiceComponent>>>();
+			for(final Bundle bundle: bundles) {
+				if (bundle.getLocation() == null || futures.containsKey(bundle.getLocation()))
+					continue;
+				futures.put(bundle.getLocation(), executor.submit(() -> scan(bundle)));
+			}
+			for(Map.Entry<String, Future<List<ServiceComponent>>> entry: futures.entrySet()) {
+				try {
+					ret.addAll(entry.getValue().get());
+				}
+				catch(Exception e) {
+					logger.error("Failed to read the components of " + entry.getKey(), e);
+				}
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		return ret;
+	}
+	
+	/**
+	 * Read the components of a bundle
+	 * @param bundle
+	 * @return
+	 * @throws Exception
+	 */
+	public List<ServiceComponent> scan(@Nonnull final Bundle bundle) throws Exception {
+		List<ServiceComponent> ret = new ArrayList<ServiceComponent>();
+		try (ZipFile zipFile = new ZipFile(bundle.getLocation())) {
+			ZipEntry mfEntry = zipFile.getEntry(JarFile.MANIFEST_NAME);
+			if (mfEntry == null)
+				return ret;
+			Manifest mf = null;
+			try (InputStream is = zipFile.getInputStream(mfEntry)) {
+				mf = new Manifest(is);
+			}
+			String header = mf.getMainAttributes().getValue(SERVICE_COMPONENT);
+			if (StringUtils.isBlank(header))
+				return ret;
+			for(String clause: ManifestClause.split(header, ',')) {
+				for(String path: ManifestClause.parse(clause).getNames()) {
+					if (path.startsWith("/"))
+						path = path.substring(1);
+					if (path.indexOf('*') < 0) {
+						ZipEntry entry = zipFile.getEntry(path);
+						if (entry == null)
+							logger.warn("The descriptor " + path + " of " + bundle.getName() + " cannot be found");
+						else
+							readDescriptor(zipFile, entry, bundle, ret);
+					}
+					else {
+						Pattern pattern = getPattern(path);
+						Enumeration<? extends ZipEntry> entries = zipFile.entries();
+						while(entries.hasMoreElements()) {
+							ZipEntry entry = entries.nextElement();
+							if (!entry.isDirectory() && pattern.matcher(entry.getName()).matches())
+								readDescriptor(zipFile, entry, bundle, ret);
+						}
+					}
+				}
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Link the references of the components to the providers of the services. The components and the references
+	 * are marked as satisfied or not
+	 * @param components
+	 * @param bundles the bundles whose Provide-Capability header declares services
+	 */
+	public void link(@Nonnull final List<ServiceComponent> components, @Nonnull final List<Bundle> bundles) {
+		Map<String, List<Bundle>> declared = getDeclaredServices(bundles);
+		Map<String, List<ServiceComponent>> providers = new HashMap<String, List<ServiceComponent>>();
+		for(ServiceComponent component: components) {
+			component.setSatisfied(component.isEnabled());
+			for(String service: component.getServices()) {
+				List<ServiceComponent> l = providers.get(service);
+				if (l == null) {
+					l = new ArrayList<ServiceComponent>(1);
+					providers.put(service, l);
+				}
+				l.add(component);
+			}
+		}
+		// drop the unsatisfied components until no more provider is lost
+		boolean changed = true;
+		int passes = 0;
+		while(changed) {
+			changed = false;
+			passes++;
+			for(ServiceComponent component: components) {
+				if (!component.isSatisfied())
+					continue;
+				for(ComponentReference reference: component.getReferences())
+					if (reference.isMandatory() && !declared.containsKey(reference.getInterfaceName()) && 
+						!hasProvider(providers.get(reference.getInterfaceName()), component)) {
+						component.setSatisfied(false);
+						changed = true;
+						break;
+					}
+			}
+		}
+		logger.debug("Linked " + components.size() + " components in " + passes + " passes");
+		for(ServiceComponent component: components) 
+			for(ComponentReference reference: component.getReferences()) {
+				List<Bundle> l = new ArrayList<Bundle>();
+				List<ServiceComponent> provided = providers.get(reference.getInterfaceName());
+				if (provided != null)
+					for(ServiceComponent provider: provided)
+						if (provider != component && provider.isSatisfied() && !l.contains(provider.getBundle()))
+							l.add(provider.getBundle());
+				if (declared.containsKey(reference.getInterfaceName()))
+					for(Bundle bundle: declared.get(reference.getInterfaceName()))
+						if (!l.contains(bundle))
+							l.add(bundle);
+				reference.setProviders(l);
+				reference.setSatisfied(!l.isEmpty() || !reference.isMandatory());
+			}
+	}
+	
+	/**
+	 * Write the components to an XML file. The unsatisfied mandatory references are listed first
+	 * @param components
+	 * @param xmlFile
+	 * @throws Exception
+	 */
+	public void writeReport(@Nonnull final List<ServiceComponent> components, @Nonnull final String xmlFile) throws Exception {
+		Document document = XmlSupport.newDocument();
+		Element root = document.createElement("components");
+		root.setAttribute("count", "" + components.size());
+		document.appendChild(root);
+		Element elUnsatisfied = document.createElement("unsatisfied");
+		root.appendChild(elUnsatisfied);
+		int unsatisfied = 0;
+		for(ServiceComponent component: components) {
+			Element elComponent = document.createElement("component");
+			elComponent.setAttribute("name", component.getName());
+			elComponent.setAttribute("bundle", component.getBundle().getName());
+			elComponent.setAttribute("pos", "" + component.getBundle().getPos());
+			elComponent.setAttribute("enabled", "" + component.isEnabled());
+			elComponent.setAttribute("satisfied", "" + component.isSatisfied());
+			if (component.getImplementation() != null)
+				elComponent.setAttribute("implementation", component.getImplementation());
+			for(String service: component.getServices()) {
+				Element el = document.createElement("service");
+				el.setAttribute("interface", service);
+				elComponent.appendChild(el);
+			}
+			for(ComponentReference reference: component.getReferences()) {
+				Element el = document.createElement("reference");
+				el.setAttribute("name", reference.getName());
+				el.setAttribute("interface", reference.getInterfaceName());
+				el.setAttribute("cardinality", reference.getCardinality());
+				el.setAttribute("satisfied", "" + reference.isSatisfied());
+				if (reference.getTarget() != null)
+					el.setAttribute("target", reference.getTarget());
+				for(Bundle provider: reference.getProviders()) {
+					Element elProvider = document.createElement("provider");
+					elProvider.setAttribute("name", provider.getName());
+					elProvider.setAttribute("pos", "" + provider.getPos());
+					el.appendChild(elProvider);
+				}
+				elComponent.appendChild(el);
+				if (!reference.isSatisfied()) {
+					Element elMissing = document.createElement("missing");
+					elMissing.setAttribute("component", component.getName());
+					elMissing.setAttribute("bundle", component.getBundle().getName());
+					elMissing.setAttribute("interface", reference.getInterfaceName());
+					elUnsatisfied.appendChild(elMissing);
+				}
+			}
+			if (!component.isSatisfied())
+				unsatisfied++;
+			root.appendChild(elComponent);
+		}
+		root.setAttribute("unsatisfied", "" + unsatisfied);
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(xmlFile))) {
+			XmlSupport.write(document, os);
+		}
+	}
+	
+	private boolean hasProvider(final List<ServiceComponent> providers, final ServiceComponent consumer) {
+		if (providers != null)
+			for(ServiceComponent provider: providers)
+				if (provider != consumer && provider.isSatisfied())
+					return true;
+		return false;
+	}
+	
+	private Map<String, List<Bundle>> getDeclaredServices(final List<Bundle> bundles) {
+		Map<String, List<Bundle>> ret = new HashMap<String, List<Bundle>>();
+		for(Bundle bundle: bundles) {
+			if (bundle.getProvideCapabilities() == null)
+				continue;
+			for(String cap: bundle.getProvideCapabilities()) {
+				ManifestClause clause = ManifestClause.parse(cap);
+				if (!clause.getNames().contains(SERVICE_NAMESPACE))
+					continue;
+				Object value = null;
+				try {
+					value = clause.getTypedAttributes().get(OBJECT_CLASS);
+				}
+				catch(IllegalArgumentException e) {
+					value = clause.getAttribute(OBJECT_CLASS);
+				}
+				List<String> services = new ArrayList<String>();
+				if (value instanceof Collection)
+					for(Object o: (Collection<?>)value)
+						services.add(o.toString());
+				else if (value != null)
+					services.add(value.toString());
+				for(String service: services) {
+					List<Bundle> l = ret.get(service);
+					if (l == null) {
+						l = new ArrayList<Bundle>(1);
+						ret.put(service, l);
+					}
+					if (!l.contains(bundle))
+						l.add(bundle);
+				}
+			}
+		}
+		return ret;
+	}
+	
+	private void readDescriptor(final ZipFile zipFile, final ZipEntry entry, final Bundle bundle, final List<ServiceComponent> components) throws Exception {
+		ServiceComponent component = null;
+		try (InputStream is = zipFile.getInputStream(entry)) {
+			XMLStreamReader reader = XmlSupport.createStreamReader(is);
+			try {
+				while(reader.hasNext()) {
+					int event = reader.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						switch(reader.getLocalName()) {
+						case "component":
+							component = new ServiceComponent();
+							component.setBundle(bundle);
+							component.setDescriptor(entry.getName());
+							component.setName(reader.getAttributeValue(null, "name"));
+							component.setEnabled(!"false".equals(reader.getAttributeValue(null, "enabled")));
+							component.setServices(new ArrayList<String>());
+							component.setReferences(new ArrayList<ComponentReference>());
+							break;
+						case "implementation":
+							if (component != null)
+								component.setImplementation(reader.getAttributeValue(null, "class"));
+							break;
+						case "provide":
+							if (component != null && reader.getAttributeValue(null, "interface") != null)
+								component.getServices().add(reader.getAttributeValue(null, "interface").trim());
+							break;
+						case "reference":
+							String interfaceName = reader.getAttributeValue(null, "interface");
+							if (component != null && interfaceName != null) {
+								ComponentReference reference = new ComponentReference();
+								reference.setInterfaceName(interfaceName.trim());
+								reference.setName(StringUtils.defaultIfBlank(reader.getAttributeValue(null, "name"), reference.getInterfaceName()));
+								reference.setCardinality(StringUtils.defaultIfBlank(reader.getAttributeValue(null, "cardinality"), "1..1"));
+								reference.setPolicy(StringUtils.defaultIfBlank(reader.getAttributeValue(null, "policy"), "static"));
+								reference.setTarget(reader.getAttributeValue(null, "target"));
+								component.getReferences().add(reference);
+							}
+							break;
+						default:
+						}
+					}
+					else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("component") && component != null) {
+						if (component.getName() == null)
+							component.setName(component.getImplementation());
+						components.add(component);
+						component = null;
+					}
+				}
+			}
+			finally {
+				reader.close();
+			}
+		}
+	}
+	
+	/**
+	 * Convert a pattern of the Service-Component header, which can use * in the last segment of the path, to a regular expression 
+	 * @param path
+	 * @return
+	 */
+	private static Pattern getPattern(final String path) {
+		StringBuilder sb = new StringBuilder();
+		String[] parts = StringUtils.splitPreserveAllTokens(path, '*');
+		for(int i=0; i<parts.length; i++) {
+			if (i > 0)
+				sb.append("[^/]*");
+			if (!parts[i].isEmpty())
+				sb.append(Pattern.quote(parts[i]));
+		}
+		return Pattern.compile(sb.toString());
+	}
+	
+	/**
+	 * Run the tool with the arguments of the command line
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void execute(final String[] args) throws Exception {
+		SlingModelInterpreter interpreter = new SlingModelInterpreter();
+		DependencyTree tree = interpreter.getDependencyTree(args[0]);
+		List<Bundle> bundles = tree.getBundles();
+		ComponentIndex index = new ComponentIndex();
+		long start = System.currentTimeMillis();
+		List<ServiceComponent> components = index.scan(bundles);
+		logger.debug("Read " + components.size() + " components in " + (System.currentTimeMillis() - start) + " ms");
+		index.link(components, bundles);
+		index.writeReport(components, args[1]);
+	}
+
+	public static void main(final String[] args) {
+		try {
+			execute(args);
+		}
+		catch(Exception e) {
+			logger.error("The components could not be indexed", e);
+			System.exit(1);
+		}
+	}
+}
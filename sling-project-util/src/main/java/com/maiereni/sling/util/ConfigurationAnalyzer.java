@@ -0,0 +1,320 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.provisioning.model.Configuration;
+import org.apache.sling.provisioning.model.Feature;
+import org.apache.sling.provisioning.model.Model;
+import org.apache.sling.provisioning.model.ModelUtility;
+import org.apache.sling.provisioning.model.RunMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.maiereni.sling.util.bean.ConfigurationEntry;
+import com.maiereni.sling.util.bean.ConfigurationIssue;
+
+/**
+ * Analyzes the OSGi configurations of a model. The configurations are indexed by their PID (factoryPid~pid for 
+ * the factory configurations) in one pass over the features and the run modes. The index is then used to report
+ * the configurations declared by several features for the same run modes (overrides) and the properties whose 
+ * values differ between the declarations that apply to a run mode (conflicts). The declarations of a set of run 
+ * modes apply to every set which contains it, the global run mode to all of them. The conflicts are therefore looked 
+ * for in each set of run modes declared for a PID and in each union of these sets, since the configurations of author
+ * and of oak_tar both apply when the instance runs with author,oak_tar. A conflict is reported once, for the smallest 
+ * set of run modes in which the two declarations apply
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class ConfigurationAnalyzer {
+	private static final Logger logger = LoggerFactory.getLogger(ConfigurationAnalyzer.class);
+	
+	/**
+	 * Index the configurations of a model by PID and run modes. The declarations are kept in the order of the features.
+	 * The raw configurations of the model are parsed and the variables are replaced before indexing 
+	 * @param model
+	 * @return
+	 */
+	public Map<String, Map<String, List<ConfigurationEntry>>> index(@Nonnull final Model model) {
+		Map<String, Map<String, List<ConfigurationEntry>>> ret = new LinkedHashMap<String, Map<String, List<ConfigurationEntry>>>();
+		Model effectiveModel = ModelUtility.getEffectiveModel(model);
+		for(Feature feature: effectiveModel.getFeatures()) {
+			for(RunMode rm: feature.getRunModes()) {
+				String runModes = SlingModelReader.getRunModesKey(rm.getNames());
+				Iterator<Configuration> iCfg = rm.getConfigurations().iterator();
+				while(iCfg.hasNext()) {
+					ConfigurationEntry entry = getEntry(iCfg.next(), feature, runModes);
+					String key = getKey(entry);
+					Map<String, List<ConfigurationEntry>> byRunModes = ret.get(key);
+					if (byRunModes == null) {
+						byRunModes = new LinkedHashMap<String, List<ConfigurationEntry>>();
+						ret.put(key, byRunModes);
+					}
+					List<ConfigurationEntry> entries = byRunModes.get(runModes);
+					if (entries == null) {
+						entries = new ArrayList<ConfigurationEntry>();
+						byRunModes.put(runModes, entries);
+					}
+					entries.add(entry);
+				}
+			}
+		}
+		logger.debug("Indexed " + ret.size() + " configurations");
+		return ret;
+	}
+	
+	/**
+	 * Find the overrides and the conflicts
+	 * @param index
+	 * @return
+	 */
+	public List<ConfigurationIssue> analyze(@Nonnull final Map<String, Map<String, List<ConfigurationEntry>>> index) {
+		List<ConfigurationIssue> ret = new ArrayList<ConfigurationIssue>();
+		for(Map.Entry<String, Map<String, List<ConfigurationEntry>>> cfg: index.entrySet()) {
+			for(Map.Entry<String, List<ConfigurationEntry>> rm: cfg.getValue().entrySet()) {
+				List<ConfigurationEntry> entries = rm.getValue();
+				if (entries.size() > 1)
+					ret.add(getIssue(ConfigurationIssue.OVERRIDE, cfg.getKey(), rm.getKey(), null, entries));
+			}
+			for(Map.Entry<String, Set<String>> combination: getCombinations(cfg.getValue().keySet()).entrySet()) {
+				List<ConfigurationEntry> applied = new ArrayList<ConfigurationEntry>();
+				for(Map.Entry<String, List<ConfigurationEntry>> rm: cfg.getValue().entrySet())
+					if (combination.getValue().containsAll(getNames(rm.getKey())))
+						applied.addAll(rm.getValue());
+				if (applied.size() > 1)
+					addConflicts(ret, cfg.getKey(), combination.getKey(), applied);
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Get the sets of run modes declared for a PID and all the unions of them, by key
+	 * @param runModes the keys of the run modes declared
+	 * @return
+	 */
+	private Map<String, Set<String>> getCombinations(final Set<String> runModes) {
+		Map<String, Set<String>> ret = new LinkedHashMap<String, Set<String>>();
+		for(String key: runModes)
+			ret.put(key, getNames(key));
+		List<Set<String>> pending = new ArrayList<Set<String>>(ret.values());
+		for(int i=0; i<pending.size(); i++)
+			for(Set<String> other: new ArrayList<Set<String>>(ret.values())) {
+				Set<String> union = new TreeSet<String>(pending.get(i));
+				union.addAll(other);
+				String key = getRunModesKey(union);
+				if (!ret.containsKey(key)) {
+					ret.put(key, union);
+					pending.add(union);
+				}
+			}
+		return ret;
+	}
+	
+	private static Set<String> getNames(final String runModes) {
+		Set<String> ret = new TreeSet<String>();
+		if (StringUtils.isNotEmpty(runModes))
+			for(String name: runModes.split(","))
+				ret.add(name);
+		return ret;
+	}
+	
+	private static String getRunModesKey(final Set<String> names) {
+		return SlingModelReader.getRunModesKey(names.toArray(new String[names.size()]));
+	}
+	
+	/**
+	 * Write the configurations and the issues found to an XML file
+	 * @param index
+	 * @param issues
+	 * @param xmlFile
+	 * @throws Exception
+	 */
+	public void writeReport(@Nonnull final Map<String, Map<String, List<ConfigurationEntry>>> index, @Nonnull final List<ConfigurationIssue> issues, @Nonnull final String xmlFile) throws Exception {
+		Document document = XmlSupport.newDocument();
+		Element root = document.createElement("configurations");
+		document.appendChild(root);
+		Map<String, List<ConfigurationIssue>> issuesByPid = new HashMap<String, List<ConfigurationIssue>>();
+		for(ConfigurationIssue issue: issues) {
+			List<ConfigurationIssue> l = issuesByPid.get(issue.getPid());
+			if (l == null) {
+				l = new ArrayList<ConfigurationIssue>();
+				issuesByPid.put(issue.getPid(), l);
+			}
+			l.add(issue);
+		}
+		for(Map.Entry<String, Map<String, List<ConfigurationEntry>>> cfg: index.entrySet()) {
+			Element elCfg = document.createElement("configuration");
+			elCfg.setAttribute("key", cfg.getKey());
+			root.appendChild(elCfg);
+			for(List<ConfigurationEntry> entries: cfg.getValue().values())
+				for(ConfigurationEntry entry: entries)
+					elCfg.appendChild(createEntry(document, entry, "declaration"));
+			List<ConfigurationIssue> l = issuesByPid.get(cfg.getKey());
+			if (l != null)
+				for(ConfigurationIssue issue: l) {
+					Element elIssue = document.createElement(issue.getType());
+					elIssue.setAttribute("runModes", issue.getRunModes());
+					if (issue.getKey() != null)
+						elIssue.setAttribute("property", issue.getKey());
+					for(ConfigurationEntry entry: issue.getEntries()) {
+						Element el = document.createElement("feature");
+						el.setAttribute("name", entry.getFeature());
+						el.setAttribute("runModes", entry.getRunModes());
+						if (issue.getKey() != null && entry.getProperties().containsKey(issue.getKey()))
+							el.setAttribute("value", entry.getProperties().get(issue.getKey()));
+						elIssue.appendChild(el);
+					}
+					elCfg.appendChild(elIssue);
+				}
+		}
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(xmlFile))) {
+			XmlSupport.write(document, os);
+		}
+	}
+	
+	private void addConflicts(final List<ConfigurationIssue> ret, final String pid, final String runModes, final List<ConfigurationEntry> entries) {
+		Map<String, String> values = new HashMap<String, String>();
+		Map<String, Boolean> conflicting = new LinkedHashMap<String, Boolean>();
+		for(ConfigurationEntry entry: entries)
+			for(Map.Entry<String, String> property: entry.getProperties().entrySet()) {
+				String previous = values.put(property.getKey(), property.getValue());
+				if (previous != null && !previous.equals(property.getValue()))
+					conflicting.put(property.getKey(), Boolean.TRUE);
+			}
+		for(String key: conflicting.keySet()) {
+			List<ConfigurationEntry> l = new ArrayList<ConfigurationEntry>();
+			for(ConfigurationEntry entry: entries)
+				if (entry.getProperties().containsKey(key))
+					l.add(entry);
+			// the conflict is reported for the smallest set of run modes in which two different values apply
+			if (isFirstConflict(l, key, runModes))
+				ret.add(getIssue(ConfigurationIssue.CONFLICT, pid, runModes, key, l));
+		}
+	}
+	
+	private boolean isFirstConflict(final List<ConfigurationEntry> entries, final String key, final String runModes) {
+		for(int i=0; i<entries.size(); i++)
+			for(int j=i+1; j<entries.size(); j++) {
+				ConfigurationEntry first = entries.get(i), second = entries.get(j);
+				if (!StringUtils.equals(first.getProperties().get(key), second.getProperties().get(key))) {
+					Set<String> union = getNames(first.getRunModes());
+					union.addAll(getNames(second.getRunModes()));
+					if (getRunModesKey(union).equals(runModes))
+						return true;
+				}
+			}
+		return false;
+	}
+	
+	private ConfigurationIssue getIssue(final String type, final String pid, final String runModes, final String key, final List<ConfigurationEntry> entries) {
+		ConfigurationIssue ret = new ConfigurationIssue();
+		ret.setType(type);
+		ret.setPid(pid);
+		ret.setRunModes(runModes);
+		ret.setKey(key);
+		ret.setEntries(entries);
+		return ret;
+	}
+	
+	private Element createEntry(final Document document, final ConfigurationEntry entry, final String name) {
+		Element ret = document.createElement(name);
+		ret.setAttribute("pid", entry.getPid());
+		if (StringUtils.isNotEmpty(entry.getFactoryPid()))
+			ret.setAttribute("factoryPid", entry.getFactoryPid());
+		ret.setAttribute("feature", entry.getFeature());
+		ret.setAttribute("runModes", entry.getRunModes());
+		if (StringUtils.isNotEmpty(entry.getLocation()))
+			ret.setAttribute("location", entry.getLocation());
+		for(Map.Entry<String, String> property: entry.getProperties().entrySet()) {
+			Element p = document.createElement("property");
+			p.setAttribute("key", property.getKey());
+			if (property.getValue() != null)
+				p.setAttribute("value", property.getValue());
+			ret.appendChild(p);
+		}
+		return ret;
+	}
+	
+	private ConfigurationEntry getEntry(final Configuration cfg, final Feature feature, final String runModes) {
+		ConfigurationEntry ret = new ConfigurationEntry();
+		ret.setPid(cfg.getPid());
+		ret.setFactoryPid(cfg.getFactoryPid());
+		ret.setFeature(feature.getName());
+		ret.setRunModes(runModes);
+		ret.setLocation(cfg.getLocation());
+		Map<String, String> properties = new LinkedHashMap<String, String>();
+		Enumeration<String> keys = cfg.getProperties().keys();
+		while(keys.hasMoreElements()) {
+			String key = keys.nextElement();
+			properties.put(key, SlingModelReader.getPropertyValue(cfg.getProperties().get(key)));
+		}
+		ret.setProperties(properties);
+		return ret;
+	}
+	
+	private String getKey(final ConfigurationEntry entry) {
+		String ret = entry.getPid();
+		if (StringUtils.isNotEmpty(entry.getFactoryPid()))
+			ret = entry.getFactoryPid() + "~" + entry.getPid();
+		return ret;
+	}
+	
+	/**
+	 * Run the tool with the arguments of the command line
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void execute(final String[] args) throws Exception {
+		SlingModelReader reader = new SlingModelReader();
+		Model model = reader.readModel(args[0]);
+		ConfigurationAnalyzer analyzer = new ConfigurationAnalyzer();
+		Map<String, Map<String, List<ConfigurationEntry>>> index = analyzer.index(model);
+		List<ConfigurationIssue> issues = analyzer.analyze(index);
+		logger.debug("Found " + issues.size() + " overrides and conflicts");
+		analyzer.writeReport(index, issues, args[1]);
+	}
+
+	public static void main(final String[] args) {
+		try {
+			execute(args);
+		}
+		catch(Exception e) {
+			logger.error("The configurations could not be analyzed", e);
+			System.exit(1);
+		}
+	}
+}
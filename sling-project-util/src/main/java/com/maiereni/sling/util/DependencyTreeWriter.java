@@ -0,0 +1,39 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+
+import com.maiereni.sling.util.bean.DependencyTree;
+
+/**
+ * Writes a dependency tree to a stream in a specific format
+ * @author Petre Maierean
+ *
+ */
+public interface DependencyTreeWriter {
+	/**
+	 * Write the tree to the output stream. The stream is not closed
+	 * @param tree
+	 * @param os
+	 * @throws Exception
+	 */
+	void write(@Nonnull DependencyTree tree, @Nonnull OutputStream os) throws Exception;
+}
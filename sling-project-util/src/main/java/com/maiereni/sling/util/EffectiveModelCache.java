@@ -0,0 +1,205 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.provisioning.model.Artifact;
+import org.apache.sling.provisioning.model.ArtifactGroup;
+import org.apache.sling.provisioning.model.Configuration;
+import org.apache.sling.provisioning.model.Feature;
+import org.apache.sling.provisioning.model.Model;
+import org.apache.sling.provisioning.model.ModelConstants;
+import org.apache.sling.provisioning.model.ModelUtility;
+import org.apache.sling.provisioning.model.RunMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes the effective model of a deployment for a combination of run modes. The model is read once with 
+ * all its run modes side by side. For a combination of run modes, each feature keeps the artifacts, the configurations
+ * and the settings of the global run mode and of the active run modes, in this order, in one global run mode. The
+ * artifacts and the configurations listed in the active :remove run modes are then removed, and the variables replaced.
+ * The results are kept per normalized combination, so that asking again for author,oak_tar or oak_tar,author 
+ * costs a lookup
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class EffectiveModelCache {
+	private static final Logger logger = LoggerFactory.getLogger(EffectiveModelCache.class);
+	private Model model;
+	private Map<String, Model> effectiveModels = new ConcurrentHashMap<String, Model>();
+	
+	public EffectiveModelCache(@Nonnull final Model model) {
+		this.model = model;
+	}
+	
+	/**
+	 * Get the model as read, with all the run modes
+	 * @return
+	 */
+	public Model getModel() {
+		return model;
+	}
+	
+	/**
+	 * Get the effective model for a comma separated list of run modes
+	 * @param runModes
+	 * @return
+	 */
+	public Model getEffectiveModel(final String runModes) {
+		return getEffectiveModel(getRunModes(runModes));
+	}
+	
+	/**
+	 * Get the effective model for a set of run modes
+	 * @param runModes
+	 * @return
+	 */
+	public Model getEffectiveModel(@Nonnull final Set<String> runModes) {
+		String key = StringUtils.join(runModes, ",");
+		Model ret = effectiveModels.get(key);
+		if (ret == null) {
+			long start = System.currentTimeMillis();
+			ret = computeEffectiveModel(runModes);
+			Model prev = effectiveModels.putIfAbsent(key, ret);
+			if (prev != null)
+				ret = prev;
+			else
+				logger.debug("Computed the effective model for the run modes [" + key + "] in " + (System.currentTimeMillis() - start) + " ms");
+		}
+		return ret;
+	}
+	
+	/**
+	 * Parse a comma separated list of run modes into a sorted set
+	 * @param runModes
+	 * @return
+	 */
+	public static Set<String> getRunModes(final String runModes) {
+		Set<String> ret = new TreeSet<String>();
+		if (StringUtils.isNotBlank(runModes))
+			for(String s: runModes.split(",")) 
+				if (StringUtils.isNotBlank(s))
+					ret.add(s.trim());
+		return ret;
+	}
+	
+	private Model computeEffectiveModel(final Set<String> runModes) {
+		Model ret = new Model();
+		ret.setLocation(model.getLocation());
+		for(Feature feature: model.getFeatures()) {
+			Feature target = ret.getOrCreateFeature(feature.getName());
+			target.setLocation(feature.getLocation());
+			target.setType(feature.getType());
+			target.setVersion(feature.getVersion());
+			target.getVariables().putAll(feature.getVariables());
+			RunMode global = target.getOrCreateRunMode(null);
+			List<RunMode> removals = new ArrayList<RunMode>();
+			for(RunMode rm: feature.getRunModes()) {
+				if (!isActive(rm, runModes))
+					continue;
+				if (rm.isRunMode(ModelConstants.RUN_MODE_REMOVE))
+					removals.add(rm);
+				else
+					apply(rm, global);
+			}
+			for(RunMode rm: removals)
+				remove(rm, global);
+		}
+		return ModelUtility.getEffectiveModel(ret);
+	}
+	
+	private boolean isActive(final RunMode rm, final Set<String> runModes) {
+		boolean ret = true;
+		if (rm.getNames() != null) 
+			for(String name: rm.getNames()) 
+				if (!(name.equals(ModelConstants.RUN_MODE_REMOVE) || runModes.contains(name))) {
+					ret = false;
+					break;
+				}
+		return ret;
+	}
+	
+	private void apply(final RunMode rm, final RunMode global) {
+		for(ArtifactGroup group: rm.getArtifactGroups()) {
+			ArtifactGroup targetGroup = global.getOrCreateArtifactGroup(group.getStartLevel());
+			Iterator<Artifact> iArtifact = group.iterator();
+			while(iArtifact.hasNext()) {
+				Artifact artifact = iArtifact.next();
+				removeArtifact(global, artifact);
+				targetGroup.add(artifact);
+			}
+		}
+		Iterator<Configuration> iCfg = rm.getConfigurations().iterator();
+		while(iCfg.hasNext()) {
+			Configuration cfg = iCfg.next();
+			Configuration target = global.getOrCreateConfiguration(cfg.getPid(), cfg.getFactoryPid());
+			target.setLocation(cfg.getLocation());
+			Enumeration<String> keys = cfg.getProperties().keys();
+			while(keys.hasMoreElements()) {
+				String key = keys.nextElement();
+				target.getProperties().put(key, cfg.getProperties().get(key));
+			}
+		}
+		global.getSettings().putAll(rm.getSettings());
+	}
+	
+	private void remove(final RunMode rm, final RunMode global) {
+		for(ArtifactGroup group: rm.getArtifactGroups()) {
+			Iterator<Artifact> iArtifact = group.iterator();
+			while(iArtifact.hasNext()) 
+				removeArtifact(global, iArtifact.next());
+		}
+		Iterator<Configuration> iCfg = rm.getConfigurations().iterator();
+		while(iCfg.hasNext()) {
+			Configuration cfg = iCfg.next();
+			Configuration found = global.getConfiguration(cfg.getPid(), cfg.getFactoryPid());
+			if (found != null)
+				global.getConfigurations().remove(found);
+		}
+	}
+	
+	private void removeArtifact(final RunMode global, final Artifact artifact) {
+		for(ArtifactGroup group: global.getArtifactGroups()) {
+			Artifact found = null;
+			Iterator<Artifact> iArtifact = group.iterator();
+			while(iArtifact.hasNext()) {
+				Artifact a = iArtifact.next();
+				if (a.getGroupId().equals(artifact.getGroupId()) && a.getArtifactId().equals(artifact.getArtifactId()) 
+					&& StringUtils.equals(a.getClassifier(), artifact.getClassifier()) && StringUtils.equals(a.getType(), artifact.getType())) {
+					found = a;
+					break;
+				}
+			}
+			if (found != null)
+				group.remove(found);
+		}
+	}
+}
@@ -0,0 +1,367 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.LineNumberReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.provisioning.model.Artifact;
+import org.apache.sling.provisioning.model.ArtifactGroup;
+import org.apache.sling.provisioning.model.Configuration;
+import org.apache.sling.provisioning.model.Feature;
+import org.apache.sling.provisioning.model.Model;
+import org.apache.sling.provisioning.model.ModelConstants;
+import org.apache.sling.provisioning.model.ModelUtility;
+import org.apache.sling.provisioning.model.RunMode;
+import org.apache.sling.provisioning.model.Section;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts provisioning models to the JSON files of the Sling Feature Model, one file for each feature and combination 
+ * of run modes. The values of the configurations which JSON would not type, such as Integer, get a type hint after the 
+ * name of the property. The :remove run mode has no equivalent and is left out with a warning
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class FeatureModelConverter {
+	private static final Logger logger = LoggerFactory.getLogger(FeatureModelConverter.class);
+	public static final String FEATURE_GROUP = "feature.group.id";
+	public static final String FEATURE_VERSION = "feature.version";
+	public static final String CONVERT_THREADS = "convert.threads";
+	private static final String FEATURE_TYPE = "slingosgifeature";
+	private static final String RUN_MODES = "runModes";
+	private SlingModelReader reader;
+	private String groupId, version;
+	private int threads;
+	
+	public FeatureModelConverter(@Nonnull final SlingModelReader reader) {
+		this.reader = reader;
+		groupId = System.getProperty(FEATURE_GROUP, "generated");
+		version = System.getProperty(FEATURE_VERSION, "1.0.0");
+		threads = SlingUtil.getThreads(CONVERT_THREADS);
+	}
+	
+	/**
+	 * Convert the models of several directories in parallel. The features of each model are written to a sub directory
+	 * of the output directory named after the model directory, followed by a counter when several model directories 
+	 * have the same name
+	 * @param modelDirs
+	 * @param outputDir
+	 * @return the files written for each model directory. The directories which cannot be converted are left out
+	 * @throws Exception
+	 */
+	public Map<String, List<File>> convert(@Nonnull final List<String> modelDirs, @Nonnull final File outputDir) throws Exception {
+		Map<String, List<File>> ret = new LinkedHashMap<String, List<File>>();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Map<String, Future<List<File>>> futures = new LinkedHashMap<String, Future<List<File>>>();
+			Set<String> names = new HashSet<String>();
+			for(final String modelDir: modelDirs) {
+				String name = new File(modelDir).getAbsoluteFile().getName();
+				for(int i=2; !names.add(name); i++)
+					name = new File(modelDir).getAbsoluteFile().getName() + "-" + i;
+				final File dir = new File(outputDir, name);
+				futures.put(modelDir, executor.submit(() -> convert(reader.readModel(modelDir), dir)));
+			}
+			for(Map.Entry<String, Future<List<File>>> entry: futures.entrySet()) {
+				try {
+					ret.put(entry.getKey(), entry.getValue().get());
+				}
+				catch(Exception e) {
+					logger.error("Failed to convert " + entry.getKey(), e);
+				}
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		return ret;
+	}
+	
+	/**
+	 * Convert a model
+	 * @param model
+	 * @param outputDir
+	 * @return the files written
+	 * @throws Exception
+	 */
+	public List<File> convert(@Nonnull final Model model, @Nonnull final File outputDir) throws Exception {
+		List<File> ret = new ArrayList<File>();
+		if (!outputDir.isDirectory() && !outputDir.mkdirs())
+			throw new Exception("Cannot create " + outputDir.getPath());
+		Model effectiveModel = ModelUtility.getEffectiveModel(model);
+		for(Feature feature: effectiveModel.getFeatures()) {
+			Map<String, List<Section>> sections = getSections(feature);
+			List<RunMode> runModes = new ArrayList<RunMode>();
+			for(RunMode rm: feature.getRunModes()) {
+				if (rm.isRunMode(ModelConstants.RUN_MODE_REMOVE)) {
+					if (!isEmpty(rm))
+						logger.warn("The " + ModelConstants.RUN_MODE_REMOVE + " run mode of the feature " + feature.getName() + " is left out, the Feature Model has no equivalent");
+					continue;
+				}
+				runModes.add(rm);
+			}
+			for(String key: sections.keySet())
+				if (feature.getRunMode(key.isEmpty() ? null : key.split(",")) == null)
+					runModes.add(new RunMode(key.isEmpty() ? null : key.split(",")));
+			for(RunMode rm: runModes) {
+				List<Section> rmSections = sections.get(SlingModelReader.getRunModesKey(rm.getNames()));
+				if (isEmpty(rm) && rmSections == null)
+					continue;
+				String classifier = getClassifier(rm);
+				String artifactId = getArtifactId(feature);
+				File file = new File(outputDir, artifactId + (classifier == null ? "" : "-" + classifier) + ".json");
+				try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+					JsonWriter json = new JsonWriter(writer);
+					writeFeature(json, feature, rm, artifactId, classifier, rmSections);
+					json.flush();
+				}
+				ret.add(file);
+			}
+		}
+		logger.debug("Converted " + effectiveModel.getFeatures().size() + " features to " + ret.size() + " files in " + outputDir.getPath());
+		return ret;
+	}
+	
+	private void writeFeature(final JsonWriter json, final Feature feature, final RunMode rm, final String artifactId, final String classifier, final List<Section> sections) throws Exception {
+		String featureVersion = StringUtils.defaultIfBlank(feature.getVersion(), version);
+		json.beginObject();
+		json.name("id").value(groupId + ":" + artifactId + ":" + FEATURE_TYPE + (classifier == null ? "" : ":" + classifier) + ":" + featureVersion);
+		if (classifier == null && !feature.getVariables().isEmpty()) {
+			json.name("variables").beginObject();
+			for(Map.Entry<String, String> entry: feature.getVariables())
+				json.name(entry.getKey()).value(entry.getValue());
+			json.endObject();
+		}
+		if (!rm.getSettings().isEmpty()) {
+			json.name("framework-properties").beginObject();
+			for(Map.Entry<String, String> entry: rm.getSettings())
+				json.name(entry.getKey()).value(entry.getValue());
+			json.endObject();
+		}
+		json.name("bundles").beginArray();
+		for(ArtifactGroup group: rm.getArtifactGroups()) {
+			Iterator<Artifact> iArtifact = group.iterator();
+			while(iArtifact.hasNext()) {
+				Artifact artifact = iArtifact.next();
+				json.beginObject();
+				json.name("id").value(getId(artifact));
+				if (group.getStartLevel() > 0)
+					json.name("start-order").value("" + group.getStartLevel());
+				for(Map.Entry<String, String> entry: artifact.getMetadata().entrySet())
+					json.name(entry.getKey()).value(entry.getValue());
+				json.endObject();
+			}
+		}
+		json.endArray();
+		json.name("configurations").beginObject();
+		for(Configuration cfg: rm.getConfigurations()) {
+			if (cfg.isSpecial()) {
+				logger.debug("Skip the special configuration " + cfg.getPid() + " of " + feature.getName());
+				continue;
+			}
+			json.name(StringUtils.isEmpty(cfg.getFactoryPid()) ? cfg.getPid() : cfg.getFactoryPid() + "~" + cfg.getPid());
+			json.beginObject();
+			Enumeration<String> keys = cfg.getProperties().keys();
+			while(keys.hasMoreElements()) {
+				String key = keys.nextElement();
+				Object value = cfg.getProperties().get(key);
+				json.name(key + getTypeHint(value));
+				writeValue(json, value);
+			}
+			json.endObject();
+		}
+		json.endObject();
+		if (sections != null)
+			for(Section section: sections)
+				json.name(section.getName().replaceFirst("^:", "") + ":TEXT|false").value(section.getContents());
+		json.endObject();
+	}
+	
+	private void writeValue(final JsonWriter json, final Object value) throws Exception {
+		if (value == null)
+			json.value((String)null);
+		else if (value.getClass().isArray()) {
+			json.beginArray();
+			for(int i=0; i<Array.getLength(value); i++)
+				writeValue(json, Array.get(value, i));
+			json.endArray();
+		}
+		else if (value instanceof Boolean)
+			json.value(((Boolean)value).booleanValue());
+		else if (value instanceof Double || value instanceof Float)
+			json.value(((Number)value).doubleValue());
+		else if (value instanceof Number)
+			json.value(((Number)value).longValue());
+		else
+			json.value(value.toString());
+	}
+	
+	/**
+	 * Get the type hint of a configuration value. The Feature Model reads the JSON numbers as Long or Double, so the 
+	 * other types, and the arrays of primitives, are given explicitly
+	 * @param value
+	 * @return the hint preceded by a colon, or an empty string if none is needed
+	 */
+	private static String getTypeHint(final Object value) {
+		String ret = "";
+		if (value != null) {
+			Class<?> type = value.getClass();
+			if (type.isArray()) {
+				Class<?> component = type.getComponentType();
+				if (component.isPrimitive() || !isJsonType(component))
+					ret = ":" + component.getSimpleName() + "[]";
+			}
+			else if (!isJsonType(type))
+				ret = ":" + type.getSimpleName();
+		}
+		return ret;
+	}
+	
+	private static boolean isJsonType(final Class<?> type) {
+		return type == String.class || type == Long.class || type == Double.class || type == Boolean.class;
+	}
+	
+	/**
+	 * Group the additional sections of a feature by the key of their runModes attribute
+	 * @param feature
+	 * @return
+	 */
+	private static Map<String, List<Section>> getSections(final Feature feature) {
+		Map<String, List<Section>> ret = new LinkedHashMap<String, List<Section>>();
+		for(Section section: feature.getAdditionalSections()) {
+			String runModes = section.getAttributes().get(RUN_MODES);
+			String key = StringUtils.isBlank(runModes) ? "" : SlingModelReader.getRunModesKey(StringUtils.deleteWhitespace(runModes).split(","));
+			List<Section> l = ret.get(key);
+			if (l == null) {
+				l = new ArrayList<Section>();
+				ret.put(key, l);
+			}
+			l.add(section);
+		}
+		return ret;
+	}
+	
+	private boolean isEmpty(final RunMode rm) {
+		for(ArtifactGroup group: rm.getArtifactGroups())
+			if (!group.isEmpty())
+				return false;
+		return rm.getConfigurations().isEmpty() && rm.getSettings().isEmpty();
+	}
+	
+	/**
+	 * Get the id of an artifact in the format groupId:artifactId[:type[:classifier]]:version
+	 * @param artifact
+	 * @return
+	 */
+	private static String getId(final Artifact artifact) {
+		StringBuilder sb = new StringBuilder(artifact.getGroupId()).append(':').append(artifact.getArtifactId());
+		boolean hasClassifier = StringUtils.isNotBlank(artifact.getClassifier());
+		if (hasClassifier || !"jar".equals(artifact.getType()))
+			sb.append(':').append(artifact.getType());
+		if (hasClassifier)
+			sb.append(':').append(artifact.getClassifier());
+		return sb.append(':').append(artifact.getVersion()).toString();
+	}
+	
+	private static String getArtifactId(final Feature feature) {
+		String ret = feature.getName().replaceFirst("^:", "").replaceAll("[^A-Za-z0-9_.-]", "-");
+		return ret.isEmpty() ? "feature" : ret;
+	}
+	
+	private static String getClassifier(final RunMode rm) {
+		String key = SlingModelReader.getRunModesKey(rm.getNames());
+		return key.isEmpty() ? null : key.replace(':', '-').replace(',', '_');
+	}
+	
+	/**
+	 * Read the model directories from the arguments. An argument starting with @ names a file which lists one model 
+	 * directory per line
+	 * @param args
+	 * @param start
+	 * @return
+	 * @throws Exception
+	 */
+	private static List<String> getModelDirs(final String[] args, final int start) throws Exception {
+		List<String> ret = new ArrayList<String>();
+		for(int i=start; i<args.length; i++) {
+			if (args[i].startsWith("@")) {
+				try (FileReader fr = new FileReader(args[i].substring(1))) {
+					LineNumberReader lnr = new LineNumberReader(fr);
+					String s = null;
+					while((s = lnr.readLine()) != null) {
+						s = s.trim();
+						if (s.length() > 0 && !s.startsWith("#"))
+							ret.add(s);
+					}
+				}
+			}
+			else
+				ret.add(args[i]);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Run the tool with the arguments of the command line
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void execute(final String[] args) throws Exception {
+		FeatureModelConverter converter = new FeatureModelConverter(new SlingModelReader());
+		List<String> modelDirs = getModelDirs(args, 1);
+		long start = System.currentTimeMillis();
+		Map<String, List<File>> files = converter.convert(modelDirs, new File(args[0]));
+		logger.info("Converted " + files.size() + " of " + modelDirs.size() + " models in " + (System.currentTimeMillis() - start) + " ms");
+		if (files.size() < modelDirs.size())
+			throw new Exception((modelDirs.size() - files.size()) + " of " + modelDirs.size() + " models could not be converted");
+	}
+
+	public static void main(final String[] args) {
+		try {
+			execute(args);
+		}
+		catch(Exception e) {
+			logger.error("The models could not be converted", e);
+			System.exit(1);
+		}
+	}
+}
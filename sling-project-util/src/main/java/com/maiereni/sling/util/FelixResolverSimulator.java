@@ -0,0 +1,268 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.felix.resolver.ResolutionError;
+import org.apache.felix.resolver.ResolverImpl;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.resource.Requirement;
+import org.osgi.resource.Resource;
+import org.osgi.resource.Wire;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.BundleResolution;
+import com.maiereni.sling.util.bean.DependencyTree;
+import com.maiereni.sling.util.bean.PackageWire;
+import com.maiereni.sling.util.bean.ResolutionResult;
+
+/**
+ * Resolves the bundles of a launchpad with the resolver of the Felix framework, without installing them. Each bundle 
+ * is given to the resolver as a resource built from its manifest. The system bundle exports the packages of the 
+ * framework and of the Java platform, as listed in the default properties of Felix for the Java version given by 
+ * the JVM property osgi.java.version (1.8 by default), plus the packages of org.osgi.framework.system.packages.extra.
+ * The bundle org.apache.felix.framework of the model, if any, stands for the system bundle.
+ * The generic capabilities and requirements of the Provide-Capability and Require-Capability headers are given to 
+ * the resolver as well. The Require-Bundle and Fragment-Host headers are not read from the manifests, so that the bundles which depend on 
+ * them may be wired differently than at startup
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class FelixResolverSimulator {
+	private static final Logger logger = LoggerFactory.getLogger(FelixResolverSimulator.class);
+	public static final String JAVA_VERSION = FrameworkProperties.JAVA_VERSION;
+	public static final String SYSTEM_PACKAGES_EXTRA = FrameworkProperties.SYSTEM_PACKAGES_EXTRA;
+	public static final String RESOLVER_THREADS = "resolver.threads";
+	
+	/**
+	 * Resolve a list of bundles
+	 * @param bundles
+	 * @return
+	 * @throws Exception
+	 */
+	public ResolutionResult resolve(@Nonnull final List<Bundle> bundles) throws Exception {
+		long start = System.currentTimeMillis();
+		List<ManifestResource> resources = new ArrayList<ManifestResource>();
+		Bundle framework = null;
+		for(Bundle bundle: bundles) {
+			if (StringUtils.isBlank(bundle.getName()))
+				logger.debug("Skip " + bundle.getLocation() + " which is not a bundle");
+			else if (bundle.getName().equals(FrameworkProperties.FRAMEWORK))
+				framework = bundle;
+			else
+				resources.add(new ManifestResource(bundle));
+		}
+		resources.add(0, getSystemBundle(framework));
+		LaunchpadResolveContext context = new LaunchpadResolveContext(resources);
+		CollectingLogger resolverLogger = new CollectingLogger();
+		int threads = Integer.getInteger(RESOLVER_THREADS, Runtime.getRuntime().availableProcessors());
+		ResolverImpl resolver = new ResolverImpl(resolverLogger, threads);
+		long startResolve = System.currentTimeMillis();
+		Map<Resource, List<Wire>> wiring = resolver.resolve(context);
+		long end = System.currentTimeMillis();
+		logger.debug("Prepared " + resources.size() + " resources in " + (startResolve - start) + " ms, resolved them in " + (end - startResolve) + " ms");
+		
+		ResolutionResult ret = new ResolutionResult();
+		List<BundleResolution> l = new ArrayList<BundleResolution>();
+		int resolved = 0;
+		for(ManifestResource resource: resources) {
+			BundleResolution resolution = getResolution(resource, wiring.get(resource), resolverLogger.errors.get(resource), context);
+			if (resolution.isResolved())
+				resolved++;
+			l.add(resolution);
+		}
+		ret.setBundles(l);
+		ret.setResolved(resolved);
+		ret.setResolutionTime(end - startResolve);
+		return ret;
+	}
+	
+	/**
+	 * Write the result of a resolution to an XML file
+	 * @param result
+	 * @param xmlFile
+	 * @throws Exception
+	 */
+	public void writeReport(@Nonnull final ResolutionResult result, @Nonnull final String xmlFile) throws Exception {
+		Document document = XmlSupport.newDocument();
+		Element root = document.createElement("resolution");
+		root.setAttribute("bundles", "" + result.getBundles().size());
+		root.setAttribute("resolved", "" + result.getResolved());
+		root.setAttribute("time", "" + result.getResolutionTime());
+		document.appendChild(root);
+		for(BundleResolution resolution: result.getBundles()) {
+			Element elBundle = document.createElement("bundle");
+			elBundle.setAttribute("name", resolution.getBundle().getName());
+			elBundle.setAttribute("version", resolution.getBundle().getVersion());
+			elBundle.setAttribute("pos", "" + resolution.getBundle().getPos());
+			elBundle.setAttribute("resolved", "" + resolution.isResolved());
+			if (resolution.getWires() != null)
+				for(PackageWire wire: resolution.getWires()) {
+					Element el = document.createElement("wire");
+					el.setAttribute("package", wire.getPackageName());
+					el.setAttribute("version", wire.getVersion());
+					el.setAttribute("provider", wire.getProvider().getName());
+					el.setAttribute("pos", "" + wire.getProvider().getPos());
+					elBundle.appendChild(el);
+				}
+			if (resolution.getFailureType() != null) {
+				Element el = document.createElement("failure");
+				el.setAttribute("type", resolution.getFailureType());
+				if (resolution.getFailure() != null)
+					el.setTextContent(resolution.getFailure());
+				elBundle.appendChild(el);
+			}
+			if (resolution.getMissing() != null)
+				for(String missing: resolution.getMissing()) {
+					Element el = document.createElement("missing");
+					el.setTextContent(missing);
+					elBundle.appendChild(el);
+				}
+			root.appendChild(elBundle);
+		}
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(xmlFile))) {
+			XmlSupport.write(document, os);
+		}
+	}
+	
+	private BundleResolution getResolution(final ManifestResource resource, final List<Wire> wires, final LoggedError error, final LaunchpadResolveContext context) {
+		BundleResolution ret = new BundleResolution();
+		ret.setBundle(resource.getBundle());
+		ret.setResolved(wires != null);
+		if (wires != null) {
+			List<PackageWire> l = new ArrayList<PackageWire>();
+			for(Wire wire: wires) 
+				if (wire.getCapability().getNamespace().equals(PackageNamespace.PACKAGE_NAMESPACE) && wire.getProvider() instanceof ManifestResource) {
+					PackageWire packageWire = new PackageWire();
+					packageWire.setPackageName((String)wire.getCapability().getAttributes().get(PackageNamespace.PACKAGE_NAMESPACE));
+					packageWire.setVersion("" + wire.getCapability().getAttributes().get(PackageNamespace.CAPABILITY_VERSION_ATTRIBUTE));
+					packageWire.setProvider(((ManifestResource)wire.getProvider()).getBundle());
+					l.add(packageWire);
+				}
+			ret.setWires(l);
+		}
+		else {
+			List<String> missing = new ArrayList<String>();
+			if (error != null) {
+				ret.setFailureType(error.type);
+				ret.setFailure(error.error.getMessage());
+				for(Requirement requirement: error.error.getUnresolvedRequirements())
+					missing.add(requirement.toString());
+			}
+			else {
+				for(Requirement requirement: resource.getRequirements(null)) {
+					boolean optional = requirement instanceof ManifestResource.ManifestRequirement && ((ManifestResource.ManifestRequirement)requirement).isOptional();
+					if (!optional && context.findProviders(requirement).isEmpty())
+						missing.add(requirement.toString());
+				}
+				ret.setFailureType(missing.isEmpty() ? BundleResolution.DEPENDENCY : BundleResolution.MISSING);
+			}
+			ret.setMissing(missing);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Build the system bundle from the default properties of the Felix framework
+	 * @param framework the framework bundle of the model, or null
+	 * @return
+	 * @throws Exception
+	 */
+	private ManifestResource getSystemBundle(final Bundle framework) throws Exception {
+		ManifestResource ret = new ManifestResource(FrameworkProperties.getSystemBundle(framework));
+		logger.debug("The system bundle exports " + ret.getCapabilities(PackageNamespace.PACKAGE_NAMESPACE).size() + " packages");
+		return ret;
+	}
+	
+	/**
+	 * An error reported by the resolver, with the failure type given by the method which reported it
+	 */
+	private static class LoggedError {
+		private String type;
+		private ResolutionError error;
+		
+		public LoggedError(final String type, final ResolutionError error) {
+			this.type = type;
+			this.error = error;
+		}
+	}
+	
+	/**
+	 * Keeps the errors reported by the resolver for each resource it could not resolve
+	 */
+	private static class CollectingLogger extends org.apache.felix.resolver.Logger {
+		private Map<Resource, LoggedError> errors = new ConcurrentHashMap<Resource, LoggedError>();
+		
+		public CollectingLogger() {
+			super(logger.isDebugEnabled() ? LOG_DEBUG : LOG_WARNING);
+		}
+		
+		@Override
+		protected void doLog(int level, String msg, Throwable throwable) {
+			if (level <= LOG_WARNING)
+				logger.warn(msg, throwable);
+			else
+				logger.debug(msg, throwable);
+		}
+		
+		@Override
+		public void logUsesConstraintViolation(Resource resource, ResolutionError error) {
+			errors.put(resource, new LoggedError(BundleResolution.USES, error));
+		}
+	}
+	
+	/**
+	 * Run the tool with the arguments of the command line
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void execute(final String[] args) throws Exception {
+		SlingModelInterpreter interpreter = new SlingModelInterpreter();
+		DependencyTree tree = interpreter.getDependencyTree(args[0]);
+		List<Bundle> bundles = tree.getBundles();
+		FelixResolverSimulator simulator = new FelixResolverSimulator();
+		ResolutionResult result = simulator.resolve(bundles);
+		logger.info("Resolved " + result.getResolved() + " of " + result.getBundles().size() + " bundles in " + result.getResolutionTime() + " ms");
+		simulator.writeReport(result, args[1]);
+	}
+
+	public static void main(final String[] args) {
+		try {
+			execute(args);
+		}
+		catch(Exception e) {
+			logger.error("The bundles could not be resolved", e);
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Keeps the values read from files or directories for the lifetime of a long running process. An entry is 
+ * stamped with the size and the modification time of its file, or of the files of its directory, and is no 
+ * longer returned once they have changed, so that an edited model or a rebuilt SNAPSHOT jar is read again
+ * 
+ * @author Petre Maierean
+ *
+ */
+class FileCache<V> {
+	private Map<String, Entry<V>> entries = new ConcurrentHashMap<String, Entry<V>>();
+	
+	private static class Entry<V> {
+		private String stamp;
+		private V value;
+		private Entry(final String stamp, final V value) {
+			this.stamp = stamp;
+			this.value = value;
+		}
+	}
+	
+	/**
+	 * Get the value kept for a file
+	 * @param key
+	 * @param file
+	 * @return null if there is no value or if the file has changed since it was read
+	 */
+	V get(@Nonnull final String key, @Nonnull final File file) {
+		Entry<V> entry = entries.get(key);
+		V ret = null;
+		if (entry != null) {
+			if (entry.stamp.equals(getStamp(file)))
+				ret = entry.value;
+			else
+				entries.remove(key, entry);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Keep the value read from a file. If another thread has kept a value for the same version of the file, that 
+	 * value is returned so that the callers share it
+	 * @param key
+	 * @param file
+	 * @param value
+	 * @return
+	 */
+	V put(@Nonnull final String key, @Nonnull final File file, @Nonnull final V value) {
+		Entry<V> entry = new Entry<V>(getStamp(file), value);
+		Entry<V> prev = entries.putIfAbsent(key, entry);
+		if (prev != null) {
+			if (prev.stamp.equals(entry.stamp))
+				return prev.value;
+			entries.replace(key, prev, entry);
+		}
+		return value;
+	}
+	
+	void clear() {
+		entries.clear();
+	}
+	
+	static String getStamp(final File file) {
+		StringBuilder sb = new StringBuilder();
+		if (file.isDirectory()) {
+			File[] files = file.listFiles();
+			if (files != null) {
+				Arrays.sort(files);
+				for(File f: files)
+					sb.append(f.getName()).append(':').append(f.length()).append(':').append(f.lastModified()).append(';');
+			}
+		}
+		else
+			sb.append(file.length()).append(':').append(file.lastModified());
+		return sb.toString();
+	}
+}
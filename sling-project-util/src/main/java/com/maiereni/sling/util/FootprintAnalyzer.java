@@ -0,0 +1,228 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import org.apache.sling.provisioning.model.Artifact;
+import org.apache.sling.provisioning.model.ArtifactGroup;
+import org.apache.sling.provisioning.model.Feature;
+import org.apache.sling.provisioning.model.Model;
+import org.apache.sling.provisioning.model.ModelUtility;
+import org.apache.sling.provisioning.model.RunMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.BundleFootprint;
+import com.maiereni.sling.util.bean.Footprint;
+
+/**
+ * Measures the footprint of the bundles of a model: the size of the jars, the compressed and uncompressed size
+ * of their entries, the number of classes and the number of embedded jars. The figures are read from the central 
+ * directory of the jars, without decompressing them, and are kept by the bundle resolver together with the manifests.
+ * The bundles are measured in parallel, on a number of threads given by the JVM property scan.threads, and the
+ * figures are added up by feature, by run mode and by feature and run mode
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class FootprintAnalyzer {
+	private static final Logger logger = LoggerFactory.getLogger(FootprintAnalyzer.class);
+	private BundleResolver bundleResolver;
+	private int threads;
+	
+	public FootprintAnalyzer(@Nonnull final BundleResolver bundleResolver) {
+		this.bundleResolver = bundleResolver;
+		threads = SlingUtil.getThreads(PackageUsageScanner.SCAN_THREADS);
+	}
+	
+	/**
+	 * Measure the bundles of all the features and run modes of a model. The artifacts which cannot be resolved are left out
+	 * @param model
+	 * @return the footprints in the order of the features, the run modes and the artifacts
+	 * @throws Exception
+	 */
+	public List<BundleFootprint> analyze(@Nonnull final Model model) throws Exception {
+		List<BundleFootprint> ret = new ArrayList<BundleFootprint>();
+		Model effectiveModel = ModelUtility.getEffectiveModel(model);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<BundleFootprint>> futures = new ArrayList<Future<BundleFootprint>>();
+			for(final Feature feature: effectiveModel.getFeatures()) {
+				for(RunMode rm: feature.getRunModes()) {
+					final String runModes = SlingModelReader.getRunModesKey(rm.getNames());
+					for(ArtifactGroup group: rm.getArtifactGroups()) {
+						Iterator<Artifact> iArtifact = group.iterator();
+						while(iArtifact.hasNext()) {
+							final Artifact artifact = iArtifact.next();
+							futures.add(executor.submit(() -> measure(artifact, feature, runModes)));
+						}
+					}
+				}
+			}
+			for(Future<BundleFootprint> future: futures) {
+				BundleFootprint footprint = future.get();
+				if (footprint != null)
+					ret.add(footprint);
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		return ret;
+	}
+	
+	/**
+	 * Add up the footprints by a key
+	 * @param footprints
+	 * @param byFeature include the name of the feature in the key
+	 * @param byRunModes include the run modes in the key
+	 * @return the sums sorted by key. The feature and the run modes are separated by a slash
+	 */
+	public Map<String, Footprint> aggregate(@Nonnull final List<BundleFootprint> footprints, final boolean byFeature, final boolean byRunModes) {
+		Map<String, Footprint> ret = new TreeMap<String, Footprint>();
+		for(BundleFootprint footprint: footprints) {
+			String key = (byFeature ? footprint.getBundle().getFeatureName() : "") + (byFeature && byRunModes ? "/" : "") + 
+				(byRunModes ? footprint.getRunModes() : "");
+			Footprint sum = ret.get(key);
+			if (sum == null) {
+				sum = new Footprint();
+				ret.put(key, sum);
+			}
+			sum.add(footprint.getFootprint());
+		}
+		return ret;
+	}
+	
+	/**
+	 * Write the footprints to an XML file: the total, the sums by feature, by run mode and by feature and run mode, 
+	 * then the bundles from the largest to the smallest
+	 * @param footprints
+	 * @param xmlFile
+	 * @throws Exception
+	 */
+	public void writeReport(@Nonnull final List<BundleFootprint> footprints, @Nonnull final String xmlFile) throws Exception {
+		Document document = XmlSupport.newDocument();
+		Element root = document.createElement("footprint");
+		document.appendChild(root);
+		Footprint total = new Footprint();
+		for(BundleFootprint footprint: footprints)
+			total.add(footprint.getFootprint());
+		setAttributes(root, total);
+		for(Map.Entry<String, Footprint> entry: aggregate(footprints, true, false).entrySet()) {
+			Element el = document.createElement("feature");
+			el.setAttribute("name", entry.getKey());
+			setAttributes(el, entry.getValue());
+			root.appendChild(el);
+		}
+		for(Map.Entry<String, Footprint> entry: aggregate(footprints, false, true).entrySet()) {
+			Element el = document.createElement("runMode");
+			el.setAttribute("names", entry.getKey());
+			setAttributes(el, entry.getValue());
+			root.appendChild(el);
+		}
+		for(Map.Entry<String, Footprint> entry: aggregate(footprints, true, true).entrySet()) {
+			Element el = document.createElement("featureRunMode");
+			int ix = entry.getKey().indexOf('/');
+			el.setAttribute("feature", entry.getKey().substring(0, ix));
+			el.setAttribute("runModes", entry.getKey().substring(ix + 1));
+			setAttributes(el, entry.getValue());
+			root.appendChild(el);
+		}
+		List<BundleFootprint> sorted = new ArrayList<BundleFootprint>(footprints);
+		Collections.sort(sorted, (o1, o2) -> Long.compare(o2.getFootprint().getSize(), o1.getFootprint().getSize()));
+		for(BundleFootprint footprint: sorted) {
+			Element el = document.createElement("bundle");
+			el.setAttribute("name", footprint.getBundle().getName());
+			el.setAttribute("version", footprint.getBundle().getVersion());
+			el.setAttribute("feature", footprint.getBundle().getFeatureName());
+			el.setAttribute("runModes", footprint.getRunModes());
+			setAttributes(el, footprint.getFootprint());
+			el.removeAttribute("bundles");
+			root.appendChild(el);
+		}
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(xmlFile))) {
+			XmlSupport.write(document, os);
+		}
+	}
+	
+	private BundleFootprint measure(final Artifact artifact, final Feature feature, final String runModes) throws Exception {
+		BundleFootprint ret = null;
+		Bundle bundle = bundleResolver.getBundle(artifact, feature);
+		if (bundle != null) {
+			ret = new BundleFootprint();
+			ret.setBundle(bundle);
+			ret.setRunModes(runModes);
+			ret.setFootprint(bundleResolver.getFootprint(new File(bundle.getLocation())));
+		}
+		return ret;
+	}
+	
+	private void setAttributes(final Element el, final Footprint footprint) {
+		el.setAttribute("bundles", "" + footprint.getBundles());
+		el.setAttribute("size", "" + footprint.getSize());
+		el.setAttribute("compressed", "" + footprint.getCompressedSize());
+		el.setAttribute("uncompressed", "" + footprint.getUncompressedSize());
+		el.setAttribute("entries", "" + footprint.getEntries());
+		el.setAttribute("classes", "" + footprint.getClasses());
+		el.setAttribute("embeddedJars", "" + footprint.getEmbeddedJars());
+	}
+	
+	/**
+	 * Run the tool with the arguments of the command line
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void execute(final String[] args) throws Exception {
+		SlingModelReader reader = new SlingModelReader();
+		Model model = reader.readModel(args[0]);
+		FootprintAnalyzer analyzer = new FootprintAnalyzer(new BundleResolver());
+		long start = System.currentTimeMillis();
+		List<BundleFootprint> footprints = analyzer.analyze(model);
+		logger.debug("Measured " + footprints.size() + " bundles in " + (System.currentTimeMillis() - start) + " ms");
+		analyzer.writeReport(footprints, args[1]);
+	}
+
+	public static void main(final String[] args) {
+		try {
+			execute(args);
+		}
+		catch(Exception e) {
+			logger.error("The footprint could not be measured", e);
+			System.exit(1);
+		}
+	}
+}
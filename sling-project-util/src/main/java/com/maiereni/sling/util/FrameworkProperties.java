@@ -0,0 +1,102 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.felix.framework.Felix;
+
+import com.maiereni.sling.util.bean.Bundle;
+
+/**
+ * Reads the packages and the capabilities of the system bundle from the default properties of the Felix framework, 
+ * for the Java version given by the JVM property osgi.java.version (1.8 by default). The packages given by the JVM
+ * property org.osgi.framework.system.packages.extra are exported as well
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class FrameworkProperties {
+	public static final String JAVA_VERSION = "osgi.java.version";
+	public static final String SYSTEM_PACKAGES_EXTRA = "org.osgi.framework.system.packages.extra";
+	public static final String FRAMEWORK = "org.apache.felix.framework";
+	public static final String SYSTEM_BUNDLE = "system.bundle";
+	private static Properties defaults;
+	
+	/**
+	 * Build the system bundle, with the clauses of its Export-Package and Provide-Capability headers
+	 * @param framework the framework bundle of the model, or null
+	 * @return
+	 * @throws Exception
+	 */
+	public static Bundle getSystemBundle(final Bundle framework) throws Exception {
+		Properties properties = getDefaults();
+		Map<String, String> variables = new HashMap<String, String>();
+		variables.put("java.specification.version", System.getProperty(JAVA_VERSION, "1.8"));
+		Bundle ret = new Bundle();
+		ret.setName(framework == null ? SYSTEM_BUNDLE : framework.getName());
+		ret.setVersion(framework == null ? "0.0.0" : framework.getVersion());
+		ret.setLocation(framework == null ? null : framework.getLocation());
+		ret.setFeatureName(framework == null ? null : framework.getFeatureName());
+		ret.setPos(0);
+		String packages = substitute(properties.getProperty("org.osgi.framework.system.packages", ""), properties, variables);
+		if (StringUtils.isNotBlank(System.getProperty(SYSTEM_PACKAGES_EXTRA)))
+			packages = packages + "," + System.getProperty(SYSTEM_PACKAGES_EXTRA);
+		ret.setExportPackages(ManifestClause.split(packages, ','));
+		String capabilities = substitute(properties.getProperty("org.osgi.framework.system.capabilities", ""), properties, variables);
+		ret.setProvideCapabilities(ManifestClause.split(capabilities, ','));
+		return ret;
+	}
+	
+	private static synchronized Properties getDefaults() throws Exception {
+		if (defaults == null) {
+			Properties properties = new Properties();
+			try (InputStream is = Felix.class.getResourceAsStream("/default.properties")) {
+				properties.load(is);
+			}
+			defaults = properties;
+		}
+		return defaults;
+	}
+	
+	/**
+	 * Replace the variables ${name} of a property, innermost first. The unknown variables are replaced with an empty string
+	 * @param value
+	 * @param properties
+	 * @param variables
+	 * @return
+	 */
+	private static String substitute(final String value, final Properties properties, final Map<String, String> variables) {
+		String ret = value;
+		int end = ret.indexOf('}');
+		for(int i=0; end > 0 && i<1000; i++) {
+			int start = ret.lastIndexOf("${", end);
+			if (start < 0)
+				break;
+			String name = ret.substring(start + 2, end);
+			String v = variables.containsKey(name) ? variables.get(name) : properties.getProperty(name, "");
+			ret = ret.substring(0, start) + v + ret.substring(end + 1);
+			end = ret.indexOf('}');
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,226 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.LineNumberReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.maiereni.sling.util.bean.InventoryDrift;
+
+/**
+ * Compares the bundles installed on many nodes, as listed by their bundles.csv snapshots. The bundle names and
+ * the versions are interned in symbol tables and each node is a column of version ids indexed by the id of the 
+ * bundle name, 0 standing for a bundle which is not installed. The matrix takes four bytes per bundle and node, 
+ * whatever the length of the names. The differences are then found in one pass over the bundles: a bundle drifts 
+ * when it is missing from a node or installed with more than one version. The expected version of a bundle is the 
+ * one installed on most nodes
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class InventoryDiff {
+	private static final Logger logger = LoggerFactory.getLogger(InventoryDiff.class);
+	private static final String BUNDLES_FILE = "bundles.csv";
+	private SymbolTable names = new SymbolTable();
+	private SymbolTable versions = new SymbolTable();
+	private List<String> nodes = new ArrayList<String>();
+	private List<int[]> columns = new ArrayList<int[]>();
+	
+	/**
+	 * Add the snapshot of a node. The node is named after the file, or after its directory for a file named bundles.csv
+	 * @param snapshot
+	 * @throws Exception
+	 */
+	public void add(@Nonnull final File snapshot) throws Exception {
+		String node = snapshot.getName();
+		if (node.equals(BUNDLES_FILE) && snapshot.getAbsoluteFile().getParentFile() != null)
+			node = snapshot.getAbsoluteFile().getParentFile().getName();
+		else if (node.lastIndexOf('.') > 0)
+			node = node.substring(0, node.lastIndexOf('.'));
+		add(node, snapshot);
+	}
+	
+	/**
+	 * Add the snapshot of a node. Each line has the format position,description,symbolic name,version[,category]
+	 * @param node
+	 * @param snapshot
+	 * @throws Exception
+	 */
+	public void add(@Nonnull final String node, @Nonnull final File snapshot) throws Exception {
+		int[] column = new int[Math.max(16, names.size())];
+		try (FileReader fr = new FileReader(snapshot)) {
+			LineNumberReader lnr = new LineNumberReader(fr);
+			String s = null;
+			while((s = lnr.readLine()) != null) {
+				String[] sp = s.split(",", 5);
+				if (sp.length < 4)
+					continue;
+				int name = names.intern(sp[2].trim());
+				if (name >= column.length)
+					column = Arrays.copyOf(column, Math.max(name + 1, column.length * 2));
+				column[name] = versions.intern(sp[3].trim()) + 1;
+			}
+		}
+		nodes.add(node);
+		columns.add(column);
+	}
+	
+	/**
+	 * Find the bundles which are not installed with the same version on all the nodes
+	 * @return the drifting bundles in the order they were first seen
+	 */
+	public List<InventoryDrift> diff() {
+		List<InventoryDrift> ret = new ArrayList<InventoryDrift>();
+		int[] counts = new int[versions.size() + 1];
+		int[] touched = new int[nodes.size()];
+		for(int name=0; name<names.size(); name++) {
+			int distinct = 0, expected = 0;
+			for(int node=0; node<columns.size(); node++) {
+				int version = getVersion(node, name);
+				if (counts[version]++ == 0)
+					touched[distinct++] = version;
+				if (version != 0 && (expected == 0 || counts[version] > counts[expected]))
+					expected = version;
+			}
+			if (distinct > 1 || counts[0] > 0) {
+				InventoryDrift drift = new InventoryDrift();
+				drift.setName(names.get(name));
+				drift.setExpectedVersion(expected == 0 ? null : versions.get(expected - 1));
+				drift.setExpectedCount(expected == 0 ? 0 : counts[expected]);
+				Map<String, String> deviations = new LinkedHashMap<String, String>();
+				for(int node=0; node<columns.size(); node++) {
+					int version = getVersion(node, name);
+					if (version != expected)
+						deviations.put(nodes.get(node), version == 0 ? null : versions.get(version - 1));
+				}
+				drift.setDeviations(deviations);
+				ret.add(drift);
+			}
+			for(int i=0; i<distinct; i++)
+				counts[touched[i]] = 0;
+		}
+		return ret;
+	}
+	
+	public List<String> getNodes() {
+		return nodes;
+	}
+	
+	/**
+	 * Get the number of distinct bundles across the nodes
+	 * @return
+	 */
+	public int size() {
+		return names.size();
+	}
+	
+	/**
+	 * Write the drifting bundles to an XML file
+	 * @param drifts
+	 * @param xmlFile
+	 * @throws Exception
+	 */
+	public void writeReport(@Nonnull final List<InventoryDrift> drifts, @Nonnull final String xmlFile) throws Exception {
+		Document document = XmlSupport.newDocument();
+		Element root = document.createElement("inventoryDiff");
+		root.setAttribute("nodes", "" + nodes.size());
+		root.setAttribute("bundles", "" + names.size());
+		root.setAttribute("drifting", "" + drifts.size());
+		document.appendChild(root);
+		for(InventoryDrift drift: drifts) {
+			Element el = document.createElement("bundle");
+			el.setAttribute("name", drift.getName());
+			if (drift.getExpectedVersion() != null)
+				el.setAttribute("version", drift.getExpectedVersion());
+			el.setAttribute("nodes", "" + drift.getExpectedCount());
+			for(Map.Entry<String, String> entry: drift.getDeviations().entrySet()) {
+				Element elNode = document.createElement("node");
+				elNode.setAttribute("name", entry.getKey());
+				if (entry.getValue() == null)
+					elNode.setAttribute("missing", "true");
+				else
+					elNode.setAttribute("version", entry.getValue());
+				el.appendChild(elNode);
+			}
+			root.appendChild(el);
+		}
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(xmlFile))) {
+			XmlSupport.write(document, os);
+		}
+	}
+	
+	private int getVersion(final int node, final int name) {
+		int[] column = columns.get(node);
+		return name < column.length ? column[name] : 0;
+	}
+	
+	/**
+	 * Compare the snapshots given as arguments after the report file. A directory stands for the .csv files it contains, 
+	 * or for its bundles.csv files one level down
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void execute(final String[] args) throws Exception {
+		InventoryDiff diff = new InventoryDiff();
+		long start = System.currentTimeMillis();
+		for(int i=1; i<args.length; i++) {
+			File f = new File(args[i]);
+			if (f.isDirectory()) {
+				File[] files = f.listFiles(c -> c.isFile() && c.getName().endsWith(".csv"));
+				if (files == null || files.length == 0)
+					files = f.listFiles(c -> new File(c, BUNDLES_FILE).isFile());
+				if (files != null) {
+					Arrays.sort(files);
+					for(File file: files)
+						diff.add(file.isDirectory() ? new File(file, BUNDLES_FILE) : file);
+				}
+			}
+			else
+				diff.add(f);
+		}
+		List<InventoryDrift> drifts = diff.diff();
+		logger.debug("Compared " + diff.size() + " bundles on " + diff.getNodes().size() + " nodes in " + (System.currentTimeMillis() - start) + " ms, " + drifts.size() + " drift");
+		diff.writeReport(drifts, args[0]);
+	}
+
+	public static void main(final String[] args) {
+		try {
+			execute(args);
+		}
+		catch(Exception e) {
+			logger.error("The inventories could not be compared", e);
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.BundleDependencies;
+import com.maiereni.sling.util.bean.DependencyTree;
+import com.maiereni.sling.util.bean.Dependent;
+import com.maiereni.sling.util.bean.PackageCollision;
+import com.maiereni.sling.util.bean.PackageExport;
+
+/**
+ * Streams the dependency tree as compact JSON
+ * @author Petre Maierean
+ *
+ */
+public class JsonDependencyTreeWriter implements DependencyTreeWriter {
+
+	@Override
+	public void write(@Nonnull final DependencyTree tree, @Nonnull final OutputStream os) throws Exception {
+		JsonWriter json = new JsonWriter(new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8)));
+		json.beginObject();
+		json.name("featured");
+		writeBundles(json, tree.getFeatured());
+		json.name("extra");
+		writeBundles(json, tree.getExtra());
+		json.name("exports");
+		writeExports(json, tree.getExports());
+		if (tree.getCollisions() != null) {
+			json.name("collisions");
+			writeCollisions(json, tree.getCollisions());
+		}
+		json.endObject();
+		json.flush();
+	}
+	
+	private void writeBundles(final JsonWriter json, final List<BundleDependencies> bundles) throws Exception {
+		json.beginArray();
+		for(BundleDependencies dependencies: bundles) {
+			Bundle bundle = dependencies.getBundle();
+			json.beginObject();
+			json.name("name").value(bundle.getName());
+			json.name("position").value(bundle.getPos());
+			json.name("category").value(bundle.getPkgName());
+			json.name("artifactId").value(bundle.getArtifactId());
+			json.name("groupId").value(bundle.getGroupId());
+			json.name("version").value(bundle.getVersion());
+			json.name("feature").value(bundle.getFeatureName());
+			json.name("dependents").beginArray();
+			for(Dependent dependent: dependencies.getDependents()) {
+				json.beginObject();
+				json.name("name").value(dependent.getName());
+				json.name("pos").value(dependent.getPos());
+				if (dependent.isTentative())
+					json.name("tentative").value(true);
+				json.endObject();
+			}
+			json.endArray();
+			if (!dependencies.getUnresolved().isEmpty()) {
+				json.name("unresolved").beginArray();
+				for(String s: dependencies.getUnresolved())
+					json.value(s);
+				json.endArray();
+			}
+			if (dependencies.getUnresolvedRequirements() != null && !dependencies.getUnresolvedRequirements().isEmpty()) {
+				json.name("unresolvedRequirements").beginArray();
+				for(String s: dependencies.getUnresolvedRequirements())
+					json.value(s);
+				json.endArray();
+			}
+			if (dependencies.getUsage() != null) {
+				writePackages(json, "unusedImports", dependencies.getUsage().getUnusedImports());
+				writePackages(json, "hiddenDependencies", dependencies.getUsage().getHiddenDependencies());
+			}
+			json.endObject();
+		}
+		json.endArray();
+	}
+	
+	private void writePackages(final JsonWriter json, final String name, final List<String> packages) throws Exception {
+		if (!packages.isEmpty()) {
+			json.name(name).beginArray();
+			for(String s: packages)
+				json.value(s);
+			json.endArray();
+		}
+	}
+	
+	private void writeCollisions(final JsonWriter json, final List<PackageCollision> collisions) throws Exception {
+		json.beginArray();
+		for(PackageCollision collision: collisions) {
+			json.beginObject();
+			json.name("package").value(collision.getPackageName());
+			json.name("type").value(collision.getType());
+			json.name("exporters").beginArray();
+			for(PackageExport export: collision.getExporters()) {
+				json.beginObject();
+				json.name("name").value(export.getBundle().getName());
+				json.name("pos").value(export.getBundle().getPos());
+				if (export.getVersion() != null)
+					json.name("version").value(export.getVersion());
+				json.endObject();
+			}
+			json.endArray();
+			json.endObject();
+		}
+		json.endArray();
+	}
+	
+	private void writeExports(final JsonWriter json, final Map<String, Bundle> exportPackages) throws Exception {
+		json.beginArray();
+		for(Map.Entry<String, Bundle> entry: exportPackages.entrySet()) {
+			json.beginObject();
+			json.name("key").value(entry.getKey());
+			json.name("name").value(entry.getValue().getName());
+			json.name("pos").value(entry.getValue().getPos());
+			json.endObject();
+		}
+		json.endArray();
+	}
+}
@@ -0,0 +1,163 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A minimal streaming JSON generator. Values are written as soon as they are received, 
+ * so that no intermediate document is kept in memory
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class JsonWriter {
+	private Writer writer;
+	private boolean[] first = new boolean[32];
+	private int depth;
+	private boolean afterName;
+	
+	public JsonWriter(@Nonnull final Writer writer) {
+		this.writer = writer;
+	}
+	
+	public JsonWriter beginObject() throws IOException {
+		return open('{');
+	}
+
+	public JsonWriter endObject() throws IOException {
+		return close('}');
+	}
+
+	public JsonWriter beginArray() throws IOException {
+		return open('[');
+	}
+
+	public JsonWriter endArray() throws IOException {
+		return close(']');
+	}
+	
+	public JsonWriter name(@Nonnull final String name) throws IOException {
+		separate();
+		writeString(name);
+		writer.write(':');
+		afterName = true;
+		return this;
+	}
+	
+	public JsonWriter value(final String value) throws IOException {
+		separate();
+		if (value == null)
+			writer.write("null");
+		else
+			writeString(value);
+		return this;
+	}
+
+	public JsonWriter value(final long value) throws IOException {
+		separate();
+		writer.write(Long.toString(value));
+		return this;
+	}
+
+	/**
+	 * Write a floating point number. JSON has no notation for NaN and the infinities, which are written as strings
+	 * @param value
+	 * @return
+	 * @throws IOException
+	 */
+	public JsonWriter value(final double value) throws IOException {
+		if (Double.isNaN(value) || Double.isInfinite(value))
+			return value(Double.toString(value));
+		separate();
+		writer.write(Double.toString(value));
+		return this;
+	}
+
+	public JsonWriter value(final boolean value) throws IOException {
+		separate();
+		writer.write(value ? "true" : "false");
+		return this;
+	}
+	
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	private JsonWriter open(final char c) throws IOException {
+		separate();
+		writer.write(c);
+		if (++depth == first.length) {
+			boolean[] b = new boolean[first.length * 2];
+			System.arraycopy(first, 0, b, 0, first.length);
+			first = b;
+		}
+		first[depth] = true;
+		return this;
+	}
+	
+	private JsonWriter close(final char c) throws IOException {
+		if (depth == 0)
+			throw new IOException("Unbalanced JSON structure");
+		depth--;
+		writer.write(c);
+		return this;
+	}
+	
+	private void separate() throws IOException {
+		if (afterName)
+			afterName = false;
+		else if (depth > 0) {
+			if (first[depth])
+				first[depth] = false;
+			else
+				writer.write(',');
+		}
+	}
+	
+	private void writeString(final String s) throws IOException {
+		writer.write('"');
+		int start = 0;
+		for(int i=0; i<s.length(); i++) {
+			char c = s.charAt(i);
+			String replacement = null;
+			if (c == '"')
+				replacement = "\\\"";
+			else if (c == '\\')
+				replacement = "\\\\";
+			else if (c == '\n')
+				replacement = "\\n";
+			else if (c == '\r')
+				replacement = "\\r";
+			else if (c == '\t')
+				replacement = "\\t";
+			else if (c < 0x20)
+				replacement = String.format("\\u%04x", (int)c);
+			if (replacement != null) {
+				writer.write(s, start, i - start);
+				writer.write(replacement);
+				start = i + 1;
+			}
+		}
+		writer.write(s, start, s.length() - start);
+		writer.write('"');
+	}
+}
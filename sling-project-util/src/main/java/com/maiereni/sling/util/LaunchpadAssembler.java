@@ -0,0 +1,202 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.maiereni.sling.util.bean.AssemblyResult;
+import com.maiereni.sling.util.bean.Bundle;
+
+/**
+ * Materializes the install directory of a launchpad from the locations of the resolved bundles. Each jar is placed
+ * in the sub directory of its start level, as in install/20/bundle.jar, the default start level being 0. The jars are 
+ * hard linked to the Maven repository when the file system allows it and copied with FileChannel.transferTo otherwise, 
+ * or when the JVM property assembly.copy is true. A jar already in place, as the same file or with the same size and 
+ * last modified time, is left unchanged, and the jars which are no longer part of the launchpad are removed. The jars 
+ * are staged in parallel, on a number of threads given by the JVM property assembly.threads
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class LaunchpadAssembler {
+	private static final Logger logger = LoggerFactory.getLogger(LaunchpadAssembler.class);
+	public static final String ASSEMBLY_THREADS = "assembly.threads";
+	public static final String ASSEMBLY_COPY = "assembly.copy";
+	private static final int LINKED = 0, COPIED = 1, UNCHANGED = 2;
+	private int threads;
+	private boolean copy;
+	
+	public LaunchpadAssembler() {
+		threads = SlingUtil.getThreads(ASSEMBLY_THREADS);
+		copy = Boolean.getBoolean(ASSEMBLY_COPY);
+	}
+	
+	/**
+	 * Stage the jars of a list of bundles in a directory. The bundles without a location are left out
+	 * @param bundles
+	 * @param installDir
+	 * @return
+	 * @throws Exception
+	 */
+	public AssemblyResult assemble(@Nonnull final List<Bundle> bundles, @Nonnull final File installDir) throws Exception {
+		long start = System.currentTimeMillis();
+		Map<File, File> plan = new LinkedHashMap<File, File>();
+		for(Bundle bundle: bundles) {
+			if (bundle.getLocation() == null) {
+				logger.debug("Skip " + bundle.getName() + " which has no artifact");
+				continue;
+			}
+			File source = new File(bundle.getLocation());
+			File target = new File(new File(installDir, "" + bundle.getStartLevel()), source.getName());
+			if (!plan.containsKey(target))
+				plan.put(target, source);
+		}
+		AssemblyResult ret = new AssemblyResult();
+		ret.setRemoved(removeObsolete(installDir, plan.keySet()));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Map<File, Future<Integer>> futures = new LinkedHashMap<File, Future<Integer>>();
+			for(final Map.Entry<File, File> entry: plan.entrySet())
+				futures.put(entry.getKey(), executor.submit(() -> stage(entry.getValue(), entry.getKey())));
+			for(Map.Entry<File, Future<Integer>> entry: futures.entrySet()) {
+				try {
+					int outcome = entry.getValue().get();
+					if (outcome == LINKED)
+						ret.setLinked(ret.getLinked() + 1);
+					else if (outcome == COPIED)
+						ret.setCopied(ret.getCopied() + 1);
+					else
+						ret.setUnchanged(ret.getUnchanged() + 1);
+				}
+				catch(Exception e) {
+					logger.error("Failed to stage " + entry.getKey().getPath(), e);
+					ret.setFailed(ret.getFailed() + 1);
+				}
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		ret.setTime(System.currentTimeMillis() - start);
+		return ret;
+	}
+	
+	private int stage(final File source, final File target) throws IOException {
+		Path src = source.toPath();
+		Path dst = target.toPath();
+		if (Files.exists(dst)) {
+			if (Files.isSameFile(src, dst) || (Files.size(src) == Files.size(dst) && 
+				Files.getLastModifiedTime(src).equals(Files.getLastModifiedTime(dst))))
+				return UNCHANGED;
+			Files.delete(dst);
+		}
+		Files.createDirectories(dst.getParent());
+		if (!copy) {
+			try {
+				Files.createLink(dst, src);
+				return LINKED;
+			}
+			catch(IOException | UnsupportedOperationException e) {
+				logger.debug("Cannot link " + dst + ", copy it instead: " + e.getMessage());
+			}
+		}
+		Path tmp = dst.resolveSibling(dst.getFileName() + ".tmp");
+		try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+			FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = in.size();
+			for(long position = 0; position < size; )
+				position += in.transferTo(position, size - position, out);
+		}
+		FileTime lastModified = Files.getLastModifiedTime(src);
+		Files.setLastModifiedTime(tmp, lastModified);
+		Files.move(tmp, dst, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return COPIED;
+	}
+	
+	/**
+	 * Remove the jars of the start level directories which are not part of the plan, and the start level directories left empty 
+	 * @param installDir
+	 * @param targets
+	 * @return the number of files removed
+	 * @throws IOException
+	 */
+	private int removeObsolete(final File installDir, final Set<File> targets) throws IOException {
+		int ret = 0;
+		File[] levels = installDir.listFiles(f -> f.isDirectory() && StringUtils.isNumeric(f.getName()));
+		if (levels == null)
+			return ret;
+		Set<File> keep = new HashSet<File>(targets);
+		for(File level: levels) {
+			File[] files = level.listFiles(f -> f.isFile() && (f.getName().endsWith(".jar") || f.getName().endsWith(".tmp")));
+			if (files != null)
+				for(File file: files)
+					if (!keep.contains(file)) {
+						Files.delete(file.toPath());
+						ret++;
+					}
+			String[] left = level.list();
+			if (left != null && left.length == 0)
+				Files.delete(level.toPath());
+		}
+		return ret;
+	}
+	
+	/**
+	 * Run the tool with the arguments of the command line
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void execute(final String[] args) throws Exception {
+		SlingModelInterpreter interpreter = new SlingModelInterpreter();
+		AssemblyResult result = interpreter.assembleLaunchpad(args[0], args[1]);
+		logger.info("Assembled " + args[1] + ": " + result);
+		if (result.getFailed() > 0)
+			throw new Exception(result.getFailed() + " bundles could not be staged in " + args[1]);
+	}
+
+	public static void main(final String[] args) {
+		try {
+			execute(args);
+		}
+		catch(Exception e) {
+			logger.error("The launchpad could not be assembled", e);
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,152 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.Version;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.resource.Capability;
+import org.osgi.resource.Namespace;
+import org.osgi.resource.Requirement;
+import org.osgi.resource.Resource;
+import org.osgi.resource.Wiring;
+import org.osgi.service.resolver.HostedCapability;
+import org.osgi.service.resolver.ResolveContext;
+
+/**
+ * The context of an offline resolution of the bundles of a launchpad. All the resources are optional, so that the 
+ * resolver wires as many of them as possible, and none is resolved beforehand. The capabilities are indexed by 
+ * namespace, and the package capabilities by package name. The providers are returned the way the framework orders 
+ * them: the highest version first, then the lowest start position
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class LaunchpadResolveContext extends ResolveContext {
+	private final List<Resource> resources;
+	private final Map<String, List<Capability>> byNamespace = new HashMap<String, List<Capability>>();
+	private final Map<String, List<Capability>> byPackage = new HashMap<String, List<Capability>>();
+	
+	public LaunchpadResolveContext(@Nonnull final List<ManifestResource> resources) {
+		this.resources = Collections.<Resource>unmodifiableList(resources);
+		for(ManifestResource resource: resources)
+			for(Capability capability: resource.getCapabilities(null)) {
+				add(byNamespace, capability.getNamespace(), capability);
+				if (capability.getNamespace().equals(PackageNamespace.PACKAGE_NAMESPACE))
+					add(byPackage, (String)capability.getAttributes().get(PackageNamespace.PACKAGE_NAMESPACE), capability);
+			}
+		CapabilityComparator comparator = new CapabilityComparator();
+		for(List<Capability> l: byNamespace.values())
+			Collections.sort(l, comparator);
+		for(List<Capability> l: byPackage.values())
+			Collections.sort(l, comparator);
+	}
+
+	@Override
+	public Collection<Resource> getOptionalResources() {
+		return resources;
+	}
+
+	@Override
+	public List<Capability> findProviders(final Requirement requirement) {
+		List<Capability> ret = new ArrayList<Capability>();
+		if (requirement instanceof ManifestResource.ManifestRequirement) {
+			ManifestResource.ManifestRequirement r = (ManifestResource.ManifestRequirement)requirement;
+			List<Capability> candidates = r.getName() != null && r.getNamespace().equals(PackageNamespace.PACKAGE_NAMESPACE) ? 
+				byPackage.get(r.getName()) : byNamespace.get(r.getNamespace());
+			if (candidates != null)
+				for(Capability capability: candidates)
+					if (r.matches(capability))
+						ret.add(capability);
+		}
+		else {
+			List<Capability> candidates = byNamespace.get(requirement.getNamespace());
+			String filter = requirement.getDirectives().get(Namespace.REQUIREMENT_FILTER_DIRECTIVE);
+			if (candidates != null) {
+				try {
+					Filter f = filter == null ? null : FrameworkUtil.createFilter(filter);
+					for(Capability capability: candidates)
+						if (f == null || f.matches(capability.getAttributes()))
+							ret.add(capability);
+				}
+				catch(InvalidSyntaxException e) {
+					// a requirement which cannot be parsed has no provider
+				}
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public int insertHostedCapability(final List<Capability> capabilities, final HostedCapability hostedCapability) {
+		capabilities.add(hostedCapability);
+		return capabilities.size() - 1;
+	}
+
+	@Override
+	public boolean isEffective(final Requirement requirement) {
+		String effective = requirement.getDirectives().get(Namespace.REQUIREMENT_EFFECTIVE_DIRECTIVE);
+		return effective == null || effective.equals(Namespace.EFFECTIVE_RESOLVE);
+	}
+
+	@Override
+	public Map<Resource, Wiring> getWirings() {
+		return Collections.emptyMap();
+	}
+	
+	private static void add(final Map<String, List<Capability>> map, final String key, final Capability capability) {
+		List<Capability> l = map.get(key);
+		if (l == null) {
+			l = new ArrayList<Capability>();
+			map.put(key, l);
+		}
+		l.add(capability);
+	}
+	
+	private static class CapabilityComparator implements Comparator<Capability> {
+		@Override
+		public int compare(Capability o1, Capability o2) {
+			int ret = getVersion(o2).compareTo(getVersion(o1));
+			if (ret == 0)
+				ret = Integer.compare(getPos(o1), getPos(o2));
+			return ret;
+		}
+		
+		private Version getVersion(final Capability capability) {
+			Object version = capability.getAttributes().get(PackageNamespace.CAPABILITY_VERSION_ATTRIBUTE);
+			return version instanceof Version ? (Version)version : Version.emptyVersion;
+		}
+		
+		private int getPos(final Capability capability) {
+			return capability.getResource() instanceof ManifestResource ? 
+				((ManifestResource)capability.getResource()).getBundle().getPos() : Integer.MAX_VALUE;
+		}
+	}
+}
@@ -0,0 +1,173 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.osgi.framework.Version;
+
+/**
+ * A clause of an OSGi manifest header, such as a;b;version="[1.0,2)";resolution:=optional. A clause names one or 
+ * more paths (packages, namespaces) followed by attributes (name=value) and directives (name:=value). Typed attributes
+ * (name:Type=value) are kept by name, their type being available separately
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class ManifestClause {
+	private List<String> names = new ArrayList<String>();
+	private Map<String, String> attributes = new LinkedHashMap<String, String>();
+	private Map<String, String> types = new LinkedHashMap<String, String>();
+	private Map<String, String> directives = new LinkedHashMap<String, String>();
+	
+	/**
+	 * Split a header value on a separator which is not inside a quoted string
+	 * @param value
+	 * @param separator
+	 * @return the trimmed, non empty, parts
+	 */
+	public static List<String> split(@Nonnull final String value, final char separator) {
+		List<String> ret = new ArrayList<String>();
+		boolean quoted = false;
+		int start = 0;
+		for(int i=0; i<value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"')
+				quoted = !quoted;
+			else if (c == '\\' && quoted)
+				i++;
+			else if (c == separator && !quoted) {
+				add(ret, value.substring(start, i));
+				start = i + 1;
+			}
+		}
+		add(ret, value.substring(start));
+		return ret;
+	}
+	
+	/**
+	 * Parse a clause
+	 * @param clause
+	 * @return
+	 */
+	public static ManifestClause parse(@Nonnull final String clause) {
+		ManifestClause ret = new ManifestClause();
+		for(String tok: split(clause, ';')) {
+			int ix = tok.indexOf('=');
+			if (ix < 0) 
+				ret.names.add(unquote(tok));
+			else if (ix > 0 && tok.charAt(ix - 1) == ':') 
+				ret.directives.put(tok.substring(0, ix - 1).trim(), unquote(tok.substring(ix + 1)));
+			else {
+				String name = tok.substring(0, ix).trim();
+				String type = null;
+				int iy = name.indexOf(':');
+				if (iy > 0) {
+					type = name.substring(iy + 1).trim();
+					name = name.substring(0, iy).trim();
+				}
+				ret.attributes.put(name, unquote(tok.substring(ix + 1)));
+				if (type != null)
+					ret.types.put(name, type);
+			}
+		}
+		return ret;
+	}
+	
+	public List<String> getNames() {
+		return names;
+	}
+	
+	public Map<String, String> getAttributes() {
+		return attributes;
+	}
+	
+	public String getAttribute(final String name) {
+		return attributes.get(name);
+	}
+
+	/**
+	 * Get the declared type of an attribute (String, Version, Long, Double, List&lt;String&gt;...) or null if untyped
+	 * @param name
+	 * @return
+	 */
+	public String getType(final String name) {
+		return types.get(name);
+	}
+	
+	/**
+	 * Get the attributes converted to their declared types. The values of the List types are converted element by element
+	 * @return
+	 * @throws IllegalArgumentException if a value cannot be converted
+	 */
+	public Map<String, Object> getTypedAttributes() {
+		Map<String, Object> ret = new LinkedHashMap<String, Object>();
+		for(Map.Entry<String, String> attribute: attributes.entrySet()) {
+			String type = types.get(attribute.getKey());
+			Object value = attribute.getValue();
+			if (type != null && type.startsWith("List")) {
+				String elementType = type.length() > 4 ? type.substring(5, type.length() - 1).trim() : "String";
+				List<Object> l = new ArrayList<Object>();
+				for(String s: split(attribute.getValue(), ','))
+					l.add(convert(elementType, s));
+				value = l;
+			}
+			else if (type != null)
+				value = convert(type, attribute.getValue());
+			ret.put(attribute.getKey(), value);
+		}
+		return ret;
+	}
+	
+	public Map<String, String> getDirectives() {
+		return directives;
+	}
+	
+	public String getDirective(final String name) {
+		return directives.get(name);
+	}
+	
+	private static Object convert(final String type, final String value) {
+		Object ret = value;
+		if (type.equals("Version"))
+			ret = Version.parseVersion(value);
+		else if (type.equals("Long"))
+			ret = Long.valueOf(value.trim());
+		else if (type.equals("Double"))
+			ret = Double.valueOf(value.trim());
+		return ret;
+	}
+	
+	private static void add(final List<String> l, final String s) {
+		String t = s.trim();
+		if (t.length() > 0)
+			l.add(t);
+	}
+	
+	private static String unquote(final String s) {
+		String ret = s.trim();
+		if (ret.length() > 1 && ret.startsWith("\"") && ret.endsWith("\""))
+			ret = ret.substring(1, ret.length() - 1);
+		return ret;
+	}
+}
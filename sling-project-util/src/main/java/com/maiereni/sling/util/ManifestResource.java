@@ -0,0 +1,333 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.Version;
+import org.osgi.framework.VersionRange;
+import org.osgi.framework.namespace.BundleNamespace;
+import org.osgi.framework.namespace.HostNamespace;
+import org.osgi.framework.namespace.IdentityNamespace;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.resource.Capability;
+import org.osgi.resource.Namespace;
+import org.osgi.resource.Requirement;
+import org.osgi.resource.Resource;
+
+import com.maiereni.sling.util.bean.Bundle;
+
+/**
+ * A resource built from the manifest of a bundle, as seen by the OSGi resolver. The bundle provides its identity, 
+ * the bundle and host capabilities, a capability for each exported package and the generic capabilities of the 
+ * Provide-Capability header. It requires each imported package and the generic requirements of the Require-Capability header.
+ * The resource does not load classes and does not install the bundle
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class ManifestResource implements Resource {
+	private final Bundle bundle;
+	private final List<Capability> capabilities = new ArrayList<Capability>();
+	private final List<Requirement> requirements = new ArrayList<Requirement>();
+	
+	/**
+	 * Build the resource of a bundle
+	 * @param bundle
+	 * @throws InvalidSyntaxException if the filter of a requirement cannot be built
+	 */
+	public ManifestResource(@Nonnull final Bundle bundle) throws InvalidSyntaxException {
+		this.bundle = bundle;
+		Version version = getVersion(bundle.getVersion());
+		Map<String, Object> attributes = new HashMap<String, Object>();
+		attributes.put(IdentityNamespace.IDENTITY_NAMESPACE, bundle.getName());
+		attributes.put(IdentityNamespace.CAPABILITY_TYPE_ATTRIBUTE, IdentityNamespace.TYPE_BUNDLE);
+		attributes.put(IdentityNamespace.CAPABILITY_VERSION_ATTRIBUTE, version);
+		addCapability(IdentityNamespace.IDENTITY_NAMESPACE, attributes, null);
+		attributes = new HashMap<String, Object>();
+		attributes.put(BundleNamespace.BUNDLE_NAMESPACE, bundle.getName());
+		attributes.put(BundleNamespace.CAPABILITY_BUNDLE_VERSION_ATTRIBUTE, version);
+		addCapability(BundleNamespace.BUNDLE_NAMESPACE, attributes, null);
+		attributes = new HashMap<String, Object>();
+		attributes.put(HostNamespace.HOST_NAMESPACE, bundle.getName());
+		attributes.put(HostNamespace.CAPABILITY_BUNDLE_VERSION_ATTRIBUTE, version);
+		addCapability(HostNamespace.HOST_NAMESPACE, attributes, null);
+		if (bundle.getExportPackages() != null)
+			for(String exp: bundle.getExportPackages())
+				addExport(ManifestClause.parse(exp), version);
+		if (bundle.getImportPackages() != null)
+			for(String imp: bundle.getImportPackages())
+				addImport(imp, ManifestClause.parse(imp));
+		if (bundle.getProvideCapabilities() != null)
+			for(String cap: bundle.getProvideCapabilities()) {
+				ManifestClause clause = ManifestClause.parse(cap);
+				for(String namespace: clause.getNames())
+					addCapability(namespace, getTypedAttributes(clause), clause.getDirectives());
+			}
+		if (bundle.getRequireCapabilities() != null)
+			for(String req: bundle.getRequireCapabilities()) {
+				ManifestClause clause = ManifestClause.parse(req);
+				Map<String, String> directives = new HashMap<String, String>(clause.getDirectives());
+				String filter = directives.remove(Namespace.REQUIREMENT_FILTER_DIRECTIVE);
+				for(String namespace: clause.getNames())
+					requirements.add(new ManifestRequirement(this, namespace, null, filter, directives, req));
+			}
+	}
+	
+	/**
+	 * Add a generic capability, such as an execution environment given by a Provide-Capability clause
+	 * @param namespace
+	 * @param attributes
+	 * @param directives
+	 */
+	public void addCapability(@Nonnull final String namespace, @Nonnull final Map<String, Object> attributes, final Map<String, String> directives) {
+		capabilities.add(new ManifestCapability(this, namespace, attributes, directives));
+	}
+	
+	public Bundle getBundle() {
+		return bundle;
+	}
+
+	@Override
+	public List<Capability> getCapabilities(final String namespace) {
+		List<Capability> ret = capabilities;
+		if (namespace != null) {
+			ret = new ArrayList<Capability>();
+			for(Capability capability: capabilities)
+				if (capability.getNamespace().equals(namespace))
+					ret.add(capability);
+		}
+		return Collections.unmodifiableList(ret);
+	}
+
+	@Override
+	public List<Requirement> getRequirements(final String namespace) {
+		List<Requirement> ret = requirements;
+		if (namespace != null) {
+			ret = new ArrayList<Requirement>();
+			for(Requirement requirement: requirements)
+				if (requirement.getNamespace().equals(namespace))
+					ret.add(requirement);
+		}
+		return Collections.unmodifiableList(ret);
+	}
+	
+	@Override
+	public String toString() {
+		return bundle.getName() + " " + bundle.getVersion();
+	}
+	
+	/**
+	 * Parse a bundle version. The versions which do not follow the OSGi syntax are read as 0.0.0
+	 * @param version
+	 * @return
+	 */
+	public static Version getVersion(final String version) {
+		Version ret = Version.emptyVersion;
+		if (StringUtils.isNotBlank(version)) {
+			try {
+				ret = Version.parseVersion(version.trim());
+			}
+			catch(IllegalArgumentException e) {
+				ret = Version.emptyVersion;
+			}
+		}
+		return ret;
+	}
+	
+	private void addExport(final ManifestClause clause, final Version bundleVersion) {
+		Map<String, Object> typed = getTypedAttributes(clause);
+		Object version = typed.remove("specification-version");
+		if (!typed.containsKey(PackageNamespace.CAPABILITY_VERSION_ATTRIBUTE))
+			typed.put(PackageNamespace.CAPABILITY_VERSION_ATTRIBUTE, version == null ? Version.emptyVersion : version);
+		Object v = typed.get(PackageNamespace.CAPABILITY_VERSION_ATTRIBUTE);
+		if (!(v instanceof Version))
+			typed.put(PackageNamespace.CAPABILITY_VERSION_ATTRIBUTE, getVersion(v.toString()));
+		for(String name: clause.getNames()) {
+			Map<String, Object> attributes = new HashMap<String, Object>(typed);
+			attributes.put(PackageNamespace.PACKAGE_NAMESPACE, name);
+			attributes.put(PackageNamespace.CAPABILITY_BUNDLE_SYMBOLICNAME_ATTRIBUTE, bundle.getName());
+			attributes.put(PackageNamespace.CAPABILITY_BUNDLE_VERSION_ATTRIBUTE, bundleVersion);
+			addCapability(PackageNamespace.PACKAGE_NAMESPACE, attributes, clause.getDirectives());
+		}
+	}
+	
+	private void addImport(final String text, final ManifestClause clause) throws InvalidSyntaxException {
+		Map<String, String> directives = new HashMap<String, String>();
+		if (Namespace.RESOLUTION_OPTIONAL.equals(clause.getDirective(Namespace.REQUIREMENT_RESOLUTION_DIRECTIVE)))
+			directives.put(Namespace.REQUIREMENT_RESOLUTION_DIRECTIVE, Namespace.RESOLUTION_OPTIONAL);
+		for(String name: clause.getNames()) {
+			StringBuilder sb = new StringBuilder("(&(").append(PackageNamespace.PACKAGE_NAMESPACE).append('=').append(escape(name)).append(')');
+			for(Map.Entry<String, String> attribute: clause.getAttributes().entrySet()) {
+				String key = attribute.getKey();
+				if (key.equals("specification-version"))
+					key = PackageNamespace.CAPABILITY_VERSION_ATTRIBUTE;
+				if (key.equals(PackageNamespace.CAPABILITY_VERSION_ATTRIBUTE) || key.equals(PackageNamespace.CAPABILITY_BUNDLE_VERSION_ATTRIBUTE)) {
+					try {
+						sb.append(new VersionRange(attribute.getValue()).toFilterString(key));
+					}
+					catch(IllegalArgumentException e) {
+						// an invalid range is treated as no constraint, the way the interpreter does
+					}
+				}
+				else
+					sb.append('(').append(key).append('=').append(escape(attribute.getValue())).append(')');
+			}
+			sb.append(')');
+			requirements.add(new ManifestRequirement(this, PackageNamespace.PACKAGE_NAMESPACE, name, sb.toString(), directives, text));
+		}
+	}
+	
+	private static Map<String, Object> getTypedAttributes(final ManifestClause clause) {
+		Map<String, Object> ret = null;
+		try {
+			ret = clause.getTypedAttributes();
+		}
+		catch(IllegalArgumentException e) {
+			ret = new LinkedHashMap<String, Object>(clause.getAttributes());
+		}
+		return ret;
+	}
+	
+	private static String escape(final String value) {
+		StringBuilder sb = new StringBuilder();
+		for(char c: value.toCharArray()) {
+			if (c == '*' || c == '(' || c == ')' || c == '\\')
+				sb.append('\\');
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * A capability of a manifest resource
+	 */
+	public static class ManifestCapability implements Capability {
+		private final Resource resource;
+		private final String namespace;
+		private final Map<String, Object> attributes;
+		private final Map<String, String> directives;
+		
+		public ManifestCapability(final Resource resource, final String namespace, final Map<String, Object> attributes, final Map<String, String> directives) {
+			this.resource = resource;
+			this.namespace = namespace;
+			this.attributes = Collections.unmodifiableMap(attributes);
+			this.directives = directives == null ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(directives);
+		}
+		@Override
+		public String getNamespace() {
+			return namespace;
+		}
+		@Override
+		public Map<String, String> getDirectives() {
+			return directives;
+		}
+		@Override
+		public Map<String, Object> getAttributes() {
+			return attributes;
+		}
+		@Override
+		public Resource getResource() {
+			return resource;
+		}
+		@Override
+		public String toString() {
+			return namespace + "; " + attributes.get(namespace) + " [" + resource + "]";
+		}
+	}
+	
+	/**
+	 * A requirement of a manifest resource, given by a filter
+	 */
+	public static class ManifestRequirement implements Requirement {
+		private final Resource resource;
+		private final String namespace;
+		private final String name;
+		private final Filter filter;
+		private final Map<String, String> directives;
+		private final String text;
+		
+		public ManifestRequirement(final Resource resource, final String namespace, final String name, final String filter, final Map<String, String> directives, final String text) throws InvalidSyntaxException {
+			this.resource = resource;
+			this.namespace = namespace;
+			this.name = name;
+			this.filter = filter == null ? null : FrameworkUtil.createFilter(filter);
+			Map<String, String> d = new HashMap<String, String>(directives);
+			if (filter != null)
+				d.put(Namespace.REQUIREMENT_FILTER_DIRECTIVE, filter);
+			this.directives = Collections.unmodifiableMap(d);
+			this.text = text;
+		}
+		/**
+		 * Check if the requirement is satisfied by a capability. A requirement without a filter is satisfied by any capability of its namespace
+		 * @param capability
+		 * @return
+		 */
+		public boolean matches(final Capability capability) {
+			return namespace.equals(capability.getNamespace()) && (filter == null || filter.matches(capability.getAttributes()));
+		}
+		public boolean isOptional() {
+			return Namespace.RESOLUTION_OPTIONAL.equals(directives.get(Namespace.REQUIREMENT_RESOLUTION_DIRECTIVE));
+		}
+		/**
+		 * Get the value of the namespace attribute required, such as the name of a package, or null if the filter does not require one
+		 * @return
+		 */
+		public String getName() {
+			return name;
+		}
+		/**
+		 * Get the manifest clause the requirement has been built from
+		 * @return
+		 */
+		public String getText() {
+			return text;
+		}
+		@Override
+		public String getNamespace() {
+			return namespace;
+		}
+		@Override
+		public Map<String, String> getDirectives() {
+			return directives;
+		}
+		@Override
+		public Map<String, Object> getAttributes() {
+			return Collections.emptyMap();
+		}
+		@Override
+		public Resource getResource() {
+			return resource;
+		}
+		@Override
+		public String toString() {
+			return text;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+/**
+ * The formats a dependency tree can be written in. The format is selected with the JVM property output.format
+ * @author Petre Maierean
+ *
+ */
+public enum OutputFormat {
+	xml, json, binary;
+	
+	public static final String OUTPUT_FORMAT = "output.format";
+	
+	public DependencyTreeWriter newWriter() {
+		DependencyTreeWriter ret = null;
+		switch(this) {
+		case json:
+			ret = new JsonDependencyTreeWriter();
+			break;
+		case binary:
+			ret = new BinaryDependencyTreeWriter();
+			break;
+		default:
+			ret = new XmlDependencyTreeWriter();
+		}
+		return ret;
+	}
+	
+	/**
+	 * Get the format selected with the JVM property output.format. Defaults to xml
+	 * @return
+	 * @throws Exception
+	 */
+	public static OutputFormat getSelected() throws Exception {
+		String s = System.getProperty(OUTPUT_FORMAT, xml.name());
+		try {
+			return valueOf(s.trim().toLowerCase());
+		}
+		catch(IllegalArgumentException e) {
+			throw new Exception("Unknown output format " + s);
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.osgi.framework.Version;
+import org.osgi.framework.VersionRange;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.PackageCollision;
+import com.maiereni.sling.util.bean.PackageExport;
+
+/**
+ * Indexes the packages exported by a set of bundles. The package names are interned in a symbol table and the
+ * exporters of a package are kept in a list indexed by the id of the package, in the order the bundles have been 
+ * added. All the exporters are kept, so that the packages exported by more than one bundle can be reported
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class PackageIndex {
+	private SymbolTable packages = new SymbolTable();
+	private List<List<PackageExport>> exporters = new ArrayList<List<PackageExport>>();
+	
+	/**
+	 * Add the packages exported by a bundle
+	 * @param bundle
+	 */
+	public void add(@Nonnull final Bundle bundle) {
+		if (bundle.getExportPackages() == null)
+			return;
+		for(String exp: bundle.getExportPackages()) {
+			ManifestClause clause = ManifestClause.parse(exp);
+			String version = clause.getAttribute("version");
+			if (version == null)
+				version = clause.getAttribute("specification-version");
+			for(String name: clause.getNames()) {
+				int id = packages.intern(name);
+				if (id == exporters.size())
+					exporters.add(new ArrayList<PackageExport>(1));
+				PackageExport export = new PackageExport();
+				export.setBundle(bundle);
+				export.setVersion(version);
+				exporters.get(id).add(export);
+			}
+		}
+	}
+	
+	/**
+	 * Find the first exporter of a package whose version is in a range
+	 * @param packageName
+	 * @param versionRange the range, or null for any version
+	 * @return the exporter or null if none matches
+	 */
+	public PackageExport find(@Nonnull final String packageName, final String versionRange) {
+		PackageExport ret = null;
+		int id = packages.find(packageName);
+		if (id >= 0) {
+			VersionRange range = parseRange(versionRange);
+			for(PackageExport export: exporters.get(id)) {
+				if (range == null || matches(range, export.getVersion())) {
+					ret = export;
+					break;
+				}
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Find the first exporter of a package regardless of the version
+	 * @param packageName
+	 * @return the exporter or null if the package is not exported
+	 */
+	public PackageExport findAny(@Nonnull final String packageName) {
+		int id = packages.find(packageName);
+		return id >= 0 ? exporters.get(id).get(0) : null;
+	}
+	
+	/**
+	 * Get the first exporter of each package and version. The key is the package name followed by the version, if any 
+	 * @return
+	 */
+	public Map<String, Bundle> getExports() {
+		Map<String, Bundle> ret = new LinkedHashMap<String, Bundle>();
+		for(int id=0; id<packages.size(); id++) {
+			for(PackageExport export: exporters.get(id)) {
+				String key = packages.get(id);
+				if (export.getVersion() != null)
+					key = key + ":" + export.getVersion();
+				if (!ret.containsKey(key))
+					ret.put(key, export.getBundle());
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Get the packages exported by different bundles (split packages) or by several copies of the same bundle
+	 * @return
+	 */
+	public List<PackageCollision> getCollisions() {
+		List<PackageCollision> ret = new ArrayList<PackageCollision>();
+		Map<String, Bundle> names = new HashMap<String, Bundle>();
+		for(int id=0; id<packages.size(); id++) {
+			List<PackageExport> l = exporters.get(id);
+			if (l.size() < 2)
+				continue;
+			names.clear();
+			boolean duplicate = false;
+			for(PackageExport export: l) {
+				// a bundle may export several versions of a package, which is not a duplicate
+				Bundle prev = names.put(export.getBundle().getName(), export.getBundle());
+				duplicate |= prev != null && prev != export.getBundle();
+			}
+			if (names.size() > 1)
+				ret.add(getCollision(id, PackageCollision.SPLIT, l));
+			if (duplicate)
+				ret.add(getCollision(id, PackageCollision.DUPLICATE, l));
+		}
+		return ret;
+	}
+	
+	/**
+	 * Get the number of distinct packages
+	 * @return
+	 */
+	public int size() {
+		return packages.size();
+	}
+	
+	private PackageCollision getCollision(final int id, final String type, final List<PackageExport> l) {
+		PackageCollision ret = new PackageCollision();
+		ret.setPackageName(packages.get(id));
+		ret.setType(type);
+		ret.setExporters(l);
+		return ret;
+	}
+	
+	private VersionRange parseRange(final String versionRange) {
+		VersionRange ret = null;
+		if (versionRange != null) {
+			try {
+				ret = VersionRange.valueOf(versionRange);
+			}
+			catch(IllegalArgumentException e) {
+				ret = null;
+			}
+		}
+		return ret;
+	}
+	
+	private boolean matches(final VersionRange range, final String version) {
+		boolean ret = false;
+		try {
+			ret = range.includes(version == null ? Version.emptyVersion : Version.parseVersion(version));
+		}
+		catch(IllegalArgumentException e) {
+			ret = false;
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,338 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.PackageUsage;
+
+/**
+ * Finds the packages used by the classes of a bundle. The class files are not loaded. The scanner reads the constant 
+ * pool of each class, collecting the referenced classes and the classes named in the field, method and call site 
+ * descriptors, as well as the types of the runtime visible annotations of the class, of its members and of their 
+ * parameters, with the enum and class values of these annotations, since the annotations are read by reflection 
+ * (Sling Models, javax.inject) without any reference in the constant pool. The used packages are then compared with 
+ * the Import-Package header, to report the imports that no class uses and the packages used but neither contained 
+ * nor imported (hidden dependencies). The packages of the JRE (java.*) are ignored. The classes of the jars embedded 
+ * in a bundle are not scanned. The jars are scanned in parallel
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class PackageUsageScanner {
+	private static final Logger logger = LoggerFactory.getLogger(PackageUsageScanner.class);
+	public static final String SCAN_THREADS = "scan.threads";
+	private static final int CONSTANT_UTF8 = 1, CONSTANT_INTEGER = 3, CONSTANT_FLOAT = 4, CONSTANT_LONG = 5, CONSTANT_DOUBLE = 6,
+		CONSTANT_CLASS = 7, CONSTANT_STRING = 8, CONSTANT_FIELDREF = 9, CONSTANT_METHODREF = 10, CONSTANT_INTERFACE_METHODREF = 11,
+		CONSTANT_NAME_AND_TYPE = 12, CONSTANT_METHOD_HANDLE = 15, CONSTANT_METHOD_TYPE = 16, CONSTANT_DYNAMIC = 17, 
+		CONSTANT_INVOKE_DYNAMIC = 18, CONSTANT_MODULE = 19, CONSTANT_PACKAGE = 20;
+	private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations", 
+		RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS = "RuntimeVisibleParameterAnnotations", ANNOTATION_DEFAULT = "AnnotationDefault";
+	private int threads;
+	
+	public PackageUsageScanner() {
+		threads = SlingUtil.getThreads(SCAN_THREADS);
+	}
+	
+	/**
+	 * Scan a list of bundles in parallel. The bundles that cannot be read are left out
+	 * @param bundles
+	 * @return the package usage by bundle location
+	 * @throws Exception
+	 */
+	public Map<String, PackageUsage> scan(@Nonnull final List<Bundle> bundles) throws Exception {
+		Map<String, PackageUsage> ret = new HashMap<String, PackageUsage>();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Map<String, Future<PackageUsage>> futures = new HashMap<String, Future<PackageUsage>>();
+			for(final Bundle bundle: bundles) {
+				if (bundle.getLocation() == null || futures.containsKey(bundle.getLocation()))
+					continue;
+				futures.put(bundle.getLocation(), executor.submit(() -> scan(bundle)));
+			}
+			for(Map.Entry<String, Future<PackageUsage>> entry: futures.entrySet()) {
+				try {
+					ret.put(entry.getKey(), entry.getValue().get());
+				}
+				catch(Exception e) {
+					logger.error("Failed to scan the classes of " + entry.getKey(), e);
+				}
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		return ret;
+	}
+	
+	/**
+	 * Scan the classes of a bundle
+	 * @param bundle
+	 * @return
+	 * @throws Exception
+	 */
+	public PackageUsage scan(@Nonnull final Bundle bundle) throws Exception {
+		Set<String> contained = new TreeSet<String>();
+		Set<String> used = new TreeSet<String>();
+		int classCount = 0;
+		try (ZipFile zipFile = new ZipFile(bundle.getLocation())) {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while(entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				String name = entry.getName();
+				if (entry.isDirectory() || !name.endsWith(".class") || name.startsWith("META-INF/"))
+					continue;
+				contained.add(getPackage(name.substring(0, name.length() - 6)));
+				try (InputStream is = zipFile.getInputStream(entry)) {
+					readClass(new DataInputStream(is), used);
+				}
+				classCount++;
+			}
+		}
+		List<String> imports = new ArrayList<String>();
+		if (bundle.getImportPackages() != null)
+			for(String clause: bundle.getImportPackages())
+				imports.addAll(getPackageNames(clause));
+		List<String> unusedImports = new ArrayList<String>();
+		for(String imp: imports)
+			if (!(used.contains(imp) || contained.contains(imp)))
+				unusedImports.add(imp);
+		List<String> hiddenDependencies = new ArrayList<String>();
+		for(String pkg: used)
+			if (!(pkg.startsWith("java.") || contained.contains(pkg) || imports.contains(pkg)))
+				hiddenDependencies.add(pkg);
+		PackageUsage ret = new PackageUsage();
+		ret.setClassCount(classCount);
+		ret.setContainedPackages(contained);
+		ret.setUsedPackages(used);
+		ret.setUnusedImports(unusedImports);
+		ret.setHiddenDependencies(hiddenDependencies);
+		return ret;
+	}
+	
+	/**
+	 * Get the names of the packages of an Import-Package or Export-Package clause. A clause can name several 
+	 * packages sharing the same attributes, such as a;b;version="1.0"
+	 * @param clause
+	 * @return
+	 */
+	public static List<String> getPackageNames(@Nonnull final String clause) {
+		return ManifestClause.parse(clause).getNames();
+	}
+	
+	private void readClass(final DataInputStream in, final Set<String> used) throws IOException {
+		if (in.readInt() != 0xCAFEBABE)
+			throw new IOException("Not a class file");
+		in.readUnsignedShort();
+		in.readUnsignedShort();
+		int count = in.readUnsignedShort();
+		String[] utf8 = new String[count];
+		List<Integer> classes = new ArrayList<Integer>();
+		List<Integer> descriptors = new ArrayList<Integer>();
+		for(int i=1; i<count; i++) {
+			int tag = in.readUnsignedByte();
+			switch(tag) {
+			case CONSTANT_UTF8:
+				utf8[i] = in.readUTF();
+				break;
+			case CONSTANT_CLASS:
+				classes.add(in.readUnsignedShort());
+				break;
+			case CONSTANT_METHOD_TYPE:
+				descriptors.add(in.readUnsignedShort());
+				break;
+			case CONSTANT_NAME_AND_TYPE:
+				in.readUnsignedShort();
+				descriptors.add(in.readUnsignedShort());
+				break;
+			case CONSTANT_STRING:
+			case CONSTANT_MODULE:
+			case CONSTANT_PACKAGE:
+				in.readUnsignedShort();
+				break;
+			case CONSTANT_METHOD_HANDLE:
+				in.readUnsignedByte();
+				in.readUnsignedShort();
+				break;
+			case CONSTANT_INTEGER:
+			case CONSTANT_FLOAT:
+			case CONSTANT_FIELDREF:
+			case CONSTANT_METHODREF:
+			case CONSTANT_INTERFACE_METHODREF:
+			case CONSTANT_DYNAMIC:
+			case CONSTANT_INVOKE_DYNAMIC:
+				in.readInt();
+				break;
+			case CONSTANT_LONG:
+			case CONSTANT_DOUBLE:
+				in.readLong();
+				i++;
+				break;
+			default:
+				throw new IOException("Unknown constant pool tag " + tag);
+			}
+		}
+		in.readUnsignedShort();
+		in.readUnsignedShort();
+		in.readUnsignedShort();
+		int interfaces = in.readUnsignedShort();
+		for(int i=0; i<interfaces; i++)
+			in.readUnsignedShort();
+		// the descriptors and the annotations of the fields and of the methods
+		for(int k=0; k<2; k++) {
+			int members = in.readUnsignedShort();
+			for(int i=0; i<members; i++) {
+				in.readUnsignedShort();
+				in.readUnsignedShort();
+				descriptors.add(in.readUnsignedShort());
+				readAttributes(in, utf8, descriptors);
+			}
+		}
+		// the annotations of the class
+		readAttributes(in, utf8, descriptors);
+		for(int ix: classes) {
+			String name = utf8[ix];
+			if (name != null) {
+				if (name.startsWith("["))
+					addDescriptor(name, used);
+				else
+					addClass(name, used);
+			}
+		}
+		for(int ix: descriptors)
+			if (utf8[ix] != null)
+				addDescriptor(utf8[ix], used);
+	}
+	
+	/**
+	 * Read the attributes of a class or of a member, collecting the descriptors named by the runtime visible annotations. 
+	 * The other attributes are skipped
+	 * @param in
+	 * @param utf8
+	 * @param descriptors
+	 * @throws IOException
+	 */
+	private void readAttributes(final DataInputStream in, final String[] utf8, final List<Integer> descriptors) throws IOException {
+		int attributes = in.readUnsignedShort();
+		for(int j=0; j<attributes; j++) {
+			String name = utf8[in.readUnsignedShort()];
+			int length = in.readInt();
+			if (RUNTIME_VISIBLE_ANNOTATIONS.equals(name))
+				readAnnotations(in, descriptors);
+			else if (RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS.equals(name)) {
+				int parameters = in.readUnsignedByte();
+				for(int i=0; i<parameters; i++)
+					readAnnotations(in, descriptors);
+			}
+			else if (ANNOTATION_DEFAULT.equals(name))
+				readElementValue(in, descriptors);
+			else
+				skip(in, length);
+		}
+	}
+	
+	private void readAnnotations(final DataInputStream in, final List<Integer> descriptors) throws IOException {
+		int annotations = in.readUnsignedShort();
+		for(int i=0; i<annotations; i++)
+			readAnnotation(in, descriptors);
+	}
+	
+	private void readAnnotation(final DataInputStream in, final List<Integer> descriptors) throws IOException {
+		descriptors.add(in.readUnsignedShort());
+		int pairs = in.readUnsignedShort();
+		for(int i=0; i<pairs; i++) {
+			in.readUnsignedShort();
+			readElementValue(in, descriptors);
+		}
+	}
+	
+	private void readElementValue(final DataInputStream in, final List<Integer> descriptors) throws IOException {
+		int tag = in.readUnsignedByte();
+		switch(tag) {
+		case 'e':
+			descriptors.add(in.readUnsignedShort());
+			in.readUnsignedShort();
+			break;
+		case 'c':
+			descriptors.add(in.readUnsignedShort());
+			break;
+		case '@':
+			readAnnotation(in, descriptors);
+			break;
+		case '[':
+			int values = in.readUnsignedShort();
+			for(int i=0; i<values; i++)
+				readElementValue(in, descriptors);
+			break;
+		default:
+			in.readUnsignedShort();
+		}
+	}
+	
+	private void skip(final DataInputStream in, final int length) throws IOException {
+		int remaining = length;
+		while(remaining > 0) {
+			int skipped = in.skipBytes(remaining);
+			if (skipped <= 0)
+				throw new IOException("Unexpected end of class file");
+			remaining -= skipped;
+		}
+	}
+	
+	private void addDescriptor(final String descriptor, final Set<String> used) {
+		int ix = 0;
+		while((ix = descriptor.indexOf('L', ix)) >= 0) {
+			int end = descriptor.indexOf(';', ix);
+			if (end < 0)
+				break;
+			addClass(descriptor.substring(ix + 1, end), used);
+			ix = end + 1;
+		}
+	}
+	
+	private void addClass(final String internalName, final Set<String> used) {
+		String pkg = getPackage(internalName);
+		if (pkg.length() > 0)
+			used.add(pkg);
+	}
+	
+	private static String getPackage(final String internalName) {
+		int ix = internalName.lastIndexOf('/');
+		return ix > 0 ? internalName.substring(0, ix).replace('/', '.') : "";
+	}
+}
@@ -0,0 +1,165 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.provisioning.model.Artifact;
+import org.apache.sling.provisioning.model.ArtifactGroup;
+import org.apache.sling.provisioning.model.Feature;
+import org.apache.sling.provisioning.model.Model;
+import org.apache.sling.provisioning.model.RunMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.maiereni.sling.util.bean.Project;
+
+/**
+ * Selects the projects to clone. The JVM properties clone.include.groups and clone.exclude.groups hold comma 
+ * separated glob patterns matched against the groups of a project, and clone.include and clone.exclude hold glob
+ * patterns matched against its name. A project is selected when it matches the include patterns, if any, and none 
+ * of the exclude patterns. The JVM property clone.model names a provisioning model directory: when set, only the 
+ * projects of the artifacts of the model are selected, the project of an artifact being named after its artifactId 
+ * (sling-org-apache-sling-api for org.apache.sling.api)
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class ProjectFilter {
+	private static final Logger logger = LoggerFactory.getLogger(ProjectFilter.class);
+	public static final String INCLUDE_GROUPS = "clone.include.groups";
+	public static final String EXCLUDE_GROUPS = "clone.exclude.groups";
+	public static final String INCLUDE = "clone.include";
+	public static final String EXCLUDE = "clone.exclude";
+	public static final String MODEL = "clone.model";
+	private List<PathMatcher> includeGroups, excludeGroups, include, exclude;
+	private Set<String> required;
+	
+	/**
+	 * Create the filter given by the JVM properties
+	 * @throws Exception
+	 */
+	public ProjectFilter() throws Exception {
+		this(System.getProperty(INCLUDE_GROUPS), System.getProperty(EXCLUDE_GROUPS), System.getProperty(INCLUDE), System.getProperty(EXCLUDE), null);
+		String modelDir = System.getProperty(MODEL);
+		if (StringUtils.isNotBlank(modelDir)) {
+			Model model = new SlingModelReader().readModel(modelDir);
+			required = getProjectNames(model);
+			logger.debug("The model at " + modelDir + " uses " + required.size() + " artifacts");
+		}
+	}
+	
+	/**
+	 * Create a filter
+	 * @param includeGroups comma separated patterns, or null
+	 * @param excludeGroups comma separated patterns, or null
+	 * @param include comma separated patterns, or null
+	 * @param exclude comma separated patterns, or null
+	 * @param required the names of the projects required, or null for all
+	 */
+	public ProjectFilter(final String includeGroups, final String excludeGroups, final String include, final String exclude, final Set<String> required) {
+		this.includeGroups = getMatchers(includeGroups);
+		this.excludeGroups = getMatchers(excludeGroups);
+		this.include = getMatchers(include);
+		this.exclude = getMatchers(exclude);
+		this.required = required;
+	}
+	
+	/**
+	 * Check if a project is selected
+	 * @param project
+	 * @return
+	 */
+	public boolean accept(@Nonnull final Project project) {
+		List<String> groups = ManifestClause.split(StringUtils.defaultString(project.getGroup()), ',');
+		boolean ret = required == null || required.contains(project.getName()) || required.contains(StringUtils.removeEnd(project.getPath(), ".git"));
+		ret &= includeGroups.isEmpty() || matches(includeGroups, groups);
+		ret &= excludeGroups.isEmpty() || !matches(excludeGroups, groups);
+		ret &= include.isEmpty() || matches(include, project.getName());
+		ret &= exclude.isEmpty() || !matches(exclude, project.getName());
+		return ret;
+	}
+	
+	/**
+	 * Get the projects selected
+	 * @param projects
+	 * @return
+	 */
+	public List<Project> filter(@Nonnull final List<Project> projects) {
+		List<Project> ret = new ArrayList<Project>();
+		for(Project project: projects)
+			if (accept(project))
+				ret.add(project);
+		logger.debug("Selected " + ret.size() + " of " + projects.size() + " projects");
+		return ret;
+	}
+	
+	/**
+	 * Get the names of the projects of the artifacts of a model, for all the features and run modes
+	 * @param model
+	 * @return
+	 */
+	public static Set<String> getProjectNames(@Nonnull final Model model) {
+		Set<String> ret = new HashSet<String>();
+		for(Feature feature: model.getFeatures())
+			for(RunMode rm: feature.getRunModes())
+				for(ArtifactGroup group: rm.getArtifactGroups()) {
+					Iterator<Artifact> iArtifact = group.iterator();
+					while(iArtifact.hasNext())
+						ret.add("sling-" + iArtifact.next().getArtifactId().replace('.', '-'));
+				}
+		return ret;
+	}
+	
+	private static boolean matches(final List<PathMatcher> matchers, final List<String> values) {
+		boolean ret = false;
+		for(String value: values)
+			ret |= matches(matchers, value);
+		return ret;
+	}
+	
+	private static boolean matches(final List<PathMatcher> matchers, final String value) {
+		boolean ret = false;
+		if (StringUtils.isNotEmpty(value))
+			for(PathMatcher matcher: matchers)
+				if (matcher.matches(Paths.get(value))) {
+					ret = true;
+					break;
+				}
+		return ret;
+	}
+	
+	private static List<PathMatcher> getMatchers(final String patterns) {
+		List<PathMatcher> ret = new ArrayList<PathMatcher>();
+		if (StringUtils.isNotBlank(patterns))
+			for(String pattern: patterns.split(","))
+				if (StringUtils.isNotBlank(pattern))
+					ret.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern.trim()));
+		return ret;
+	}
+}
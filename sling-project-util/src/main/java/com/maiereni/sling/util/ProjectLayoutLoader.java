@@ -17,21 +17,15 @@
  */
 package com.maiereni.sling.util;
 
+import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
 import javax.annotation.Nonnull;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
 
 import com.maiereni.sling.util.bean.Project;
 import com.maiereni.sling.util.bean.ProjectLayout;
@@ -43,46 +37,46 @@ import com.maiereni.sling.util.bean.ProjectLayout;
  *
  */
 class ProjectLayoutLoader {
-	private static final DocumentBuilder DOCUMENT_BUILDER;
 	/**
-	 * Read the project layout from the sourceURL
+	 * Read the project layout from the sourceURL. The file is read with a pull parser, 
+	 * so the loader can be used by several threads at once
 	 * @param sourceFile
 	 * @return
 	 * @throws Exception
 	 */
 	public ProjectLayout readProjectLayout(@Nonnull final String sourceFile) throws Exception {
 		ProjectLayout ret = new ProjectLayout();
-		try (InputStream is = new FileInputStream(sourceFile)) {
-			XPath xpath = XPathFactory.newInstance().newXPath();
-			Document document = DOCUMENT_BUILDER.parse(is);
-			NodeList nl = (NodeList)xpath.evaluate("//project", document, XPathConstants.NODESET);
-			List<Project> projects = new ArrayList<Project>();
-			for(int i=0;i<nl.getLength();i++) {
-				Element eProject = (Element)nl.item(i);
-				Project project = getProject(eProject);
-				projects.add(project);
+		List<Project> projects = new ArrayList<Project>();
+		try (InputStream is = new BufferedInputStream(new FileInputStream(sourceFile))) {
+			XMLStreamReader reader = XmlSupport.createStreamReader(is);
+			try {
+				while(reader.hasNext()) {
+					if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("project")) {
+						Project project = getProject(reader);
+						projects.add(project);
+					}
+				}
+			}
+			finally {
+				reader.close();
 			}
-			ret.setProjects(projects);
 		}
+		ret.setProjects(projects);
 		return ret;
 	}
 
-	protected Project getProject(final Element element) {
+	protected Project getProject(final XMLStreamReader reader) {
 		Project project = new Project();
-		project.setGroup(element.getAttribute("group"));
-		project.setName(element.getAttribute("path"));
-		project.setPath(element.getAttribute("name"));
+		String group = getAttribute(reader, "group");
+		// the repo tool manifests name the attribute groups
+		project.setGroup(group.length() > 0 ? group : getAttribute(reader, "groups"));
+		project.setName(getAttribute(reader, "path"));
+		project.setPath(getAttribute(reader, "name"));
 		return project;
 	}
-
-	static {
-		try {
-			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-			DOCUMENT_BUILDER = factory.newDocumentBuilder();
-		}
-		catch(Exception e) {
-			throw new ExceptionInInitializerError(e);
-		}
-	}
 	
+	private String getAttribute(final XMLStreamReader reader, final String name) {
+		String ret = reader.getAttributeValue(null, name);
+		return ret == null ? "" : ret;
+	}
 }
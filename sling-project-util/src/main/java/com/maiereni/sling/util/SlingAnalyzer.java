@@ -0,0 +1,247 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nonnull;
+
+import org.apache.sling.provisioning.model.Model;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.maiereni.sling.util.bean.AnalyzerConfiguration;
+import com.maiereni.sling.util.bean.DependencyTree;
+
+/**
+ * An analyzer to embed in a long running process. Nothing is read when the analyzer is created: the bundle resolver, 
+ * the inventories of installed bundles and the models are loaded by the first request which needs them and kept 
+ * for the following ones, so that only the first request pays for reading the manifests of the bundle jars. 
+ * A kept file is read again when its size or modification time has changed, and invalidate() drops everything. 
+ * The requests run on a pool of threads of the analyzer and return futures. A closed analyzer rejects new requests
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class SlingAnalyzer implements AutoCloseable {
+	private static final Logger logger = LoggerFactory.getLogger(SlingAnalyzer.class);
+	private AnalyzerConfiguration configuration;
+	private volatile ExecutorService executor;
+	private volatile boolean closed;
+	private volatile BundleResolver bundleResolver;
+	private SlingGitCloner cloner;
+	private Object cloneLock = new Object();
+	private volatile BundleInventory bundleInventory = new BundleInventory();
+	private Map<String, SlingModelInterpreter> interpreters = new ConcurrentHashMap<String, SlingModelInterpreter>();
+	
+	public SlingAnalyzer(@Nonnull final AnalyzerConfiguration configuration) {
+		this.configuration = configuration;
+	}
+	
+	/**
+	 * Clone the Sling projects into the directory of the cloned projects. The clones run one after the other on 
+	 * the same cloner, since concurrent clones of a project into the same directory would conflict
+	 * @return
+	 */
+	public CompletableFuture<Void> cloneSling() {
+		return submit(() -> {
+			synchronized(cloneLock) {
+				if (cloner == null)
+					cloner = new SlingGitCloner(getGitDir(), configuration.getRemoteUrl());
+				cloner.cloneSling();
+			}
+			return null;
+		});
+	}
+	
+	/**
+	 * Read the model of a directory. The model is kept for the following requests on the same directory
+	 * @param modelDir
+	 * @return
+	 */
+	public CompletableFuture<Model> readModel(@Nonnull final String modelDir) {
+		return submit(() -> getInterpreter(getBundlesFile()).getModelCache(modelDir).getModel());
+	}
+	
+	/**
+	 * Resolve the bundles of a model against the default list of installed bundles
+	 * @param modelDir
+	 * @param runModes a comma separated list of run modes. If null, the bundles of all the run modes are listed
+	 * @return
+	 */
+	public CompletableFuture<DependencyTree> resolve(@Nonnull final String modelDir, final String runModes) {
+		return resolve(modelDir, getBundlesFile(), runModes);
+	}
+	
+	/**
+	 * Resolve the bundles of a model against a list of installed bundles
+	 * @param modelDir
+	 * @param fBundles
+	 * @param runModes a comma separated list of run modes. If null, the bundles of all the run modes are listed
+	 * @return
+	 */
+	public CompletableFuture<DependencyTree> resolve(@Nonnull final String modelDir, @Nonnull final File fBundles, final String runModes) {
+		return submit(() -> getInterpreter(fBundles).getDependencyTree(modelDir, runModes));
+	}
+	
+	/**
+	 * Write a dependency tree to a file
+	 * @param tree
+	 * @param format
+	 * @param outputFile
+	 * @return
+	 */
+	public CompletableFuture<File> render(@Nonnull final DependencyTree tree, @Nonnull final OutputFormat format, @Nonnull final File outputFile) {
+		return submit(() -> {
+			try (OutputStream os = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+				format.newWriter().write(tree, os);
+			}
+			return outputFile;
+		});
+	}
+	
+	/**
+	 * Resolve the bundles of a model against the default list of installed bundles and write the dependency tree to a file
+	 * @param modelDir
+	 * @param runModes
+	 * @param format
+	 * @param outputFile
+	 * @return
+	 */
+	public CompletableFuture<File> render(@Nonnull final String modelDir, final String runModes, @Nonnull final OutputFormat format, @Nonnull final File outputFile) {
+		return resolve(modelDir, runModes).thenCompose(tree -> render(tree, format, outputFile));
+	}
+	
+	/**
+	 * Get the resolver shared by the requests. It is created on the first call
+	 * @return
+	 */
+	public BundleResolver getBundleResolver() {
+		BundleResolver ret = bundleResolver;
+		if (ret == null) {
+			synchronized(this) {
+				if (bundleResolver == null)
+					bundleResolver = configuration.getMavenRepository() == null ? new BundleResolver() : new BundleResolver(configuration.getMavenRepository());
+				ret = bundleResolver;
+			}
+		}
+		return ret;
+	}
+	
+	public BundleInventory getBundleInventory() {
+		return bundleInventory;
+	}
+	
+	/**
+	 * Drop the manifests, the inventories and the models read so far. The requests which are running complete 
+	 * with what they have read, but the interpreters they create are not kept
+	 */
+	public void invalidate() {
+		synchronized(this) {
+			interpreters.clear();
+			bundleResolver = null;
+			bundleInventory = new BundleInventory();
+		}
+	}
+	
+	/**
+	 * Stop the threads of the analyzer. The requests which have been submitted are completed, the following ones 
+	 * throw an IllegalStateException
+	 */
+	@Override
+	public void close() {
+		synchronized(this) {
+			closed = true;
+			if (executor != null) {
+				executor.shutdown();
+				executor = null;
+			}
+		}
+	}
+	
+	private SlingModelInterpreter getInterpreter(final File fBundles) throws Exception {
+		String key = fBundles.getCanonicalPath();
+		SlingModelInterpreter ret = interpreters.get(key);
+		if (ret == null) {
+			// created under the lock of invalidate() so that an interpreter of a dropped resolver or inventory is not kept
+			synchronized(this) {
+				ret = interpreters.get(key);
+				if (ret == null) {
+					logger.debug("Create an interpreter for the installed bundles " + key);
+					ret = new SlingModelInterpreter(getBundleResolver(), bundleInventory, fBundles, getGitDir());
+					interpreters.put(key, ret);
+				}
+			}
+		}
+		return ret;
+	}
+	
+	private File getGitDir() {
+		File ret = configuration.getGitDir();
+		if (ret == null)
+			ret = new File(System.getProperty(SlingGitCloner.GIT_HOME, System.getProperty(SlingGitCloner.USER_HOME) + "/git"));
+		return ret;
+	}
+	
+	private File getBundlesFile() {
+		File ret = configuration.getBundlesFile();
+		if (ret == null)
+			ret = new File(System.getProperty(BundleInventory.BUNDLES, "./bundles.csv"));
+		return ret;
+	}
+	
+	private <T> CompletableFuture<T> submit(final Callable<T> task) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return task.call();
+			}
+			catch(RuntimeException e) {
+				throw e;
+			}
+			catch(Exception e) {
+				throw new CompletionException(e);
+			}
+		}, getExecutor());
+	}
+	
+	private ExecutorService getExecutor() {
+		ExecutorService ret = executor;
+		if (ret == null) {
+			synchronized(this) {
+				if (closed)
+					throw new IllegalStateException("The analyzer is closed");
+				if (executor == null) {
+					int threads = configuration.getThreads() > 0 ? configuration.getThreads() : Runtime.getRuntime().availableProcessors();
+					executor = Executors.newFixedThreadPool(threads);
+				}
+				ret = executor;
+			}
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,158 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.LineNumberReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.maiereni.sling.util.bean.BatchJob;
+
+/**
+ * Runs the model interpreter for a list of launchpads in one JVM. The jobs are described by a manifest
+ * file with one line per job in the format modelDir,bundlesFile,output. Empty lines and lines starting
+ * with # are ignored. The jobs share the manifests read from the bundle jars and the parsed lists of 
+ * installed bundles and run concurrently on a number of threads given by the JVM property batch.threads
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class SlingBatchInterpreter {
+	private static final Logger logger = LoggerFactory.getLogger(SlingBatchInterpreter.class);
+	public static final String BATCH_THREADS = "batch.threads";
+	private BundleResolver bundleResolver;
+	private BundleInventory bundleInventory;
+	private int threads;
+
+	public SlingBatchInterpreter() {
+		bundleResolver = new BundleResolver();
+		bundleInventory = new BundleInventory();
+		threads = SlingUtil.getThreads(BATCH_THREADS);
+	}
+
+	/**
+	 * Read the jobs from the manifest file
+	 * @param manifestFile
+	 * @return
+	 * @throws Exception
+	 */
+	public List<BatchJob> readJobs(@Nonnull final String manifestFile) throws Exception {
+		List<BatchJob> ret = new ArrayList<BatchJob>();
+		try (FileReader fr = new FileReader(manifestFile)) {
+			LineNumberReader lnr = new LineNumberReader(fr);
+			String s = null;
+			while((s = lnr.readLine()) != null) {
+				s = s.trim();
+				if (s.length() == 0 || s.startsWith("#"))
+					continue;
+				String[] sp = s.split(",");
+				if (sp.length < 3)
+					throw new Exception("Invalid job at line " + lnr.getLineNumber() + " of " + manifestFile + ": " + s);
+				BatchJob job = new BatchJob();
+				job.setModelDir(sp[0].trim());
+				job.setBundlesFile(sp[1].trim());
+				job.setOutput(sp[2].trim());
+				ret.add(job);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Run the jobs concurrently
+	 * @param jobs
+	 * @return the number of jobs that have failed
+	 * @throws Exception
+	 */
+	public int run(@Nonnull final List<BatchJob> jobs) throws Exception {
+		int ret = 0;
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, jobs.size())));
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for(final BatchJob job: jobs) {
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							runJob(job);
+						}
+						catch(Exception e) {
+							throw new RuntimeException("Failed to process " + job, e);
+						}
+					}
+				}));
+			}
+			for(int i=0; i<futures.size(); i++) {
+				try {
+					futures.get(i).get();
+				}
+				catch(Exception e) {
+					logger.error("The job " + jobs.get(i) + " has failed", e);
+					ret++;
+				}
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		return ret;
+	}
+
+	private void runJob(final BatchJob job) throws Exception {
+		long start = System.currentTimeMillis();
+		logger.debug("Start job " + job);
+		SlingModelInterpreter interpreter = new SlingModelInterpreter(bundleResolver, bundleInventory, new File(job.getBundlesFile()));
+		interpreter.buildDependencyTree(job.getModelDir(), job.getOutput());
+		logger.debug("Done job " + job + " in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * Run the tool with the arguments of the command line
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void execute(final String[] args) throws Exception {
+		SlingBatchInterpreter batch = new SlingBatchInterpreter();
+		List<BatchJob> jobs = batch.readJobs(args[0]);
+		long start = System.currentTimeMillis();
+		int failed = batch.run(jobs);
+		logger.debug("Processed " + jobs.size() + " jobs in " + (System.currentTimeMillis() - start) + " ms. Failed: " + failed);
+		if (failed > 0)
+			throw new Exception("Failed to process " + failed + " of " + jobs.size() + " jobs");
+	}
+
+	public static void main(final String[] args) {
+		try {
+			execute(args);
+		}
+		catch(Exception e) {
+			logger.error("The batch could not be processed", e);
+			System.exit(1);
+		}
+	}
+}
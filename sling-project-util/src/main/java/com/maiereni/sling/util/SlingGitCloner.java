@@ -18,21 +18,66 @@
 package com.maiereni.sling.util;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.annotation.Nonnull;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jgit.api.CloneCommand;
+import org.eclipse.jgit.api.FetchCommand;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand.ResetType;
+import org.eclipse.jgit.api.errors.TransportException;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.TagOpt;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.util.FS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.maiereni.sling.util.bean.CloneStatus;
 import com.maiereni.sling.util.bean.Project;
 import com.maiereni.sling.util.bean.ProjectLayout;
 
 /**
+ * Clones the Apache Sling projects listed by the aggregator project from the remote given by github.url, or from the 
+ * local mirror given by git.mirror.dir. The projects are cloned concurrently, each into a temporary directory under 
+ * .partial which is moved into place once complete. The transport errors are retried and the status of each project is 
+ * kept in a journal, so that the next run resumes an interrupted one.
+ * If git.object.store names a directory, the objects of all the projects are fetched into that bare repository and the
+ * clones borrow them through objects/info/alternates. The store references the heads of each clone under 
+ * refs/clones/&lt;name&gt;/. Cloning the project again, or removing its clone, releases these objects to the next 
+ * collection of the store
+ * 
  * @author Petre Maierean
  *
  */
@@ -44,34 +89,90 @@ public class SlingGitCloner {
 	public static final String GITHUB_USER = "github.user";
 	public static final String GITHUB_PASSWORD = "github.password";
 	public static final String SLING_AGGREGATOR_DEF_URL = "github.sling.aggregator.url";
+	public static final String GIT_MIRROR = "git.mirror.dir";
+	public static final String GIT_BARE = "git.bare";
+	public static final String CLONE_THREADS = "clone.threads";
+	public static final String CLONE_RETRIES = "clone.retries";
+	public static final String CLONE_BACKOFF = "clone.backoff";
+	public static final String GIT_OBJECT_STORE = "git.object.store";
+	public static final String GIT_OBJECT_STORE_GC = "git.object.store.gc";
+	private static final String PARTIAL_DIR = ".partial";
+	private static final String LOCK_SUFFIX = ".lock";
+	private static final String R_CLONES = "refs/clones/";
+	private static final String JOURNAL = ".clone-journal.csv";
 	
 	private File fLocalGitDir;
 	private String gitHubUrl;
 	private boolean bare;
+	private int threads, retries;
+	private long backoff;
+	private File fPartialDir;
+	private FileChannel partialLock;
+	private CloneJournal journal;
+	private File fObjectStore;
+	private int gcInterval;
+	private AtomicInteger fetches = new AtomicInteger();
+	private volatile int collectedFetches;
+	private ReadWriteLock storeLock = new ReentrantReadWriteLock();
+	private Set<String> cloning = ConcurrentHashMap.newKeySet();
 	private Project aggregator;
 	private UsernamePasswordCredentialsProvider credentials;
 	
-	SlingGitCloner() throws Exception {
-		String userDir = System.getProperty(USER_HOME);
-		String gitDir = System.getProperty(GIT_HOME, userDir + "/git");
-		File fLocalGitDir = new File(gitDir);
+	public SlingGitCloner() throws Exception {
+		this(new File(System.getProperty(GIT_HOME, System.getProperty(USER_HOME) + "/git")), null);
+	}
+	
+	/**
+	 * Create a cloner for a given local directory and remote. The other settings are taken from the JVM properties
+	 * @param fLocalGitDir the directory to clone the projects into
+	 * @param remoteUrl the URL of the remote organization. If null, it is given by the JVM properties git.mirror.dir or github.url
+	 * @throws Exception
+	 */
+	public SlingGitCloner(@Nonnull final File fLocalGitDir, final String remoteUrl) throws Exception {
 		if (!fLocalGitDir.exists())
 			if (!fLocalGitDir.mkdirs())
 				throw new Exception("Cannot make GIT repository at " + fLocalGitDir.getPath());
 		this.fLocalGitDir = fLocalGitDir;
 		logger.debug("Using git local repository at " + fLocalGitDir.getPath());
-		this.gitHubUrl = System.getProperty(GITHUB_URL, "https://github.com/apache");
+		String mirror = StringUtils.isNotBlank(remoteUrl) ? remoteUrl : System.getProperty(GIT_MIRROR);
+		this.gitHubUrl = getRemoteUrl(StringUtils.isNotBlank(mirror) ? mirror : System.getProperty(GITHUB_URL, "https://github.com/apache"));
+		logger.debug("Using the remote " + gitHubUrl);
+		this.bare = Boolean.getBoolean(GIT_BARE);
+		threads = SlingUtil.getThreads(CLONE_THREADS);
+		retries = Integer.getInteger(CLONE_RETRIES, 3);
+		backoff = Long.getLong(CLONE_BACKOFF, 1000L);
+		fPartialDir = createPartialDir(new File(fLocalGitDir, PARTIAL_DIR));
+		journal = new CloneJournal(new File(fLocalGitDir, JOURNAL));
+		String store = System.getProperty(GIT_OBJECT_STORE);
+		if (StringUtils.isNotBlank(store)) {
+			fObjectStore = new File(store).getAbsoluteFile();
+			if (!RepositoryCache.FileKey.isGitRepository(fObjectStore, FS.DETECTED))
+				Git.init().setBare(true).setDirectory(fObjectStore).call().close();
+			try (Git git = Git.open(fObjectStore)) {
+				// the fetches wait for the collection, so the packs replaced by it can be removed at once. The objects
+				// of the clones are kept by the references under refs/clones/
+				StoredConfig config = git.getRepository().getConfig();
+				if (config.getString("gc", null, "prunePackExpire") == null) {
+					config.setString("gc", null, "prunePackExpire", "now");
+					config.save();
+				}
+			}
+			gcInterval = Math.max(1, Integer.getInteger(GIT_OBJECT_STORE_GC, 50));
+			logger.debug("Using the shared object store at " + fObjectStore.getPath());
+		}
 		aggregator = new Project();
 		aggregator.setName("sling-aggregator");
 		aggregator.setPath("sling-aggregator.git");
 		aggregator.setGroup("aggregator");
 		String userName = System.getProperty(GITHUB_USER);
-		if (StringUtils.isBlank(userName))
-			throw new Exception("Please provide the userName with the JVM property " + GITHUB_USER);
-		String password = System.getProperty(GITHUB_PASSWORD);
-		if (StringUtils.isBlank(password))
-			throw new Exception("Please provide the password with the JVM property " + GITHUB_PASSWORD);
-		credentials = new UsernamePasswordCredentialsProvider(userName, password.toCharArray());
+		if (StringUtils.isNotBlank(userName)) {
+			String password = System.getProperty(GITHUB_PASSWORD);
+			if (StringUtils.isBlank(password))
+				throw new Exception("Please provide the password with the JVM property " + GITHUB_PASSWORD);
+			credentials = new UsernamePasswordCredentialsProvider(userName, password.toCharArray());
+		}
+		else
+			logger.debug("No user has been provided with the JVM property " + GITHUB_USER + ", the projects are cloned anonymously");
 	}
 	
 	
@@ -83,38 +184,326 @@ public class SlingGitCloner {
 		logger.debug("Load project definition from "  + fProjectDef.getPath());
 		ProjectLayout projectLayout = loader.readProjectLayout(fProjectDef.getPath());
 		logger.debug("Have loaded the project definitions from " + fProjectDef.getPath());
-		for(Project project: projectLayout.getProjects()) {
-			cloneProject(project);
+		List<Project> projects = new ProjectFilter().filter(projectLayout.getProjects());
+		int failed = cloneProjects(projects);
+		if (failed > 0)
+			throw new Exception("Failed to clone " + failed + " of " + projects.size() + " projects");
+	}
+	
+	/**
+	 * Clone a list of projects concurrently
+	 * @param projects
+	 * @return the number of projects which could not be cloned
+	 * @throws Exception
+	 */
+	public int cloneProjects(@Nonnull final List<Project> projects) throws Exception {
+		int ret = 0;
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, projects.size())));
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for(final Project project: projects) {
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							cloneProject(project);
+						}
+						catch(Exception e) {
+							throw new RuntimeException("Failed to clone " + project.getPath(), e);
+						}
+					}
+				}));
+			}
+			for(int i=0; i<futures.size(); i++) {
+				try {
+					futures.get(i).get();
+				}
+				catch(Exception e) {
+					logger.error("The project " + projects.get(i).getName() + " could not be cloned", e);
+					ret++;
+				}
+			}
+		}
+		finally {
+			executor.shutdown();
 		}
+		if (fObjectStore != null && collectedFetches != fetches.get())
+			collectObjectStore();
+		return ret;
+	}
+	
+	public File getLocalGitDir() {
+		return fLocalGitDir;
+	}
+	
+	/**
+	 * Remove the temporary directories of the runs which are no longer locked, then make and lock the directory of this cloner
+	 * @param fParent
+	 * @return
+	 * @throws Exception
+	 */
+	private File createPartialDir(final File fParent) throws Exception {
+		if (!fParent.isDirectory() && !fParent.mkdirs())
+			throw new Exception("Cannot make directory at " + fParent.getPath());
+		File[] runs = fParent.listFiles(f -> f.isDirectory());
+		if (runs != null)
+			for(File fRun: runs) {
+				File fLock = new File(fParent, fRun.getName() + LOCK_SUFFIX);
+				try (FileChannel channel = FileChannel.open(fLock.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE); 
+					FileLock lock = channel.tryLock()) {
+					if (lock != null) {
+						logger.debug("Remove the partial clones left by a previous run at " + fRun.getPath());
+						FileUtils.deleteDirectory(fRun);
+						Files.delete(fLock.toPath());
+					}
+				}
+				catch(OverlappingFileLockException e) {
+					// in use by another cloner of this process
+				}
+			}
+		File ret = Files.createTempDirectory(fParent.toPath(), "run").toFile();
+		partialLock = FileChannel.open(new File(fParent, ret.getName() + LOCK_SUFFIX).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		partialLock.lock();
+		return ret;
 	}
 	
 	private File cloneProject(@Nonnull final Project project) throws Exception {
 		String uri = gitHubUrl + "/" + project.getPath();
 		File fDest = new File(fLocalGitDir, project.getName());
-		if (!fDest.exists()) {	
-			if (!fDest.mkdirs())
-				throw new Exception("Could not make directory at " + fDest.getPath());
-			logger.debug("Clone project from " + uri);
-			CloneCommand clone = Git.cloneRepository();
-			clone.setURI(uri).setCredentialsProvider(credentials).setDirectory(fDest).setBranch(Constants.HEAD).setBare(bare);
-			clone.call().getRepository().close();
-			logger.debug("Done cloning the project from " + uri);
-		}
-		else
+		CloneStatus status = journal.get(project.getName());
+		boolean complete = status == null || status.getStatus().equals(CloneStatus.CLONED);
+		if (fDest.exists() && complete && isRepository(fDest)) {
 			logger.debug("The project has already been cloned " + fDest.getPath());
+			return fDest;
+		}
+		if (fDest.exists()) {
+			logger.warn("Remove the incomplete clone at " + fDest.getPath());
+			FileUtils.deleteDirectory(fDest);
+		}
+		journal.update(project.getName(), CloneStatus.STARTED, 0, null);
+		File fTemp = new File(fPartialDir, project.getName());
+		cloning.add(project.getName());
+		try {
+			cloneProject(project, uri, fTemp, fDest);
+		}
+		finally {
+			cloning.remove(project.getName());
+		}
 		return fDest;
 	}
 	
+	private void cloneProject(final Project project, final String uri, final File fTemp, final File fDest) throws Exception {
+		long delay = backoff;
+		for(int attempt = 1; ; attempt++) {
+			try {
+				FileUtils.deleteDirectory(fTemp);
+				if (!fTemp.mkdirs())
+					throw new Exception("Could not make directory at " + fTemp.getPath());
+				logger.debug("Clone project from " + uri);
+				if (fObjectStore != null)
+					cloneFromStore(project, uri, fTemp);
+				else {
+					CloneCommand clone = Git.cloneRepository();
+					clone.setURI(uri).setDirectory(fTemp).setBranch(Constants.HEAD).setBare(bare);
+					if (credentials != null)
+						clone.setCredentialsProvider(credentials);
+					clone.call().getRepository().close();
+				}
+				Files.move(fTemp.toPath(), fDest.toPath(), StandardCopyOption.ATOMIC_MOVE);
+				journal.update(project.getName(), CloneStatus.CLONED, attempt, null);
+				logger.debug("Done cloning the project from " + uri);
+				break;
+			}
+			catch(Exception e) {
+				FileUtils.deleteQuietly(fTemp);
+				if (attempt > retries || !isTransient(e)) {
+					journal.update(project.getName(), CloneStatus.FAILED, attempt, e.getMessage());
+					throw e;
+				}
+				logger.warn("Attempt " + attempt + " to clone " + uri + " has failed: " + e.getMessage() + ". Retry in " + delay + " ms");
+				Thread.sleep(delay);
+				delay *= 2;
+			}
+		}
+	}
+	
 	/**
+	 * Fetch the branches of a project into the object store, then create a repository which borrows the objects of 
+	 * the store and has the branches of the project
+	 * @param project
+	 * @param uri
+	 * @param fDest
+	 * @throws Exception
+	 */
+	private void cloneFromStore(final Project project, final String uri, final File fDest) throws Exception {
+		FetchResult result = null;
+		Map<String, ObjectId> branches = new TreeMap<String, ObjectId>();
+		storeLock.readLock().lock();
+		try (Git store = Git.open(fObjectStore)) {
+			String refSpec = "+" + Constants.R_HEADS + "*:" + Constants.R_REMOTES + project.getName() + "/*";
+			FetchCommand fetch = store.fetch().setRemote(uri).setRefSpecs(new RefSpec(refSpec)).setTagOpt(TagOpt.NO_TAGS);
+			if (credentials != null)
+				fetch.setCredentialsProvider(credentials);
+			result = fetch.call();
+			for(Ref ref: result.getAdvertisedRefs())
+				if (ref.getName().startsWith(Constants.R_HEADS))
+					branches.put(ref.getName().substring(Constants.R_HEADS.length()), ref.getObjectId());
+			if (branches.isEmpty())
+				throw new Exception("The project at " + uri + " has no branch");
+			// the objects used by the clone must survive the next fetches of the project, those of a previous clone not
+			String prefix = R_CLONES + project.getName() + "/";
+			for(Ref ref: store.getRepository().getRefDatabase().getRefs(prefix).values())
+				if (!branches.containsValue(ref.getObjectId()))
+					deleteRef(store.getRepository(), ref.getName());
+			for(ObjectId id: branches.values())
+				updateRef(store.getRepository(), prefix + id.name(), id);
+		}
+		finally {
+			storeLock.readLock().unlock();
+		}
+		if (fetches.incrementAndGet() % gcInterval == 0)
+			collectObjectStore();
+		String branch = getDefaultBranch(result.getAdvertisedRef(Constants.HEAD), branches);
+		
+		File fGitDir = bare ? fDest : new File(fDest, Constants.DOT_GIT);
+		Repository repository = FileRepositoryBuilder.create(fGitDir);
+		repository.create(bare);
+		repository.close();
+		// the alternates are read when the repository is opened
+		FileUtils.write(new File(fGitDir, "objects/info/alternates"), new File(fObjectStore, "objects").getPath() + "\n", StandardCharsets.UTF_8);
+		repository = FileRepositoryBuilder.create(fGitDir);
+		try {
+			StoredConfig config = repository.getConfig();
+			config.setString("remote", Constants.DEFAULT_REMOTE_NAME, "url", uri);
+			config.setString("remote", Constants.DEFAULT_REMOTE_NAME, "fetch", bare ? "+refs/heads/*:refs/heads/*" : "+refs/heads/*:refs/remotes/origin/*");
+			if (!bare) {
+				config.setString("branch", branch, "remote", Constants.DEFAULT_REMOTE_NAME);
+				config.setString("branch", branch, "merge", Constants.R_HEADS + branch);
+			}
+			config.save();
+			for(Map.Entry<String, ObjectId> entry: branches.entrySet())
+				updateRef(repository, (bare ? Constants.R_HEADS : Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/") + entry.getKey(), entry.getValue());
+			if (!bare)
+				updateRef(repository, Constants.R_HEADS + branch, branches.get(branch));
+			repository.updateRef(Constants.HEAD).link(Constants.R_HEADS + branch);
+			if (!bare)
+				Git.wrap(repository).reset().setMode(ResetType.HARD).setRef(Constants.R_HEADS + branch).call();
+		}
+		finally {
+			repository.close();
+		}
+	}
+	
+	private void updateRef(final Repository repository, final String name, final ObjectId id) throws Exception {
+		RefUpdate update = repository.updateRef(name);
+		update.setNewObjectId(id);
+		RefUpdate.Result result = update.forceUpdate();
+		if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FORCED && result != RefUpdate.Result.NO_CHANGE)
+			throw new Exception("Could not update " + name + " in " + repository.getDirectory() + ": " + result);
+	}
+	
+	private void deleteRef(final Repository repository, final String name) throws Exception {
+		RefUpdate update = repository.updateRef(name);
+		update.setForceUpdate(true);
+		RefUpdate.Result result = update.delete();
+		if (result != RefUpdate.Result.FORCED && result != RefUpdate.Result.NO_CHANGE)
+			throw new Exception("Could not delete " + name + " from " + repository.getDirectory() + ": " + result);
+	}
+	
+	/**
+	 * Delete the references to the heads of the clones which are neither on disk nor being cloned
+	 * @param store
+	 * @throws Exception
+	 */
+	private void releaseRemovedClones(final Repository store) throws Exception {
+		for(Ref ref: store.getRefDatabase().getRefs(R_CLONES).values()) {
+			String name = ref.getName().substring(R_CLONES.length(), ref.getName().lastIndexOf('/'));
+			if (!cloning.contains(name) && !new File(fLocalGitDir, name).exists()) {
+				logger.debug("Release the objects of the removed clone " + name);
+				deleteRef(store, ref.getName());
+			}
+		}
+	}
+	
+	/**
+	 * Get the branch the HEAD of the remote points to, preferring master when several branches match
+	 * @param head
+	 * @param branches
+	 * @return
+	 */
+	private static String getDefaultBranch(final Ref head, final Map<String, ObjectId> branches) {
+		String ret = null;
+		if (head != null && head.isSymbolic())
+			ret = Repository.shortenRefName(head.getTarget().getName());
+		else if (head != null) {
+			for(Map.Entry<String, ObjectId> entry: branches.entrySet())
+				if (entry.getValue().equals(head.getObjectId()) && (ret == null || entry.getKey().equals(Constants.MASTER)))
+					ret = entry.getKey();
+		}
+		if (ret == null || !branches.containsKey(ret))
+			ret = branches.containsKey(Constants.MASTER) ? Constants.MASTER : branches.keySet().iterator().next();
+		return ret;
+	}
+	
+	/**
+	 * Pack the objects of the store. The fetches wait for the collection to complete
+	 */
+	private void collectObjectStore() {
+		storeLock.writeLock().lock();
+		try (Git store = Git.open(fObjectStore)) {
+			long start = System.currentTimeMillis();
+			collectedFetches = fetches.get();
+			releaseRemovedClones(store.getRepository());
+			store.gc().call();
+			logger.debug("Collected the object store in " + (System.currentTimeMillis() - start) + " ms");
+		}
+		catch(Exception e) {
+			logger.error("The object store could not be collected", e);
+		}
+		finally {
+			storeLock.writeLock().unlock();
+		}
+	}
+	
+	private boolean isRepository(final File fDir) {
+		return RepositoryCache.FileKey.isGitRepository(bare ? fDir : new File(fDir, Constants.DOT_GIT), FS.DETECTED);
+	}
+	
+	private static boolean isTransient(final Exception e) {
+		return e instanceof TransportException || e instanceof IOException;
+	}
+	
+	/**
+	 * Get the base URL of the remote repositories. A local path is converted to a file URL
+	 * @param remote
+	 * @return
+	 */
+	private static String getRemoteUrl(final String remote) {
+		String ret = remote.trim();
+		if (!ret.contains("://") && !ret.contains("@"))
+			ret = new File(ret).getAbsoluteFile().toURI().toString();
+		while(ret.endsWith("/"))
+			ret = ret.substring(0, ret.length() - 1);
+		return ret;
+	}
+	
+	/**
+	 * Clone the Sling projects
 	 * @param args
+	 * @throws Exception
 	 */
-	public static void main(String[] args) {
+	public static void execute(final String[] args) throws Exception {
+		SlingGitCloner synch = new SlingGitCloner();
+		synch.cloneSling();
+	}
+
+	public static void main(final String[] args) {
 		try {
-			SlingGitCloner synch = new SlingGitCloner();
-			synch.cloneSling();
+			execute(args);
 		}
 		catch(Exception e) {
 			logger.error("Failed to synchronize", e);
+			System.exit(1);
 		}
 	}
 
@@ -18,35 +18,35 @@
 package com.maiereni.sling.util;
 
 import java.io.File;
-import java.io.StringWriter;
-import java.nio.charset.Charset;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.provisioning.model.Artifact;
 import org.apache.sling.provisioning.model.ArtifactGroup;
 import org.apache.sling.provisioning.model.Feature;
 import org.apache.sling.provisioning.model.Model;
 import org.apache.sling.provisioning.model.RunMode;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.resource.Namespace;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
+import com.maiereni.sling.util.bean.AssemblyResult;
 import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.BundleDependencies;
+import com.maiereni.sling.util.bean.DependencyTree;
+import com.maiereni.sling.util.bean.Dependent;
+import com.maiereni.sling.util.bean.PackageExport;
+import com.maiereni.sling.util.bean.PackageUsage;
 
 /**
  * @author Petre Maierean
@@ -54,182 +54,253 @@ import com.maiereni.sling.util.bean.Bundle;
  */
 public class SlingModelInterpreter extends SlingModelReader {
 	private static final Logger logger = LoggerFactory.getLogger(SlingModelInterpreter.class);
-	private Map<String, Bundle> installedBundles;
+	public static final String RUN_MODES = "sling.run.modes";
+	public static final String DEEP_SCAN = "deep.scan";
 	
 	public SlingModelInterpreter() throws Exception {
 		super();
-		installedBundles = init(false);
+	}
+
+	/**
+	 * Create an interpreter that shares the bundle resolver and the inventory of installed bundles with other interpreters
+	 * @param bundleResolver
+	 * @param bundleInventory
+	 * @param fBundles the list of installed bundles
+	 * @throws Exception
+	 */
+	public SlingModelInterpreter(final BundleResolver bundleResolver, final BundleInventory bundleInventory, final File fBundles) throws Exception {
+		super(bundleResolver, bundleInventory, fBundles);
+	}
+
+	/**
+	 * Create an interpreter for the projects cloned in a given directory
+	 * @param bundleResolver
+	 * @param bundleInventory
+	 * @param fBundles the list of installed bundles
+	 * @param fLocalGitDir the directory of the cloned projects
+	 * @throws Exception
+	 */
+	public SlingModelInterpreter(final BundleResolver bundleResolver, final BundleInventory bundleInventory, final File fBundles, final File fLocalGitDir) throws Exception {
+		super(bundleResolver, bundleInventory, fBundles, fLocalGitDir);
 	}
 	
-	public void buildDependencyTree(final String modelDir, final String xmlFile) throws Exception {
-		List<Bundle> bundles = listBundles(modelDir);
-        List<Bundle> extra = getExtraInstalledBundles(bundles);
-        Map<String, Bundle> exportPackages = getExportPackages(bundles, extra);
-        Document document = documentBuilder.newDocument();
-        Element root = document.createElement("bundles");
-        document.appendChild(root);
-        Element el = document.createElement("featured");
-        root.appendChild(el);
-        addBundles(el, bundles, exportPackages);
-        el = document.createElement("extra");
-        addBundles(el, extra, exportPackages);
+	public void buildDependencyTree(final String modelDir, final String outputFile) throws Exception {
+		buildDependencyTree(modelDir, outputFile, OutputFormat.getSelected());
+	}
+	
+	/**
+	 * Build the dependency tree of the bundles of a model for the run modes given by the JVM property sling.run.modes
+	 * and write it to a file in the given format
+	 * @param modelDir
+	 * @param outputFile
+	 * @param format
+	 * @throws Exception
+	 */
+	public void buildDependencyTree(final String modelDir, final String outputFile, final OutputFormat format) throws Exception {
+		buildDependencyTree(modelDir, outputFile, format, System.getProperty(RUN_MODES));
+	}
 
-        el = document.createElement("exports");
-        root.appendChild(el);
-        addExports(el,exportPackages);
-        
-		Transformer transformer = TransformerFactory.newInstance().newTransformer();
-		transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-		transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-		//initialize StreamResult with File object to save to file
-		StreamResult result = new StreamResult(new StringWriter());
-		DOMSource source = new DOMSource(document);
-		transformer.transform(source, result);
-		String xmlString = result.getWriter().toString();
-		FileUtils.writeStringToFile(new File(xmlFile), xmlString, Charset.defaultCharset());		
+	/**
+	 * Build the dependency tree of the bundles of a model for a combination of run modes and write it to a file in the given format
+	 * @param modelDir
+	 * @param outputFile
+	 * @param format
+	 * @param runModes a comma separated list of run modes. If null, the bundles of all the run modes are listed
+	 * @throws Exception
+	 */
+	public void buildDependencyTree(final String modelDir, final String outputFile, final OutputFormat format, final String runModes) throws Exception {
+		DependencyTree tree = getDependencyTree(modelDir, runModes);
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+			format.newWriter().write(tree, os);
+		}
+	}
+	
+	/**
+	 * Resolve the imports of the bundles of a model against the exports of the featured and installed bundles
+	 * @param modelDir
+	 * @return
+	 * @throws Exception
+	 */
+	public DependencyTree getDependencyTree(final String modelDir) throws Exception {
+		return getDependencyTree(modelDir, System.getProperty(RUN_MODES));
+	}
+	
+	/**
+	 * Resolve the imports of the bundles of the effective model for a combination of run modes. The model directory 
+	 * is read once and the effective models are kept, so that the deployment profiles can be analyzed one after the other.
+	 * The requirements of the Require-Capability headers are resolved against the Provide-Capability headers of the bundles
+	 * and the capabilities of the system bundle 
+	 * @param modelDir
+	 * @param runModes a comma separated list of run modes. If null, the bundles of all the run modes are listed
+	 * @return
+	 * @throws Exception
+	 */
+	public DependencyTree getDependencyTree(final String modelDir, final String runModes) throws Exception {
+		EffectiveModelCache cache = getModelCache(modelDir);
+		Model model = runModes == null ? cache.getModel() : cache.getEffectiveModel(runModes);
+		List<Bundle> bundles = listBundles(model);
+        List<Bundle> extra = getExtraInstalledBundles(bundles);
+        PackageIndex exportPackages = getExportPackages(bundles, extra);
+        CapabilityIndex capabilities = getCapabilities(bundles, extra);
+        DependencyTree ret = new DependencyTree();
+        ret.setFeatured(getDependencies(bundles, exportPackages, capabilities));
+        ret.setExtra(getDependencies(extra, exportPackages, capabilities));
+        ret.setExports(exportPackages.getExports());
+        ret.setCollisions(exportPackages.getCollisions());
+        logger.debug("Indexed " + exportPackages.size() + " exported packages, found " + ret.getCollisions().size() + " collisions");
+        logger.debug("Indexed " + capabilities.size() + " capabilities");
+        if (Boolean.getBoolean(DEEP_SCAN)) 
+        	addPackageUsage(ret);
+        return ret;
+	}
+	
+	/**
+	 * Materialize the install directory of the bundles of a model for the run modes given by the JVM property sling.run.modes.
+	 * The jars of the featured bundles are staged by start level, the extra installed bundles at the default start level
+	 * @param modelDir
+	 * @param installDir
+	 * @return
+	 * @throws Exception
+	 */
+	public AssemblyResult assembleLaunchpad(final String modelDir, final String installDir) throws Exception {
+		DependencyTree tree = getDependencyTree(modelDir);
+		List<Bundle> bundles = tree.getBundles();
+		return new LaunchpadAssembler().assemble(bundles, new File(installDir));
 	}
 	
-	private void addExports(final Element el, final Map<String, Bundle> exportPackages) {
-		Document document = el.getOwnerDocument();
-		for(String key: exportPackages.keySet()) {
-			Element exp = document.createElement("export");
-			exp.setAttribute("key", key);
-			exp.setAttribute("name", exportPackages.get(key).getName());
-			exp.setAttribute("pos", ""+ exportPackages.get(key).getPos());
-			el.appendChild(exp);
-		}		
+	/**
+	 * Scan the classes of the bundles of a tree to find the imports which are not used and the hidden dependencies
+	 * @param tree
+	 * @throws Exception
+	 */
+	public void addPackageUsage(final DependencyTree tree) throws Exception {
+		List<Bundle> bundles = tree.getBundles();
+		long start = System.currentTimeMillis();
+		Map<String, PackageUsage> usage = new PackageUsageScanner().scan(bundles);
+		logger.debug("Scanned the classes of " + usage.size() + " bundles in " + (System.currentTimeMillis() - start) + " ms");
+		for(BundleDependencies dependencies: tree.getFeatured())
+			dependencies.setUsage(usage.get(dependencies.getBundle().getLocation()));
+		for(BundleDependencies dependencies: tree.getExtra())
+			dependencies.setUsage(usage.get(dependencies.getBundle().getLocation()));
 	}
 	
-	private void addBundles(final Element el, final List<Bundle> bundles, final Map<String, Bundle> exportPackages ) {
-		Document document = el.getOwnerDocument();
+	private List<BundleDependencies> getDependencies(final List<Bundle> bundles, final PackageIndex exportPackages, final CapabilityIndex capabilities) {
+		List<BundleDependencies> ret = new ArrayList<BundleDependencies>();
         List<String> depName = new ArrayList<String>();
         for(Bundle bundle: bundles) {
         	depName.clear();
-        	Element sel = document.createElement("bundle");
-        	sel.setAttribute("name", bundle.getName());
-        	sel.setAttribute("position", "" + bundle.getPos());
-        	sel.setAttribute("category", bundle.getPkgName());
-        	sel.setAttribute("artifactId", bundle.getArtifactId());
-        	sel.setAttribute("groupId", bundle.getGroupId());
-        	sel.setAttribute("version", bundle.getVersion());
-        	sel.setAttribute("feature", bundle.getFeatureName());
-        	Element elDeps = document.createElement("dependents");
-        	Element unresolved = document.createElement("uresolved");
-        	boolean hasUnresolved = false;
-        	for(String importPackage: bundle.getImportPackages()) {
-        		String key = getKey(importPackage);
-        		Bundle dep = exportPackages.get(key);
-        		boolean tenative = false;
-        		if (dep == null) {
-                	if (bundle.getName().equals("org.apache.felix.configadmin")) {
-                		logger.debug("here: " + key);
-                	}
-        			dep = resolveExportIgnoreVersion(exportPackages, key);
-        			tenative = true;
-        		}
-        		if (dep == null) {        		
-    				Element elDep = document.createElement("unresolvedItem");
-    				elDep.setTextContent(importPackage);
-    				unresolved.appendChild(elDep);
-    				hasUnresolved = true;
-        		}
-        		else {
-        			if (!depName.contains(dep.getName())) {
-        				Element elDep = document.createElement("dependent");
-        				elDep.setAttribute("name", dep.getName());
-        				elDep.setAttribute("pos", "" + dep.getPos());
-        				if (tenative)
-        					elDep.setTextContent("tentative");
-        				elDeps.appendChild(elDep);
-        				depName.add(dep.getName());
-        			}
-        		}
-        	}
-       		sel.appendChild(elDeps);
-       		if (hasUnresolved)
-       			sel.appendChild(unresolved);
-        	el.appendChild(sel);
+        	List<Dependent> dependents = new ArrayList<Dependent>();
+        	List<String> unresolved = new ArrayList<String>();
+        	if (bundle.getImportPackages() != null)
+	        	for(String importPackage: bundle.getImportPackages()) {
+	        		ManifestClause clause = ManifestClause.parse(importPackage);
+	        		boolean isUnresolved = false;
+	        		for(String name: clause.getNames()) {
+		        		PackageExport dep = exportPackages.find(name, clause.getAttribute("version"));
+		        		boolean tenative = false;
+		        		if (dep == null) {
+		        			dep = exportPackages.findAny(name);
+		        			tenative = true;
+		        		}
+		        		if (dep == null) {        		
+		        			isUnresolved = true;
+		        		}
+		        		else {
+		        			if (!depName.contains(dep.getBundle().getName())) {
+		        				Dependent dependent = new Dependent();
+		        				dependent.setName(dep.getBundle().getName());
+		        				dependent.setPos(dep.getBundle().getPos());
+		        				dependent.setTentative(tenative);
+		        				dependents.add(dependent);
+		        				depName.add(dep.getBundle().getName());
+		        			}
+		        		}
+	        		}
+	        		if (isUnresolved)
+	        			unresolved.add(importPackage);
+	        	}
+        	List<String> unresolvedRequirements = new ArrayList<String>();
+        	if (bundle.getRequireCapabilities() != null)
+	        	for(String requireCapability: bundle.getRequireCapabilities()) {
+	        		ManifestClause clause = ManifestClause.parse(requireCapability);
+	        		String effective = clause.getDirective(Namespace.REQUIREMENT_EFFECTIVE_DIRECTIVE);
+	        		if (effective != null && !effective.equals(Namespace.EFFECTIVE_RESOLVE))
+	        			continue;
+	        		boolean isOptional = Namespace.RESOLUTION_OPTIONAL.equals(clause.getDirective(Namespace.REQUIREMENT_RESOLUTION_DIRECTIVE));
+	        		boolean isUnresolved = false;
+	        		for(String namespace: clause.getNames()) {
+	        			List<Bundle> providers = null;
+	        			try {
+	        				providers = capabilities.find(namespace, clause.getDirective(Namespace.REQUIREMENT_FILTER_DIRECTIVE));
+	        			}
+	        			catch(InvalidSyntaxException e) {
+	        				logger.debug("Invalid filter in " + bundle.getName() + ": " + requireCapability);
+	        				providers = Collections.emptyList();
+	        			}
+	        			if (providers.isEmpty())
+	        				isUnresolved = !isOptional;
+	        			else if (!providers.contains(bundle) && !depName.contains(providers.get(0).getName())) {
+	        				Dependent dependent = new Dependent();
+	        				dependent.setName(providers.get(0).getName());
+	        				dependent.setPos(providers.get(0).getPos());
+	        				dependents.add(dependent);
+	        				depName.add(providers.get(0).getName());
+	        			}
+	        		}
+	        		if (isUnresolved)
+	        			unresolvedRequirements.add(requireCapability);
+	        	}
+        	BundleDependencies dependencies = new BundleDependencies();
+        	dependencies.setBundle(bundle);
+        	dependencies.setDependents(dependents);
+        	dependencies.setUnresolved(unresolved);
+        	dependencies.setUnresolvedRequirements(unresolvedRequirements);
+        	ret.add(dependencies);
         }
-		
-	}
-	
-	private Bundle resolveExportIgnoreVersion(final Map<String, Bundle> exportPackages, final String key) {
-		Bundle ret = null;
-		int ix = key.indexOf("version=");
-		String s = key;
-		if (key.equals("org.apache.felix.cm.file"))
-			logger.debug("Here");
-		if (ix > 0) {
-			s = key.substring(0,  ix);
-		} else {
-			ix = key.indexOf(":");
-			if (ix > 0)
-				s = key.substring(0,  ix);
-		}
-		ix = s.indexOf(";");
-		if (ix>0)
-			s = s.substring(0,  ix);
-		for(String expKeys: exportPackages.keySet()) {
-			if (expKeys.startsWith(s + ":") || expKeys.startsWith(s + ";") || expKeys.equals(s)) {
-				ret = exportPackages.get(expKeys);
-				break;
-			}
-		}
 		return ret;
 	}
-
-	private Map<String, Bundle> getExportPackages(final List<Bundle> bundles, final List<Bundle> extra) {
-		Map<String, Bundle> ret = new HashMap<String, Bundle>();
-		for(Bundle bundle: bundles) {
-			for(String exp: bundle.getExportPackages()) {
-				String key = getKey(exp);
-				if (StringUtils.isNotEmpty(exp)) {
-					if (ret.containsKey(key)) {
-						Bundle b = ret.get(key);
-						logger.warn("Collision " + key + " is exported by 2 bundles " + b.getName() + " and " + bundle.getName());
-					}
-					else
-						ret.put(key, bundle);
-				}
-			}
-		}
-		for(Bundle bundle: extra) {
-			for(String exp: bundle.getExportPackages()) {
-				if (ret.containsKey(exp))
-					logger.warn("Collision " + exp + " is exported by 2 bundles " + ret.get(exp).getName() + " and " + bundle.getName());
-				else
-					ret.put(exp, bundle);
-			}
-		}
+	
+	private PackageIndex getExportPackages(final List<Bundle> bundles, final List<Bundle> extra) {
+		PackageIndex ret = new PackageIndex();
+		for(Bundle bundle: bundles) 
+			ret.add(bundle);
+		for(Bundle bundle: extra) 
+			ret.add(bundle);
 		return ret; 
 	} 
 	
-	private static final String VERSION1 = ";version=";
-	private static final String VERSION = VERSION1 + "\"";
-	
-	private String getKey(final String s) {
-		String ret = s.trim();
-		if (s.startsWith("\""))
-			ret = s.substring(1);
-		if (ret.endsWith("\""))
-			ret = ret.substring(0, ret.length() - 1);
-		int ix = ret.indexOf(VERSION);
-		if (ix>0)
-			ret = ret.substring(0, ix) + ":" + ret.substring(ix + VERSION.length());
-		ix = ret.indexOf(VERSION1);
-		if (ix>0)
-			ret = ret.substring(0, ix) + ":" + ret.substring(ix + VERSION1.length());
-		ix = ret.indexOf(";uses");
-		if (ix>0)
-			ret = ret.substring(0, ix);
-		if (ret.endsWith("\""))
-			ret = ret.substring(0, ret.length() - 1);
-		return ret;
+	/**
+	 * Index the capabilities of the bundles. The system bundle provides the execution environments and the other 
+	 * capabilities of the framework. The bundle org.apache.felix.framework of the model, if any, stands for it
+	 * @param bundles
+	 * @param extra
+	 * @return
+	 * @throws Exception
+	 */
+	private CapabilityIndex getCapabilities(final List<Bundle> bundles, final List<Bundle> extra) throws Exception {
+		CapabilityIndex ret = new CapabilityIndex();
+		Bundle framework = null;
+		for(Bundle bundle: bundles) 
+			if (FrameworkProperties.FRAMEWORK.equals(bundle.getName()))
+				framework = bundle;
+		for(Bundle bundle: extra) 
+			if (FrameworkProperties.FRAMEWORK.equals(bundle.getName()))
+				framework = bundle;
+		Bundle systemBundle = FrameworkProperties.getSystemBundle(framework);
+		if (framework != null)
+			systemBundle.setPos(framework.getPos());
+		ret.add(systemBundle);
+		for(Bundle bundle: bundles) 
+			ret.add(bundle);
+		for(Bundle bundle: extra) 
+			ret.add(bundle);
+		return ret; 
 	}
 	
 	private List<Bundle> getExtraInstalledBundles(final List<Bundle> bundles) {
 		List<Bundle> ret = new ArrayList<Bundle>();
 		List<String> names = new ArrayList<String>();
+		Map<String, Bundle> installedBundles = init(false);
 		for(Bundle bundle: bundles) 
 			names.add(bundle.getName());
 		for(String rem: installedBundles.keySet()) {
@@ -255,9 +326,9 @@ public class SlingModelInterpreter extends SlingModelReader {
 		return ret;
 	}
 	
-	private List<Bundle> listBundles(final String modelDir) throws Exception {
-		Model model = readModel(modelDir);
+	private List<Bundle> listBundles(final Model model) throws Exception {
 		List<Bundle> ret = new ArrayList<Bundle>();
+		Map<String, Bundle> installedBundles = init(false);
 		int count = 0;
 		for(Feature feature: model.getFeatures()) {
 			for(RunMode rm : feature.getRunModes()) {
@@ -271,6 +342,7 @@ public class SlingModelInterpreter extends SlingModelReader {
 						if (installedBundles.containsKey(bundle.getName())) {
 							int pos = installedBundles.get(bundle.getName()).getPos();
 							bundle.setPos(pos);
+							bundle.setStartLevel(group.getStartLevel());
 							ret.add(bundle);
 							count++;
 						}
@@ -297,13 +369,34 @@ public class SlingModelInterpreter extends SlingModelReader {
 		}
 	};
 	
+	/**
+	 * Run the tool with the arguments of the command line
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void execute(final String[] args) throws Exception {
+		SlingModelInterpreter reader = new SlingModelInterpreter();
+		String profiles = System.getProperty(RUN_MODES);
+		if (profiles != null && profiles.contains(";")) {
+			// one tree per deployment profile, e.g. -Dsling.run.modes=author,oak_tar;publish,oak_tar
+			OutputFormat format = OutputFormat.getSelected();
+			for(String profile: profiles.split(";")) {
+				String runModes = StringUtils.join(EffectiveModelCache.getRunModes(profile), ",");
+				String outputFile = FilenameUtils.removeExtension(args[1]) + "-" + runModes.replace(',', '_') + "." + FilenameUtils.getExtension(args[1]);
+				reader.buildDependencyTree(args[0], outputFile, format, runModes);
+			}
+		}
+		else
+			reader.buildDependencyTree(args[0], args[1]);
+	}
+
 	public static void main(final String[] args) {
 		try {
-			SlingModelInterpreter reader = new SlingModelInterpreter();
-			reader.buildDependencyTree(args[0], args[1]);
+			execute(args);
 		}
 		catch(Exception e) {
 			logger.error("The model could not be read", e);
+			System.exit(1);
 		}
 	}
 }
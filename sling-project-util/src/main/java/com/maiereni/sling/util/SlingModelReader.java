@@ -17,28 +17,20 @@
  */
 package com.maiereni.sling.util;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.LineNumberReader;
-import java.io.StringWriter;
-import java.nio.charset.Charset;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import javax.annotation.Nonnull;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.provisioning.model.Artifact;
 import org.apache.sling.provisioning.model.ArtifactGroup;
@@ -66,20 +58,42 @@ import com.maiereni.sling.util.bean.Bundle;
  */
 public class SlingModelReader {
 	private static final Logger logger = LoggerFactory.getLogger(SlingModelReader.class);
-	protected DocumentBuilder documentBuilder;
 	private File fLocalGitDir;
-	private Map<String, Bundle> bundles;
 	protected BundleResolver bundleResolver;
-	
+	protected BundleInventory bundleInventory;
+	protected File fBundles;
+	private FileCache<EffectiveModelCache> modelCaches = new FileCache<EffectiveModelCache>();
+
 	public SlingModelReader() throws Exception {
-		String userDir = System.getProperty(SlingGitCloner.USER_HOME);
-		String gitDir = System.getProperty(SlingGitCloner.GIT_HOME, userDir + "/git");
-		fLocalGitDir = new File(gitDir);
+		this(new BundleResolver(), new BundleInventory(), new File(System.getProperty(BundleInventory.BUNDLES, "./bundles.csv")));
+	}
+
+	/**
+	 * Create a reader that shares the bundle resolver and the inventory of installed bundles with other readers
+	 * @param bundleResolver
+	 * @param bundleInventory
+	 * @param fBundles the list of installed bundles
+	 * @throws Exception
+	 */
+	public SlingModelReader(@Nonnull final BundleResolver bundleResolver, @Nonnull final BundleInventory bundleInventory, @Nonnull final File fBundles) throws Exception {
+		this(bundleResolver, bundleInventory, fBundles, new File(System.getProperty(SlingGitCloner.GIT_HOME, System.getProperty(SlingGitCloner.USER_HOME) + "/git")));
+	}
+	
+	/**
+	 * Create a reader for the projects cloned in a given directory
+	 * @param bundleResolver
+	 * @param bundleInventory
+	 * @param fBundles the list of installed bundles
+	 * @param fLocalGitDir the directory of the cloned projects
+	 * @throws Exception
+	 */
+	public SlingModelReader(@Nonnull final BundleResolver bundleResolver, @Nonnull final BundleInventory bundleInventory, @Nonnull final File fBundles, @Nonnull final File fLocalGitDir) throws Exception {
+		this.fLocalGitDir = fLocalGitDir;
 		if (!fLocalGitDir.exists())
 			throw new Exception("No Git repository");
-		documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-		bundleResolver = new BundleResolver();
-		this.bundles = init(true);
+		this.bundleResolver = bundleResolver;
+		this.bundleInventory = bundleInventory;
+		this.fBundles = fBundles;
 	}
 	
 	public Model readModel(@Nonnull final String sModelDir) throws Exception {
@@ -105,8 +119,24 @@ public class SlingModelReader {
         
 	}
 	
+	/**
+	 * Get the model of a directory together with its effective models. The directory is read the first time only, 
+	 * and again when one of its files has changed
+	 * @param sModelDir
+	 * @return
+	 * @throws Exception
+	 */
+	public EffectiveModelCache getModelCache(@Nonnull final String sModelDir) throws Exception {
+		File fModelDir = new File(sModelDir);
+		String key = fModelDir.getCanonicalPath();
+		EffectiveModelCache ret = modelCaches.get(key, fModelDir);
+		if (ret == null)
+			ret = modelCaches.put(key, fModelDir, new EffectiveModelCache(readModel(sModelDir)));
+		return ret;
+	}
+	
 	public void printToXML(@Nonnull final Model model, @Nonnull final String xmlFile) throws Exception {
-        Document document = documentBuilder.newDocument();
+        Document document = XmlSupport.newDocument();
         Element el = document.createElement("model");
         el.setAttribute("location", model.getLocation());
         document.appendChild(el);
@@ -116,15 +146,9 @@ public class SlingModelReader {
         	Element f = createFeature(document, feature);
         	el.appendChild(f);
         }
-		Transformer transformer = TransformerFactory.newInstance().newTransformer();
-		transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-		transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-		//initialize StreamResult with File object to save to file
-		StreamResult result = new StreamResult(new StringWriter());
-		DOMSource source = new DOMSource(document);
-		transformer.transform(source, result);
-		String xmlString = result.getWriter().toString();
-		FileUtils.writeStringToFile(new File(xmlFile), xmlString, Charset.defaultCharset());
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(xmlFile))) {
+			XmlSupport.write(document, os);
+		}
 	}
 	
 	private Element createFeature(final Document document, final Feature feature) {
@@ -314,9 +338,9 @@ public class SlingModelReader {
 	
 	private boolean appendBundle(final Element el, final String bundleName, final Bundle b) {
 		boolean ret = false;
-		if (bundles.containsKey(bundleName)) {
+		Bundle bundle = init(true).get(bundleName);
+		if (bundle != null) {
 			Element bdl = el.getOwnerDocument().createElement("bundle");
-			Bundle bundle = bundles.get(bundleName);
 			bdl.setAttribute("id", "" + bundle.getPos());
 			if (StringUtils.isNotBlank(bundle.getPkgName()))
 				bdl.setAttribute("category", bundle.getPkgName());
@@ -343,13 +367,13 @@ public class SlingModelReader {
 			Element c = document.createElement("properties");
 			ret.appendChild(c);			
 			Enumeration<String> keys = cfg.getProperties().keys();
-			if (keys.hasMoreElements()) {
+			while(keys.hasMoreElements()) {
 				String key = keys.nextElement();
 				Object value = cfg.getProperties().get(key);
 				Element p = document.createElement("property");
 				p.setAttribute("key", key);
 				if (value != null)
-					p.setAttribute("value", value.toString());
+					p.setAttribute("value", getPropertyValue(value));
 				c.appendChild(p);			
 			}			
 		}
@@ -358,54 +382,65 @@ public class SlingModelReader {
 	}
 
 	
-	protected Map<String, Bundle> init(boolean b) {
-		Map<String, Bundle> bundles = new HashMap<String, Bundle>();
-		String sBundles = System.getProperty("bundles", "./bundles.csv");
-		File fBundles = new File(sBundles);
-		if (fBundles.exists()) {
-			try (FileReader fr = new FileReader(fBundles)) {
-				LineNumberReader lnr = new LineNumberReader(fr);
-				String s = null;
-				while((s = lnr.readLine()) != null) {
-					String[] sp = s.split(",");
-					Bundle bundle = new Bundle();
-					bundle.setPos(Integer.parseInt(sp[0]));
-					bundle.setText(sp[1]);
-					bundle.setName(sp[2]);
-					bundle.setVersion(sp[3]);
-					String pkgName = "";
-					for(int i=4; i<sp.length; i++) {
-						String sAdd = sp[i];
-						sAdd = sAdd.replaceAll("'", "");
-						if (pkgName.equals(""))
-							pkgName = sAdd;
-						else
-							pkgName = pkgName + "," + sp[i];
-					}
-					bundle.setPkgName(pkgName);
-					bundles.put(sp[2], bundle);
-					if (b)
-						bundles.put(sp[1], bundle);
+	/**
+	 * Get the text of a configuration property. The values of the array properties are separated by commas
+	 * @param value
+	 * @return
+	 */
+	protected static String getPropertyValue(final Object value) {
+		String ret = null;
+		if (value != null) {
+			if (value.getClass().isArray()) {
+				StringBuilder sb = new StringBuilder();
+				for(int i=0; i<Array.getLength(value); i++) {
+					if (i > 0)
+						sb.append(",");
+					sb.append(Array.get(value, i));
 				}
-				lnr.close();
-				logger.debug("Loaded {} bundles", bundles.size());
-			}
-			catch(Exception e) {
-				logger.error("Failed to load from file", e);
+				ret = sb.toString();
 			}
+			else
+				ret = value.toString();
 		}
-		return bundles;
+		return ret;
+	}
+	
+	/**
+	 * Get a key that identifies a combination of run modes regardless of the order of the names. 
+	 * The key of the global run mode is an empty string
+	 * @param names
+	 * @return
+	 */
+	protected static String getRunModesKey(final String[] names) {
+		String ret = "";
+		if (names != null && names.length > 0)
+			ret = StringUtils.join(RunMode.getSortedRunModesArray(names), ",");
+		return ret;
 	}
 	
+	protected Map<String, Bundle> init(boolean b) {
+		return bundleInventory.getBundles(fBundles, b);
+	}
+	
+	/**
+	 * Run the tool with the arguments of the command line
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void execute(final String[] args) throws Exception {
+		SlingModelReader reader = new SlingModelReader();
+		Model model = reader.readModel(args[0]);
+		if (args.length > 1) 
+			reader.printToXML(model, args[1]);
+	}
+
 	public static void main(final String[] args) {
 		try {
-			SlingModelReader reader = new SlingModelReader();
-			Model model = reader.readModel(args[0]);
-			if (args.length > 1) 
-				reader.printToXML(model, args[1]);
+			execute(args);
 		}
 		catch(Exception e) {
 			logger.error("The model could not be read", e);
+			System.exit(1);
 		}
 	}
 }
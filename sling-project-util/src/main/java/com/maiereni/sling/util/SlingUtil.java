@@ -0,0 +1,149 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.provisioning.model.Model;
+import org.apache.sling.provisioning.model.io.ModelReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+
+/**
+ * The command line of the utilities. The first argument selects the tool and the others are passed to its main method, 
+ * e.g. java -jar sling-util.jar interpret modelDir tree.xml. The tools are called directly rather than through lambdas or 
+ * reflection, and only the selected one is loaded together with its libraries. The warmup command runs the common code 
+ * paths on a small model, which is what the class data sharing archive of the distribution is generated from
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class SlingUtil {
+	private static final Logger logger = LoggerFactory.getLogger(SlingUtil.class);
+	private static final String WARMUP_MODEL = "[feature name=:boot]\n[variables]\n  io.version=2.6\n" +
+		"[artifacts startLevel=1]\n  org.apache.felix/org.apache.felix.framework/5.6.10\n  commons-io/commons-io/${io.version}\n" +
+		"[artifacts runModes=author]\n  org.apache.commons/commons-lang3/3.7\n" +
+		"[configurations]\n  org.foo.Bar\n    a=\"1\"\n[configurations runModes=author]\n  org.foo.Bar\n    a=\"2\"\n";
+	
+	private static final String[][] COMMANDS = {
+		{"clone", "clone the Sling projects into ${user.git.home}"},
+		{"read", "<modelDir> [model.xml] read a provisioning model"},
+		{"interpret", "<modelDir> <output> resolve the bundles of a model"},
+		{"batch", "<jobs.csv> interpret the launchpads of a manifest"},
+		{"resolve", "<modelDir> <report.xml> simulate the Felix resolver"},
+		{"config", "<modelDir> <report.xml> analyze the configurations"},
+		{"components", "<modelDir> <report.xml> index the declarative services components"},
+		{"verify", "<modelDir> <report.xml> verify the artifacts against their checksums"},
+		{"assemble", "<modelDir> <installDir> assemble the launchpad install directory"},
+		{"startup", "<modelDir> <report.xml> plan the startup by start level"},
+		{"footprint", "<modelDir> <report.xml> measure the footprint of the bundles"},
+		{"convert", "<outputDir> <modelDir|@listFile>... convert to the Feature Model"},
+		{"diff", "<report.xml> <bundles.csv|dir>... compare the installed bundles of many nodes"},
+		{"sources", "<modelDir> <report.xml> compare the cloned sources with the bundles of a model"},
+		{"build", "<modelDir> [report.xml] build the cloned projects which differ from the bundles of a model"},
+		{"warmup", "run the common code paths on a small model"}
+	};
+	
+	/**
+	 * Run a command. The errors of the command are thrown to the caller
+	 * @param command
+	 * @param args
+	 * @return false if the command is unknown
+	 * @throws Exception
+	 */
+	static boolean run(final String command, final String[] args) throws Exception {
+		switch(command) {
+		case "clone": SlingGitCloner.execute(args); break;
+		case "read": SlingModelReader.execute(args); break;
+		case "interpret": SlingModelInterpreter.execute(args); break;
+		case "batch": SlingBatchInterpreter.execute(args); break;
+		case "resolve": FelixResolverSimulator.execute(args); break;
+		case "config": ConfigurationAnalyzer.execute(args); break;
+		case "components": ComponentIndex.execute(args); break;
+		case "verify": ArtifactVerifier.execute(args); break;
+		case "assemble": LaunchpadAssembler.execute(args); break;
+		case "startup": StartupPlanner.execute(args); break;
+		case "footprint": FootprintAnalyzer.execute(args); break;
+		case "convert": FeatureModelConverter.execute(args); break;
+		case "diff": InventoryDiff.execute(args); break;
+		case "sources": SourceIndex.execute(args); break;
+		case "build": BuildPipeline.execute(args); break;
+		case "warmup": warmup(args); break;
+		default: return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Get the number of threads given by a JVM property. It defaults to the number of processors
+	 * @param property
+	 * @return at least 1
+	 */
+	static int getThreads(final String property) {
+		String s = System.getProperty(property);
+		return StringUtils.isNumeric(s) ? Math.max(1, Integer.parseInt(s)) : Runtime.getRuntime().availableProcessors();
+	}
+	
+	/**
+	 * Read, merge and write a small model
+	 * @param args
+	 * @throws Exception
+	 */
+	static void warmup(final String[] args) throws Exception {
+		long start = System.currentTimeMillis();
+		Model model = ModelReader.read(new StringReader(WARMUP_MODEL), "warmup");
+		new EffectiveModelCache(model).getEffectiveModel("author");
+		Document document = XmlSupport.newDocument();
+		document.appendChild(document.createElement("model"));
+		XmlSupport.write(document, new NullOutputStream());
+		logger.debug("Warmed up in " + (System.currentTimeMillis() - start) + " ms");
+	}
+	
+	/**
+	 * Run the command given by the first argument. The process exits with 1 if the command fails and with 2 if it is unknown
+	 * @param args
+	 */
+	public static void main(final String[] args) {
+		if (args.length == 0) {
+			printUsage(System.out);
+			return;
+		}
+		try {
+			if (!run(args[0], Arrays.copyOfRange(args, 1, args.length))) {
+				System.err.println("Unknown command " + args[0]);
+				printUsage(System.err);
+				System.exit(2);
+			}
+		}
+		catch(Exception e) {
+			logger.error("The command " + args[0] + " has failed", e);
+			System.exit(1);
+		}
+	}
+	
+	private static void printUsage(final PrintStream out) {
+		out.println("Usage: sling-util <command> [arguments], with the JVM properties of the command in JAVA_OPTS");
+		for(String[] command: COMMANDS)
+			out.println("  " + command[0] + " " + command[1]);
+	}
+}
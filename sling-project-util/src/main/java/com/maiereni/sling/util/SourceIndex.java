@@ -0,0 +1,291 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.DependencyTree;
+import com.maiereni.sling.util.bean.SourceProject;
+import com.maiereni.sling.util.bean.SourceStatus;
+
+/**
+ * Indexes the Maven projects of the cloned repositories by groupId:artifactId, so that the bundles of a launchpad 
+ * can be compared with their source. The pom.xml of each repository, and of its modules, is read with a pull parser.
+ * The repositories are read concurrently on a number of threads given by the JVM property index.threads.
+ * The groupId and the version of a project default to the ones of its parent
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class SourceIndex {
+	private static final Logger logger = LoggerFactory.getLogger(SourceIndex.class);
+	public static final String INDEX_THREADS = "index.threads";
+	private static final String POM = "pom.xml";
+	private int threads;
+	
+	public SourceIndex() {
+		threads = SlingUtil.getThreads(INDEX_THREADS);
+	}
+	
+	/**
+	 * Index the projects of the repositories cloned in a directory. The directories whose name starts with a dot are skipped
+	 * @param fGitDir
+	 * @return the projects by groupId:artifactId
+	 * @throws Exception
+	 */
+	public Map<String, SourceProject> index(@Nonnull final File fGitDir) throws Exception {
+		Map<String, SourceProject> ret = new TreeMap<String, SourceProject>();
+		File[] dirs = fGitDir.listFiles();
+		if (dirs == null)
+			throw new Exception("Cannot list the repositories at " + fGitDir.getPath());
+		Arrays.sort(dirs);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<List<SourceProject>>> futures = new ArrayList<Future<List<SourceProject>>>();
+			for(final File dir: dirs) {
+				if (dir.getName().startsWith(".") || !new File(dir, POM).isFile())
+					continue;
+				futures.add(executor.submit(() -> readProjects(dir, dir, new ArrayList<SourceProject>())));
+			}
+			for(Future<List<SourceProject>> future: futures)
+				for(SourceProject project: future.get()) {
+					SourceProject prev = ret.put(project.getGroupId() + ":" + project.getArtifactId(), project);
+					if (prev != null)
+						logger.warn("The project " + project.getGroupId() + ":" + project.getArtifactId() + " is found at " + prev.getPath() + " and " + project.getPath());
+				}
+		}
+		finally {
+			executor.shutdown();
+		}
+		logger.debug("Indexed " + ret.size() + " projects of " + fGitDir.getPath());
+		return ret;
+	}
+	
+	/**
+	 * Compare the bundles with the projects they are built from. The bundles without source are left out
+	 * @param index
+	 * @param bundles
+	 * @return
+	 */
+	public List<SourceStatus> compare(@Nonnull final Map<String, SourceProject> index, @Nonnull final List<Bundle> bundles) {
+		List<SourceStatus> ret = new ArrayList<SourceStatus>();
+		for(Bundle bundle: bundles) {
+			SourceProject project = index.get(bundle.getGroupId() + ":" + bundle.getArtifactId());
+			if (project == null || project.getVersion() == null || bundle.getVersion() == null)
+				continue;
+			int cmp = compareVersions(bundle.getVersion(), project.getVersion());
+			SourceStatus status = new SourceStatus();
+			status.setBundle(bundle);
+			status.setProject(project);
+			status.setStatus(cmp < 0 ? SourceStatus.BEHIND : cmp == 0 ? SourceStatus.CURRENT : SourceStatus.AHEAD);
+			ret.add(status);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Get the repositories of the bundles which are behind their source
+	 * @param statuses
+	 * @return
+	 */
+	public static Set<String> getRepositoriesToBuild(@Nonnull final List<SourceStatus> statuses) {
+		Set<String> ret = new LinkedHashSet<String>();
+		for(SourceStatus status: statuses)
+			if (status.getStatus().equals(SourceStatus.BEHIND))
+				ret.add(status.getProject().getRepository());
+		return ret;
+	}
+	
+	/**
+	 * Write the comparison and the repositories to build to an XML file
+	 * @param statuses
+	 * @param xmlFile
+	 * @throws Exception
+	 */
+	public void writeReport(@Nonnull final List<SourceStatus> statuses, @Nonnull final String xmlFile) throws Exception {
+		Document document = XmlSupport.newDocument();
+		Element root = document.createElement("sources");
+		document.appendChild(root);
+		for(SourceStatus status: statuses) {
+			Element el = document.createElement("bundle");
+			el.setAttribute("name", status.getBundle().getName());
+			el.setAttribute("groupId", status.getBundle().getGroupId());
+			el.setAttribute("artifactId", status.getBundle().getArtifactId());
+			el.setAttribute("version", status.getBundle().getVersion());
+			el.setAttribute("sourceVersion", status.getProject().getVersion());
+			el.setAttribute("path", status.getProject().getPath());
+			el.setAttribute("status", status.getStatus());
+			root.appendChild(el);
+		}
+		for(String repository: getRepositoriesToBuild(statuses)) {
+			Element el = document.createElement("build");
+			el.setAttribute("repository", repository);
+			root.appendChild(el);
+		}
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(xmlFile))) {
+			XmlSupport.write(document, os);
+		}
+	}
+	
+	/**
+	 * Compare two versions, either Maven (1.0.2-SNAPSHOT) or OSGi (1.0.2.SNAPSHOT) ones. The numeric parts are 
+	 * compared as numbers, and a version with a qualifier is lower than the same version without
+	 * @param v1
+	 * @param v2
+	 * @return
+	 */
+	public static int compareVersions(@Nonnull final String v1, @Nonnull final String v2) {
+		String[] p1 = v1.trim().split("[.-]");
+		String[] p2 = v2.trim().split("[.-]");
+		int ret = 0;
+		for(int i=0; ret == 0 && i<Math.max(p1.length, p2.length); i++) {
+			String s1 = i < p1.length ? p1[i] : null;
+			String s2 = i < p2.length ? p2[i] : null;
+			boolean n1 = s1 == null || StringUtils.isNumeric(s1);
+			boolean n2 = s2 == null || StringUtils.isNumeric(s2);
+			if (n1 && n2)
+				ret = Long.compare(s1 == null ? 0 : Long.parseLong(s1), s2 == null ? 0 : Long.parseLong(s2));
+			else if (s1 == null || s2 == null)
+				ret = s1 == null ? 1 : -1;	// the qualified version is lower
+			else if (n1 != n2)
+				ret = n1 ? 1 : -1;
+			else
+				ret = s1.compareToIgnoreCase(s2);
+		}
+		return Integer.signum(ret);
+	}
+	
+	private List<SourceProject> readProjects(final File repository, final File dir, final List<SourceProject> ret) throws Exception {
+		List<String> modules = new ArrayList<String>();
+		SourceProject project = readProject(new File(dir, POM), modules);
+		project.setRepository(repository.getPath());
+		project.setPath(dir.getPath());
+		if (project.getArtifactId() != null)
+			ret.add(project);
+		for(String module: modules) {
+			File fModule = new File(dir, module);
+			if (new File(fModule, POM).isFile())
+				readProjects(repository, fModule, ret);
+		}
+		return ret;
+	}
+	
+	private SourceProject readProject(final File pom, final List<String> modules) throws Exception {
+		SourceProject ret = new SourceProject();
+		List<String> dependencies = new ArrayList<String>();
+		String parentGroupId = null, parentVersion = null, depGroupId = null, depArtifactId = null;
+		List<String> stack = new ArrayList<String>();
+		try (InputStream is = new BufferedInputStream(new FileInputStream(pom))) {
+			XMLStreamReader reader = XmlSupport.createStreamReader(is);
+			try {
+				while(reader.hasNext()) {
+					int event = reader.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						String path = StringUtils.join(stack, "/") + "/" + reader.getLocalName();
+						switch(path) {
+						case "project/groupId": ret.setGroupId(reader.getElementText().trim()); break;
+						case "project/artifactId": ret.setArtifactId(reader.getElementText().trim()); break;
+						case "project/version": ret.setVersion(reader.getElementText().trim()); break;
+						case "project/packaging": ret.setPackaging(reader.getElementText().trim()); break;
+						case "project/parent/groupId": parentGroupId = reader.getElementText().trim(); break;
+						case "project/parent/version": parentVersion = reader.getElementText().trim(); break;
+						case "project/modules/module": modules.add(reader.getElementText().trim()); break;
+						case "project/dependencies/dependency/groupId": depGroupId = reader.getElementText().trim(); break;
+						case "project/dependencies/dependency/artifactId": depArtifactId = reader.getElementText().trim(); break;
+						default: stack.add(reader.getLocalName());
+						}
+					}
+					else if (event == XMLStreamConstants.END_ELEMENT) {
+						if (stack.size() == 3 && stack.get(2).equals("dependency") && stack.get(1).equals("dependencies")) {
+							dependencies.add(depGroupId + ":" + depArtifactId);
+							depGroupId = depArtifactId = null;
+						}
+						stack.remove(stack.size() - 1);
+					}
+				}
+			}
+			finally {
+				reader.close();
+			}
+		}
+		if (ret.getGroupId() == null)
+			ret.setGroupId(parentGroupId);
+		if (ret.getVersion() == null)
+			ret.setVersion(parentVersion);
+		for(int i=0; i<dependencies.size(); i++)
+			dependencies.set(i, dependencies.get(i).replace("${project.groupId}", String.valueOf(ret.getGroupId())));
+		ret.setDependencies(dependencies);
+		return ret;
+	}
+	
+	/**
+	 * Run the tool with the arguments of the command line
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void execute(final String[] args) throws Exception {
+		SlingModelInterpreter interpreter = new SlingModelInterpreter();
+		DependencyTree tree = interpreter.getDependencyTree(args[0]);
+		List<Bundle> bundles = tree.getBundles();
+		String userDir = System.getProperty(SlingGitCloner.USER_HOME);
+		File fGitDir = new File(System.getProperty(SlingGitCloner.GIT_HOME, userDir + "/git"));
+		SourceIndex sourceIndex = new SourceIndex();
+		long start = System.currentTimeMillis();
+		Map<String, SourceProject> index = sourceIndex.index(fGitDir);
+		logger.debug("Indexed the sources in " + (System.currentTimeMillis() - start) + " ms");
+		List<SourceStatus> statuses = sourceIndex.compare(index, bundles);
+		sourceIndex.writeReport(statuses, args[1]);
+	}
+
+	public static void main(final String[] args) {
+		try {
+			execute(args);
+		}
+		catch(Exception e) {
+			logger.error("The sources could not be indexed", e);
+			System.exit(1);
+		}
+	}
+}
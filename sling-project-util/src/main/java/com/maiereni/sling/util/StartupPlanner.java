@@ -0,0 +1,349 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.BundleDependencies;
+import com.maiereni.sling.util.bean.DependencyTree;
+import com.maiereni.sling.util.bean.Dependent;
+import com.maiereni.sling.util.bean.StartLevelStats;
+import com.maiereni.sling.util.bean.StartupEntry;
+import com.maiereni.sling.util.bean.StartupPlan;
+
+/**
+ * Plans the startup of a launchpad from its dependency tree and the start levels of its bundles. The bundles 
+ * which depend on each other are grouped with the algorithm of Tarjan, so that the cycles are handled as one node, 
+ * and the depth of each bundle is the length of the longest chain of dependencies ending with it. The longest chain 
+ * is the critical path of the startup. For each start level the planner reports the longest chain between the bundles 
+ * of the level and the number of bundles which can be activated concurrently. The suggested start level of a bundle 
+ * is the lowest level where all its dependencies are active whether they are moved or not, which is the highest of 
+ * the start levels and of the suggested levels of the bundles it depends on, or the lowest level of the launchpad.
+ * A bundle whose suggested level is lower than its start level waits for levels it does not need, and serializes 
+ * the startup. A bundle whose suggested level is higher depends on a bundle started after it. The bundles at the default start level 0,
+ * such as the extra installed bundles, are not compared with their suggested level
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class StartupPlanner {
+	private static final Logger logger = LoggerFactory.getLogger(StartupPlanner.class);
+	
+	/**
+	 * Plan the startup of the bundles of a tree
+	 * @param tree
+	 * @return
+	 */
+	public StartupPlan plan(@Nonnull final DependencyTree tree) {
+		List<Bundle> bundles = new ArrayList<Bundle>();
+		List<BundleDependencies> dependencies = new ArrayList<BundleDependencies>();
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		addAll(tree.getFeatured(), bundles, dependencies, ids);
+		addAll(tree.getExtra(), bundles, dependencies, ids);
+		int n = bundles.size();
+		int[][] edges = new int[n][];
+		for(int i=0; i<n; i++) {
+			List<Integer> l = new ArrayList<Integer>();
+			for(Dependent dependent: dependencies.get(i).getDependents()) {
+				Integer j = ids.get(dependent.getName());
+				if (j != null && j != i && !l.contains(j))
+					l.add(j);
+			}
+			edges[i] = new int[l.size()];
+			for(int k=0; k<edges[i].length; k++)
+				edges[i][k] = l.get(k);
+		}
+		// the components come out with the bundles depended upon first
+		List<int[]> components = new Tarjan(edges).run();
+		int[] component = new int[n];
+		for(int c=0; c<components.size(); c++)
+			for(int i: components.get(c))
+				component[i] = c;
+		int minLevel = Integer.MAX_VALUE;
+		for(Bundle bundle: bundles)
+			if (bundle.getStartLevel() > 0)
+				minLevel = Math.min(minLevel, bundle.getStartLevel());
+		if (minLevel == Integer.MAX_VALUE)
+			minLevel = 0;
+		int[] depth = new int[components.size()];
+		int[] previous = new int[components.size()];
+		int[] suggested = new int[components.size()];
+		int[] level = new int[components.size()];
+		int deepest = -1;
+		for(int c=0; c<components.size(); c++) {
+			int longest = 0;
+			previous[c] = -1;
+			suggested[c] = minLevel;
+			for(int i: components.get(c))
+				level[c] = Math.max(level[c], bundles.get(i).getStartLevel());
+			for(int i: components.get(c))
+				for(int j: edges[i]) {
+					int p = component[j];
+					if (p == c)
+						continue;
+					if (depth[p] > longest) {
+						longest = depth[p];
+						previous[c] = p;
+					}
+					suggested[c] = Math.max(suggested[c], Math.max(level[p], suggested[p]));
+				}
+			depth[c] = longest + 1;
+			if (deepest < 0 || depth[c] > depth[deepest])
+				deepest = c;
+		}
+		StartupPlan ret = new StartupPlan();
+		List<StartupEntry> entries = new ArrayList<StartupEntry>();
+		int[] levels = new int[n];
+		int[] suggestedLevels = new int[n];
+		for(int i=0; i<n; i++) {
+			StartupEntry entry = new StartupEntry();
+			entry.setBundle(bundles.get(i));
+			entry.setDepth(depth[component[i]]);
+			entry.setSuggestedLevel(suggested[component[i]]);
+			entry.setCyclic(components.get(component[i]).length > 1);
+			entries.add(entry);
+			levels[i] = bundles.get(i).getStartLevel();
+			suggestedLevels[i] = entry.getSuggestedLevel();
+		}
+		ret.setEntries(entries);
+		List<Bundle> criticalPath = new ArrayList<Bundle>();
+		for(int c=deepest; c>=0; c=previous[c])
+			criticalPath.add(0, bundles.get(components.get(c)[0]));
+		ret.setCriticalPath(criticalPath);
+		List<List<Bundle>> cycles = new ArrayList<List<Bundle>>();
+		for(int[] members: components)
+			if (members.length > 1) {
+				List<Bundle> cycle = new ArrayList<Bundle>();
+				for(int i: members)
+					cycle.add(bundles.get(i));
+				cycles.add(cycle);
+			}
+		ret.setCycles(cycles);
+		ret.setCurrentLevels(getLevelStats(levels, edges, components, component));
+		ret.setSuggestedLevels(getLevelStats(suggestedLevels, edges, components, component));
+		return ret;
+	}
+	
+	/**
+	 * Write a startup plan to an XML file
+	 * @param plan
+	 * @param xmlFile
+	 * @throws Exception
+	 */
+	public void writeReport(@Nonnull final StartupPlan plan, @Nonnull final String xmlFile) throws Exception {
+		Document document = XmlSupport.newDocument();
+		Element root = document.createElement("startupPlan");
+		root.setAttribute("bundles", "" + plan.getEntries().size());
+		root.setAttribute("criticalPath", "" + plan.getCriticalPath().size());
+		root.setAttribute("cycles", "" + plan.getCycles().size());
+		document.appendChild(root);
+		Element el = document.createElement("criticalPath");
+		for(Bundle bundle: plan.getCriticalPath())
+			el.appendChild(createBundle(document, bundle));
+		root.appendChild(el);
+		addLevels(root, "currentLevels", plan.getCurrentLevels());
+		addLevels(root, "suggestedLevels", plan.getSuggestedLevels());
+		for(List<Bundle> cycle: plan.getCycles()) {
+			el = document.createElement("cycle");
+			for(Bundle bundle: cycle)
+				el.appendChild(createBundle(document, bundle));
+			root.appendChild(el);
+		}
+		int serializing = 0;
+		for(StartupEntry entry: plan.getEntries()) {
+			el = createBundle(document, entry.getBundle());
+			el.setAttribute("depth", "" + entry.getDepth());
+			el.setAttribute("suggestedLevel", "" + entry.getSuggestedLevel());
+			if (entry.isSerializing()) {
+				el.setAttribute("serializing", "true");
+				serializing++;
+			}
+			if (entry.isInverted())
+				el.setAttribute("inverted", "true");
+			if (entry.isCyclic())
+				el.setAttribute("cyclic", "true");
+			root.appendChild(el);
+		}
+		root.setAttribute("serializing", "" + serializing);
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(xmlFile))) {
+			XmlSupport.write(document, os);
+		}
+	}
+	
+	private Element createBundle(final Document document, final Bundle bundle) {
+		Element ret = document.createElement("bundle");
+		ret.setAttribute("name", bundle.getName());
+		ret.setAttribute("pos", "" + bundle.getPos());
+		ret.setAttribute("level", "" + bundle.getStartLevel());
+		return ret;
+	}
+	
+	private void addLevels(final Element root, final String name, final List<StartLevelStats> levels) {
+		Element el = root.getOwnerDocument().createElement(name);
+		for(StartLevelStats stats: levels) {
+			Element elLevel = root.getOwnerDocument().createElement("level");
+			elLevel.setAttribute("value", "" + stats.getLevel());
+			elLevel.setAttribute("bundles", "" + stats.getBundles());
+			elLevel.setAttribute("chain", "" + stats.getChain());
+			elLevel.setAttribute("width", "" + stats.getWidth());
+			el.appendChild(elLevel);
+		}
+		root.appendChild(el);
+	}
+	
+	/**
+	 * Compute the chain and the width of each start level, for an assignment of the bundles to levels. Only the 
+	 * dependencies between bundles of the same level count, the lower levels being active already
+	 * @param levels the level of each bundle
+	 * @param edges
+	 * @param components the components, the bundles depended upon first
+	 * @param component the component of each bundle
+	 * @return
+	 */
+	private List<StartLevelStats> getLevelStats(final int[] levels, final int[][] edges, final List<int[]> components, final int[] component) {
+		int[] localDepth = new int[levels.length];
+		for(int[] members: components)
+			for(int i: members) {
+				int d = 0;
+				for(int j: edges[i])
+					if (component[j] != component[i] && levels[j] == levels[i])
+						d = Math.max(d, localDepth[j]);
+				localDepth[i] = d + 1;
+			}
+		Map<Integer, StartLevelStats> ret = new TreeMap<Integer, StartLevelStats>();
+		Map<Long, Integer> counts = new HashMap<Long, Integer>();
+		for(int i=0; i<levels.length; i++) {
+			StartLevelStats stats = ret.get(levels[i]);
+			if (stats == null) {
+				stats = new StartLevelStats();
+				stats.setLevel(levels[i]);
+				ret.put(levels[i], stats);
+			}
+			stats.setBundles(stats.getBundles() + 1);
+			stats.setChain(Math.max(stats.getChain(), localDepth[i]));
+			long key = ((long)levels[i] << 32) | localDepth[i];
+			Integer count = counts.get(key);
+			count = count == null ? 1 : count + 1;
+			counts.put(key, count);
+			stats.setWidth(Math.max(stats.getWidth(), count));
+		}
+		return new ArrayList<StartLevelStats>(ret.values());
+	}
+	
+	private void addAll(final List<BundleDependencies> l, final List<Bundle> bundles, final List<BundleDependencies> dependencies, final Map<String, Integer> ids) {
+		if (l != null)
+			for(BundleDependencies d: l)
+				if (d.getBundle().getName() != null && !ids.containsKey(d.getBundle().getName())) {
+					ids.put(d.getBundle().getName(), bundles.size());
+					bundles.add(d.getBundle());
+					dependencies.add(d);
+				}
+	}
+	
+	/**
+	 * Finds the strongly connected components of a graph. A component is emitted after all the components it has edges to
+	 */
+	private static class Tarjan {
+		private final int[][] edges;
+		private final int[] index, low;
+		private final boolean[] onStack;
+		private final int[] stack;
+		private int top, counter;
+		private final List<int[]> components = new ArrayList<int[]>();
+		
+		private Tarjan(final int[][] edges) {
+			this.edges = edges;
+			index = new int[edges.length];
+			low = new int[edges.length];
+			onStack = new boolean[edges.length];
+			stack = new int[edges.length];
+		}
+		
+		private List<int[]> run() {
+			for(int i=0; i<edges.length; i++)
+				if (index[i] == 0)
+					visit(i);
+			return components;
+		}
+		
+		private void visit(final int v) {
+			index[v] = low[v] = ++counter;
+			stack[top++] = v;
+			onStack[v] = true;
+			for(int w: edges[v]) {
+				if (index[w] == 0) {
+					visit(w);
+					low[v] = Math.min(low[v], low[w]);
+				}
+				else if (onStack[w])
+					low[v] = Math.min(low[v], index[w]);
+			}
+			if (low[v] == index[v]) {
+				int start = top;
+				do {
+					start--;
+					onStack[stack[start]] = false;
+				}
+				while(stack[start] != v);
+				int[] members = new int[top - start];
+				System.arraycopy(stack, start, members, 0, members.length);
+				top = start;
+				components.add(members);
+			}
+		}
+	}
+	
+	/**
+	 * Run the tool with the arguments of the command line
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void execute(final String[] args) throws Exception {
+		SlingModelInterpreter interpreter = new SlingModelInterpreter();
+		DependencyTree tree = interpreter.getDependencyTree(args[0]);
+		StartupPlanner planner = new StartupPlanner();
+		StartupPlan plan = planner.plan(tree);
+		logger.debug("The critical path has " + plan.getCriticalPath().size() + " bundles, found " + plan.getCycles().size() + " cycles");
+		planner.writeReport(plan, args[1]);
+	}
+
+	public static void main(final String[] args) {
+		try {
+			execute(args);
+		}
+		catch(Exception e) {
+			logger.error("The startup could not be planned", e);
+			System.exit(1);
+		}
+	}
+}
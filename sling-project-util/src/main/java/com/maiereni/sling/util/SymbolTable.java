@@ -0,0 +1,70 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Assigns consecutive integer ids to strings, so that the strings repeated across many records, such as package 
+ * names, are stored once and referred to by their id. The table is not thread safe
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class SymbolTable {
+	private Map<String, Integer> ids = new HashMap<String, Integer>();
+	private List<String> symbols = new ArrayList<String>();
+	
+	/**
+	 * Get the id of a string, adding it to the table if needed
+	 * @param s
+	 * @return
+	 */
+	public int intern(@Nonnull final String s) {
+		Integer ret = ids.get(s);
+		if (ret == null) {
+			ret = symbols.size();
+			symbols.add(s);
+			ids.put(s, ret);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Get the id of a string
+	 * @param s
+	 * @return the id, or -1 if the string is not in the table
+	 */
+	public int find(@Nonnull final String s) {
+		Integer ret = ids.get(s);
+		return ret == null ? -1 : ret;
+	}
+	
+	public String get(final int id) {
+		return symbols.get(id);
+	}
+	
+	public int size() {
+		return symbols.size();
+	}
+}
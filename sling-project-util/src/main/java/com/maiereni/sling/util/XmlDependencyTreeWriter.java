@@ -0,0 +1,155 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.BundleDependencies;
+import com.maiereni.sling.util.bean.DependencyTree;
+import com.maiereni.sling.util.bean.Dependent;
+import com.maiereni.sling.util.bean.PackageCollision;
+import com.maiereni.sling.util.bean.PackageExport;
+
+/**
+ * Writes the dependency tree as indented XML
+ * @author Petre Maierean
+ *
+ */
+public class XmlDependencyTreeWriter implements DependencyTreeWriter {
+
+	@Override
+	public void write(@Nonnull final DependencyTree tree, @Nonnull final OutputStream os) throws Exception {
+        Document document = XmlSupport.newDocument();
+        Element root = document.createElement("bundles");
+        document.appendChild(root);
+        Element el = document.createElement("featured");
+        root.appendChild(el);
+        addBundles(el, tree.getFeatured());
+        el = document.createElement("extra");
+        root.appendChild(el);
+        addBundles(el, tree.getExtra());
+
+        el = document.createElement("exports");
+        root.appendChild(el);
+        addExports(el, tree.getExports());
+        if (tree.getCollisions() != null) {
+        	el = document.createElement("collisions");
+        	root.appendChild(el);
+        	addCollisions(el, tree.getCollisions());
+        }
+        
+		XmlSupport.write(document, os);
+	}
+	
+	private void addExports(final Element el, final Map<String, Bundle> exportPackages) {
+		Document document = el.getOwnerDocument();
+		for(String key: exportPackages.keySet()) {
+			Element exp = document.createElement("export");
+			exp.setAttribute("key", key);
+			exp.setAttribute("name", exportPackages.get(key).getName());
+			exp.setAttribute("pos", ""+ exportPackages.get(key).getPos());
+			el.appendChild(exp);
+		}		
+	}
+	
+	private void addCollisions(final Element el, final List<PackageCollision> collisions) {
+		Document document = el.getOwnerDocument();
+		for(PackageCollision collision: collisions) {
+			Element elCollision = document.createElement("collision");
+			elCollision.setAttribute("package", collision.getPackageName());
+			elCollision.setAttribute("type", collision.getType());
+			for(PackageExport export: collision.getExporters()) {
+				Element exp = document.createElement("exporter");
+				exp.setAttribute("name", export.getBundle().getName());
+				exp.setAttribute("pos", "" + export.getBundle().getPos());
+				if (export.getVersion() != null)
+					exp.setAttribute("version", export.getVersion());
+				elCollision.appendChild(exp);
+			}
+			el.appendChild(elCollision);
+		}
+	}
+	
+	private void addBundles(final Element el, final List<BundleDependencies> bundles) {
+		Document document = el.getOwnerDocument();
+		for(BundleDependencies dependencies: bundles) {
+			Bundle bundle = dependencies.getBundle();
+        	Element sel = document.createElement("bundle");
+        	sel.setAttribute("name", bundle.getName());
+        	sel.setAttribute("position", "" + bundle.getPos());
+        	sel.setAttribute("category", bundle.getPkgName());
+        	sel.setAttribute("artifactId", bundle.getArtifactId());
+        	sel.setAttribute("groupId", bundle.getGroupId());
+        	sel.setAttribute("version", bundle.getVersion());
+        	sel.setAttribute("feature", bundle.getFeatureName());
+        	Element elDeps = document.createElement("dependents");
+        	for(Dependent dependent: dependencies.getDependents()) {
+				Element elDep = document.createElement("dependent");
+				elDep.setAttribute("name", dependent.getName());
+				elDep.setAttribute("pos", "" + dependent.getPos());
+				if (dependent.isTentative())
+					elDep.setTextContent("tentative");
+				elDeps.appendChild(elDep);
+        	}
+       		sel.appendChild(elDeps);
+       		if (!dependencies.getUnresolved().isEmpty()) {
+            	Element unresolved = document.createElement("uresolved");
+            	for(String importPackage: dependencies.getUnresolved()) {
+    				Element elDep = document.createElement("unresolvedItem");
+    				elDep.setTextContent(importPackage);
+    				unresolved.appendChild(elDep);
+            	}
+       			sel.appendChild(unresolved);
+       		}
+       		if (dependencies.getUnresolvedRequirements() != null && !dependencies.getUnresolvedRequirements().isEmpty()) {
+            	Element unresolved = document.createElement("unresolvedRequirements");
+            	for(String requirement: dependencies.getUnresolvedRequirements()) {
+    				Element elReq = document.createElement("requirement");
+    				elReq.setTextContent(requirement);
+    				unresolved.appendChild(elReq);
+            	}
+       			sel.appendChild(unresolved);
+       		}
+       		if (dependencies.getUsage() != null) {
+       			addPackages(sel, "unusedImports", dependencies.getUsage().getUnusedImports());
+       			addPackages(sel, "hiddenDependencies", dependencies.getUsage().getHiddenDependencies());
+       		}
+        	el.appendChild(sel);
+		}
+	}
+	
+	private void addPackages(final Element el, final String name, final List<String> packages) {
+		if (!packages.isEmpty()) {
+			Element elPackages = el.getOwnerDocument().createElement(name);
+			for(String s: packages) {
+				Element elPackage = el.getOwnerDocument().createElement("package");
+				elPackage.setTextContent(s);
+				elPackages.appendChild(elPackage);
+			}
+			el.appendChild(elPackages);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Document;
+
+/**
+ * The XML resources used by the readers and the writers. The DOM builders and the transformers are not thread safe, 
+ * so each thread gets its own instance which is reused for all the documents processed by that thread. The StAX 
+ * input factory is created once and shared, as it is safe to create stream readers concurrently once configured
+ * 
+ * @author Petre Maierean
+ *
+ */
+final class XmlSupport {
+	private static final XMLInputFactory INPUT_FACTORY;
+	private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = new ThreadLocal<DocumentBuilder>() {
+		@Override
+		protected DocumentBuilder initialValue() {
+			try {
+				return DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			}
+			catch(Exception e) {
+				throw new IllegalStateException("Cannot create a document builder", e);
+			}
+		}
+	};
+	private static final ThreadLocal<Transformer> TRANSFORMER = new ThreadLocal<Transformer>() {
+		@Override
+		protected Transformer initialValue() {
+			try {
+				return TransformerFactory.newInstance().newTransformer();
+			}
+			catch(Exception e) {
+				throw new IllegalStateException("Cannot create a transformer", e);
+			}
+		}
+	};
+	
+	private XmlSupport() {
+	}
+	
+	/**
+	 * Create an empty document with the builder of the current thread
+	 * @return
+	 */
+	static Document newDocument() {
+		return DOCUMENT_BUILDER.get().newDocument();
+	}
+	
+	/**
+	 * Write an indented document to a stream with the transformer of the current thread
+	 * @param document
+	 * @param os
+	 * @throws Exception
+	 */
+	static void write(@Nonnull final Document document, @Nonnull final OutputStream os) throws Exception {
+		Transformer transformer = TRANSFORMER.get();
+		transformer.reset();
+		transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+		transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+		transformer.transform(new DOMSource(document), new StreamResult(os));
+	}
+	
+	/**
+	 * Create a pull parser for a stream. External entities and DTDs are not processed
+	 * @param is
+	 * @return
+	 * @throws Exception
+	 */
+	static XMLStreamReader createStreamReader(@Nonnull final InputStream is) throws Exception {
+		return INPUT_FACTORY.createXMLStreamReader(is);
+	}
+	
+	static {
+		INPUT_FACTORY = XMLInputFactory.newInstance();
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+}
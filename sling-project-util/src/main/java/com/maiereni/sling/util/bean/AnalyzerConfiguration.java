@@ -0,0 +1,85 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.File;
+import java.io.Serializable;
+
+/**
+ * The configuration of an embedded analyzer. The settings which are not given default to the JVM properties 
+ * used by the command line tools
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class AnalyzerConfiguration implements Serializable {
+	private static final long serialVersionUID = 5527190419835606043L;
+	private File mavenRepository, gitDir, bundlesFile;
+	private String remoteUrl;
+	private int threads;
+	/**
+	 * Get the local Maven repository. Defaults to ${user.home}/.m2/repository
+	 * @return
+	 */
+	public File getMavenRepository() {
+		return mavenRepository;
+	}
+	public void setMavenRepository(File mavenRepository) {
+		this.mavenRepository = mavenRepository;
+	}
+	/**
+	 * Get the directory of the cloned projects. Defaults to the JVM property user.git.home or ${user.home}/git
+	 * @return
+	 */
+	public File getGitDir() {
+		return gitDir;
+	}
+	public void setGitDir(File gitDir) {
+		this.gitDir = gitDir;
+	}
+	/**
+	 * Get the default list of installed bundles. Defaults to the JVM property bundles or ./bundles.csv
+	 * @return
+	 */
+	public File getBundlesFile() {
+		return bundlesFile;
+	}
+	public void setBundlesFile(File bundlesFile) {
+		this.bundlesFile = bundlesFile;
+	}
+	/**
+	 * Get the URL of the remote organization to clone from. Defaults to the JVM properties git.mirror.dir or github.url
+	 * @return
+	 */
+	public String getRemoteUrl() {
+		return remoteUrl;
+	}
+	public void setRemoteUrl(String remoteUrl) {
+		this.remoteUrl = remoteUrl;
+	}
+	/**
+	 * Get the number of threads running the requests. Defaults to the number of processors
+	 * @return
+	 */
+	public int getThreads() {
+		return threads;
+	}
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+}
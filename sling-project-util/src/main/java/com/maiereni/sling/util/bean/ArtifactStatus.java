@@ -0,0 +1,78 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+
+/**
+ * The outcome of the verification of the jar of a bundle against the checksum file published next to it 
+ * in the Maven repository
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class ArtifactStatus implements Serializable {
+	private static final long serialVersionUID = 5527108913760480172L;
+	public static final String VERIFIED = "verified";
+	public static final String MISMATCH = "mismatch";
+	public static final String NO_CHECKSUM = "noChecksum";
+	public static final String MISSING = "missing";
+	private Bundle bundle;
+	private String status, algorithm, expected, actual;
+	private boolean cached;
+	public Bundle getBundle() {
+		return bundle;
+	}
+	public void setBundle(Bundle bundle) {
+		this.bundle = bundle;
+	}
+	public String getStatus() {
+		return status;
+	}
+	public void setStatus(String status) {
+		this.status = status;
+	}
+	public String getAlgorithm() {
+		return algorithm;
+	}
+	public void setAlgorithm(String algorithm) {
+		this.algorithm = algorithm;
+	}
+	public String getExpected() {
+		return expected;
+	}
+	public void setExpected(String expected) {
+		this.expected = expected;
+	}
+	public String getActual() {
+		return actual;
+	}
+	public void setActual(String actual) {
+		this.actual = actual;
+	}
+	/**
+	 * Check if the outcome has been taken from the cache of a previous run, without hashing the jar
+	 * @return
+	 */
+	public boolean isCached() {
+		return cached;
+	}
+	public void setCached(boolean cached) {
+		this.cached = cached;
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+
+/**
+ * The outcome of the assembly of a launchpad install directory
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class AssemblyResult implements Serializable {
+	private static final long serialVersionUID = -6251093847710234467L;
+	private int linked, copied, unchanged, removed, failed;
+	private long time;
+	public int getLinked() {
+		return linked;
+	}
+	public void setLinked(int linked) {
+		this.linked = linked;
+	}
+	public int getCopied() {
+		return copied;
+	}
+	public void setCopied(int copied) {
+		this.copied = copied;
+	}
+	public int getUnchanged() {
+		return unchanged;
+	}
+	public void setUnchanged(int unchanged) {
+		this.unchanged = unchanged;
+	}
+	public int getRemoved() {
+		return removed;
+	}
+	public void setRemoved(int removed) {
+		this.removed = removed;
+	}
+	public int getFailed() {
+		return failed;
+	}
+	public void setFailed(int failed) {
+		this.failed = failed;
+	}
+	public long getTime() {
+		return time;
+	}
+	public void setTime(long time) {
+		this.time = time;
+	}
+	@Override
+	public String toString() {
+		return linked + " linked, " + copied + " copied, " + unchanged + " unchanged, " + removed + " removed, " + failed + " failed in " + time + " ms";
+	}
+}
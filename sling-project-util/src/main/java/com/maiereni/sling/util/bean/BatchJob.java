@@ -0,0 +1,52 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+
+/**
+ * A job of the batch interpreter
+ * @author Petre Maierean
+ *
+ */
+public class BatchJob implements Serializable {
+	private static final long serialVersionUID = 3379128421553087601L;
+	private String modelDir, bundlesFile, output;
+	public String getModelDir() {
+		return modelDir;
+	}
+	public void setModelDir(String modelDir) {
+		this.modelDir = modelDir;
+	}
+	public String getBundlesFile() {
+		return bundlesFile;
+	}
+	public void setBundlesFile(String bundlesFile) {
+		this.bundlesFile = bundlesFile;
+	}
+	public String getOutput() {
+		return output;
+	}
+	public void setOutput(String output) {
+		this.output = output;
+	}
+	@Override
+	public String toString() {
+		return modelDir + "," + bundlesFile + "," + output;
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+
+/**
+ * The outcome of the build of a repository. The wave is the position of the repository in the build order: 
+ * the repositories of a wave only depend on the ones of the previous waves
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class BuildResult implements Serializable {
+	private static final long serialVersionUID = 7729264880431766203L;
+	public static final String SUCCESS = "success";
+	public static final String FAILED = "failed";
+	public static final String SKIPPED = "skipped";
+	public static final String PLANNED = "planned";
+	private String repository, status, message, log;
+	private int wave, exitCode;
+	private long time;
+	public String getRepository() {
+		return repository;
+	}
+	public void setRepository(String repository) {
+		this.repository = repository;
+	}
+	public String getStatus() {
+		return status;
+	}
+	public void setStatus(String status) {
+		this.status = status;
+	}
+	public String getMessage() {
+		return message;
+	}
+	public void setMessage(String message) {
+		this.message = message;
+	}
+	/**
+	 * Get the file the output of the build has been written to
+	 * @return
+	 */
+	public String getLog() {
+		return log;
+	}
+	public void setLog(String log) {
+		this.log = log;
+	}
+	public int getWave() {
+		return wave;
+	}
+	public void setWave(int wave) {
+		this.wave = wave;
+	}
+	public int getExitCode() {
+		return exitCode;
+	}
+	public void setExitCode(int exitCode) {
+		this.exitCode = exitCode;
+	}
+	/**
+	 * Get the duration of the build in milliseconds
+	 * @return
+	 */
+	public long getTime() {
+		return time;
+	}
+	public void setTime(long time) {
+		this.time = time;
+	}
+}
@@ -17,35 +17,47 @@
  */
 package com.maiereni.sling.util.bean;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
+ * The description of a bundle. The strings shared by many bundles are taken from the StringPool, and the 
+ * clauses of the Export-Package, Import-Package, Provide-Capability and Require-Capability headers are kept 
+ * in arrays exposed as read only lists. 
+ * Copying the clauses from a bundle to another shares the arrays. The bundle is serialized field by field,
+ * the pooled strings being written once per stream
+ * 
  * @author Petre Maierean
  *
  */
-public class Bundle implements Serializable {
-	private static final long serialVersionUID = 8120032242326800440L;
+public class Bundle implements Externalizable {
+	private static final long serialVersionUID = 8120032242326800441L;
+	private static final int FORMAT_VERSION = 3;
 	private String text, name, version, pkgName, location, featureName, artifactId, groupId;
-	private List<String> exportPackages, importPackages;
-	private int pos;
+	private String[] exportPackages, importPackages, provideCapabilities, requireCapabilities;
+	private int pos, startLevel;
 	public String getText() {
 		return text;
 	}
 	public void setText(String text) {
-		this.text = text;
+		this.text = StringPool.intern(text);
 	}
 	public String getName() {
 		return name;
 	}
 	public void setName(String name) {
-		this.name = name;
+		this.name = StringPool.intern(name);
 	}
 	public String getVersion() {
 		return version;
 	}
 	public void setVersion(String version) {
-		this.version = version;
+		this.version = StringPool.intern(version);
 	}
 	public int getPos() {
 		return pos;
@@ -53,11 +65,21 @@ public class Bundle implements Serializable {
 	public void setPos(int pos) {
 		this.pos = pos;
 	}
+	/**
+	 * Get the start level of the artifact group the bundle belongs to in the model, 0 standing for the default start level
+	 * @return
+	 */
+	public int getStartLevel() {
+		return startLevel;
+	}
+	public void setStartLevel(int startLevel) {
+		this.startLevel = startLevel;
+	}
 	public String getPkgName() {
 		return pkgName;
 	}
 	public void setPkgName(String pkgName) {
-		this.pkgName = pkgName;
+		this.pkgName = StringPool.intern(pkgName);
 	}
 	public String getLocation() {
 		return location;
@@ -69,30 +91,133 @@ public class Bundle implements Serializable {
 		return featureName;
 	}
 	public void setFeatureName(String featureName) {
-		this.featureName = featureName;
+		this.featureName = StringPool.intern(featureName);
 	}
 	public String getArtifactId() {
 		return artifactId;
 	}
 	public void setArtifactId(String artifactId) {
-		this.artifactId = artifactId;
+		this.artifactId = StringPool.intern(artifactId);
 	}
 	public String getGroupId() {
 		return groupId;
 	}
 	public void setGroupId(String groupId) {
-		this.groupId = groupId;
+		this.groupId = StringPool.intern(groupId);
 	}
 	public List<String> getExportPackages() {
-		return exportPackages;
+		return exportPackages == null ? null : new Clauses(exportPackages);
 	}
 	public void setExportPackages(List<String> exportPackages) {
-		this.exportPackages = exportPackages;
+		this.exportPackages = pack(exportPackages);
 	}
 	public List<String> getImportPackages() {
-		return importPackages;
+		return importPackages == null ? null : new Clauses(importPackages);
 	}
 	public void setImportPackages(List<String> importPackages) {
-		this.importPackages = importPackages;
-	}	
+		this.importPackages = pack(importPackages);
+	}
+	public List<String> getProvideCapabilities() {
+		return provideCapabilities == null ? null : new Clauses(provideCapabilities);
+	}
+	public void setProvideCapabilities(List<String> provideCapabilities) {
+		this.provideCapabilities = pack(provideCapabilities);
+	}
+	public List<String> getRequireCapabilities() {
+		return requireCapabilities == null ? null : new Clauses(requireCapabilities);
+	}
+	public void setRequireCapabilities(List<String> requireCapabilities) {
+		this.requireCapabilities = pack(requireCapabilities);
+	}
+	
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeByte(FORMAT_VERSION);
+		out.writeObject(text);
+		out.writeObject(name);
+		out.writeObject(version);
+		out.writeObject(pkgName);
+		out.writeObject(location);
+		out.writeObject(featureName);
+		out.writeObject(artifactId);
+		out.writeObject(groupId);
+		out.writeInt(pos);
+		writeClauses(out, exportPackages);
+		writeClauses(out, importPackages);
+		writeClauses(out, provideCapabilities);
+		writeClauses(out, requireCapabilities);
+		out.writeInt(startLevel);
+	}
+	
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		int formatVersion = in.readByte();
+		if (formatVersion < 1 || formatVersion > FORMAT_VERSION)
+			throw new IOException("Unsupported bundle format " + formatVersion);
+		setText((String)in.readObject());
+		setName((String)in.readObject());
+		setVersion((String)in.readObject());
+		setPkgName((String)in.readObject());
+		setLocation((String)in.readObject());
+		setFeatureName((String)in.readObject());
+		setArtifactId((String)in.readObject());
+		setGroupId((String)in.readObject());
+		pos = in.readInt();
+		exportPackages = readClauses(in);
+		importPackages = readClauses(in);
+		if (formatVersion > 1) {
+			provideCapabilities = readClauses(in);
+			requireCapabilities = readClauses(in);
+		}
+		if (formatVersion > 2)
+			startLevel = in.readInt();
+	}
+	
+	private static void writeClauses(final ObjectOutput out, final String[] clauses) throws IOException {
+		out.writeInt(clauses == null ? -1 : clauses.length);
+		if (clauses != null)
+			for(String s: clauses)
+				out.writeObject(s);
+	}
+	
+	private static String[] readClauses(final ObjectInput in) throws IOException, ClassNotFoundException {
+		String[] ret = null;
+		int length = in.readInt();
+		if (length >= 0) {
+			ret = new String[length];
+			for(int i=0; i<length; i++)
+				ret[i] = StringPool.intern((String)in.readObject());
+		}
+		return ret;
+	}
+	
+	private static String[] pack(final List<String> l) {
+		String[] ret = null;
+		if (l instanceof Clauses)
+			ret = ((Clauses)l).clauses;
+		else if (l != null) {
+			ret = new String[l.size()];
+			for(int i=0; i<ret.length; i++)
+				ret[i] = StringPool.intern(l.get(i));
+		}
+		return ret;
+	}
+	
+	/**
+	 * A read only view of an array of clauses
+	 */
+	private static final class Clauses extends AbstractList<String> implements RandomAccess {
+		private final String[] clauses;
+		private Clauses(final String[] clauses) {
+			this.clauses = clauses;
+		}
+		@Override
+		public String get(int index) {
+			return clauses[index];
+		}
+		@Override
+		public int size() {
+			return clauses.length;
+		}
+	}
 }
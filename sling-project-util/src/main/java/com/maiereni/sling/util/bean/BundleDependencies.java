@@ -0,0 +1,69 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The resolved dependencies of a bundle
+ * @author Petre Maierean
+ *
+ */
+public class BundleDependencies implements Serializable {
+	private static final long serialVersionUID = 6318402470127359904L;
+	private Bundle bundle;
+	private List<Dependent> dependents;
+	private List<String> unresolved;
+	private List<String> unresolvedRequirements;
+	private PackageUsage usage;
+	public Bundle getBundle() {
+		return bundle;
+	}
+	public void setBundle(Bundle bundle) {
+		this.bundle = bundle;
+	}
+	public List<Dependent> getDependents() {
+		return dependents;
+	}
+	public void setDependents(List<Dependent> dependents) {
+		this.dependents = dependents;
+	}
+	public List<String> getUnresolved() {
+		return unresolved;
+	}
+	public void setUnresolved(List<String> unresolved) {
+		this.unresolved = unresolved;
+	}
+	/**
+	 * Get the clauses of the Require-Capability header which no bundle provides
+	 * @return
+	 */
+	public List<String> getUnresolvedRequirements() {
+		return unresolvedRequirements;
+	}
+	public void setUnresolvedRequirements(List<String> unresolvedRequirements) {
+		this.unresolvedRequirements = unresolvedRequirements;
+	}
+	public PackageUsage getUsage() {
+		return usage;
+	}
+	public void setUsage(PackageUsage usage) {
+		this.usage = usage;
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+
+/**
+ * The footprint of a bundle of a feature, for the run modes of the artifact group it is declared in
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class BundleFootprint implements Serializable {
+	private static final long serialVersionUID = 4470382975190468211L;
+	private Bundle bundle;
+	private String runModes;
+	private Footprint footprint;
+	public Bundle getBundle() {
+		return bundle;
+	}
+	public void setBundle(Bundle bundle) {
+		this.bundle = bundle;
+	}
+	/**
+	 * Get the sorted run modes separated by commas, or an empty string for the global run mode
+	 * @return
+	 */
+	public String getRunModes() {
+		return runModes;
+	}
+	public void setRunModes(String runModes) {
+		this.runModes = runModes;
+	}
+	public Footprint getFootprint() {
+		return footprint;
+	}
+	public void setFootprint(Footprint footprint) {
+		this.footprint = footprint;
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The outcome of the resolution of a bundle: the wires of its imports if resolved, otherwise the reason of the 
+ * failure. A bundle fails because of a uses constraint violation, because of requirements without provider (missing)
+ * or because a bundle it depends on cannot be resolved (dependency)
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class BundleResolution implements Serializable {
+	private static final long serialVersionUID = 2875514471027640916L;
+	public static final String USES = "uses";
+	public static final String MISSING = "missing";
+	public static final String DEPENDENCY = "dependency";
+	private Bundle bundle;
+	private boolean resolved;
+	private List<PackageWire> wires;
+	private String failureType, failure;
+	private List<String> missing;
+	public Bundle getBundle() {
+		return bundle;
+	}
+	public void setBundle(Bundle bundle) {
+		this.bundle = bundle;
+	}
+	public boolean isResolved() {
+		return resolved;
+	}
+	public void setResolved(boolean resolved) {
+		this.resolved = resolved;
+	}
+	public List<PackageWire> getWires() {
+		return wires;
+	}
+	public void setWires(List<PackageWire> wires) {
+		this.wires = wires;
+	}
+	public String getFailureType() {
+		return failureType;
+	}
+	public void setFailureType(String failureType) {
+		this.failureType = failureType;
+	}
+	public String getFailure() {
+		return failure;
+	}
+	public void setFailure(String failure) {
+		this.failure = failure;
+	}
+	public List<String> getMissing() {
+		return missing;
+	}
+	public void setMissing(List<String> missing) {
+		this.missing = missing;
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A reference of a Declarative Services component to a service. The reference is mandatory when its cardinality
+ * is 1..1 or 1..n. The providers are the bundles which register the service through a satisfied component or
+ * declare it in their Provide-Capability header
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class ComponentReference implements Serializable {
+	private static final long serialVersionUID = 3367045819920372415L;
+	private String name, interfaceName, cardinality, policy, target;
+	private boolean satisfied;
+	private List<Bundle> providers;
+	public String getName() {
+		return name;
+	}
+	public void setName(String name) {
+		this.name = name;
+	}
+	public String getInterfaceName() {
+		return interfaceName;
+	}
+	public void setInterfaceName(String interfaceName) {
+		this.interfaceName = interfaceName;
+	}
+	public String getCardinality() {
+		return cardinality;
+	}
+	public void setCardinality(String cardinality) {
+		this.cardinality = cardinality;
+	}
+	public String getPolicy() {
+		return policy;
+	}
+	public void setPolicy(String policy) {
+		this.policy = policy;
+	}
+	public String getTarget() {
+		return target;
+	}
+	public void setTarget(String target) {
+		this.target = target;
+	}
+	public boolean isMandatory() {
+		return cardinality == null || cardinality.startsWith("1");
+	}
+	public boolean isSatisfied() {
+		return satisfied;
+	}
+	public void setSatisfied(boolean satisfied) {
+		this.satisfied = satisfied;
+	}
+	public List<Bundle> getProviders() {
+		return providers;
+	}
+	public void setProviders(List<Bundle> providers) {
+		this.providers = providers;
+	}
+}
@@ -0,0 +1,68 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * A declaration of an OSGi configuration in a feature and run mode of a model
+ * @author Petre Maierean
+ *
+ */
+public class ConfigurationEntry implements Serializable {
+	private static final long serialVersionUID = -4270355810247914183L;
+	private String pid, factoryPid, feature, runModes, location;
+	private Map<String, String> properties;
+	public String getPid() {
+		return pid;
+	}
+	public void setPid(String pid) {
+		this.pid = pid;
+	}
+	public String getFactoryPid() {
+		return factoryPid;
+	}
+	public void setFactoryPid(String factoryPid) {
+		this.factoryPid = factoryPid;
+	}
+	public String getFeature() {
+		return feature;
+	}
+	public void setFeature(String feature) {
+		this.feature = feature;
+	}
+	public String getRunModes() {
+		return runModes;
+	}
+	public void setRunModes(String runModes) {
+		this.runModes = runModes;
+	}
+	public String getLocation() {
+		return location;
+	}
+	public void setLocation(String location) {
+		this.location = location;
+	}
+	public Map<String, String> getProperties() {
+		return properties;
+	}
+	public void setProperties(Map<String, String> properties) {
+		this.properties = properties;
+	}
+}
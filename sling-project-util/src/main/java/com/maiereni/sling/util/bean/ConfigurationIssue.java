@@ -0,0 +1,67 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * An override or a conflict between declarations of the same configuration. An override is reported when a
+ * configuration is declared by several features for the same run modes. A conflict is reported for each property 
+ * whose value differs between the declarations that apply to a run mode
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class ConfigurationIssue implements Serializable {
+	private static final long serialVersionUID = 2907731460968420135L;
+	public static final String OVERRIDE = "override";
+	public static final String CONFLICT = "conflict";
+	private String type, pid, runModes, key;
+	private List<ConfigurationEntry> entries;
+	public String getType() {
+		return type;
+	}
+	public void setType(String type) {
+		this.type = type;
+	}
+	public String getPid() {
+		return pid;
+	}
+	public void setPid(String pid) {
+		this.pid = pid;
+	}
+	public String getRunModes() {
+		return runModes;
+	}
+	public void setRunModes(String runModes) {
+		this.runModes = runModes;
+	}
+	public String getKey() {
+		return key;
+	}
+	public void setKey(String key) {
+		this.key = key;
+	}
+	public List<ConfigurationEntry> getEntries() {
+		return entries;
+	}
+	public void setEntries(List<ConfigurationEntry> entries) {
+		this.entries = entries;
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The dependency tree of the bundles of a model
+ * @author Petre Maierean
+ *
+ */
+public class DependencyTree implements Serializable {
+	private static final long serialVersionUID = -2409181834530731274L;
+	private List<BundleDependencies> featured, extra;
+	private Map<String, Bundle> exports;
+	private List<PackageCollision> collisions;
+	public List<BundleDependencies> getFeatured() {
+		return featured;
+	}
+	public void setFeatured(List<BundleDependencies> featured) {
+		this.featured = featured;
+	}
+	public List<BundleDependencies> getExtra() {
+		return extra;
+	}
+	public void setExtra(List<BundleDependencies> extra) {
+		this.extra = extra;
+	}
+	public Map<String, Bundle> getExports() {
+		return exports;
+	}
+	public void setExports(Map<String, Bundle> exports) {
+		this.exports = exports;
+	}
+	public List<PackageCollision> getCollisions() {
+		return collisions;
+	}
+	public void setCollisions(List<PackageCollision> collisions) {
+		this.collisions = collisions;
+	}
+	
+	/**
+	 * Get the featured bundles followed by the extra installed bundles
+	 * @return
+	 */
+	public List<Bundle> getBundles() {
+		List<Bundle> ret = new ArrayList<Bundle>();
+		addBundles(featured, ret);
+		addBundles(extra, ret);
+		return ret;
+	}
+	
+	private void addBundles(final List<BundleDependencies> l, final List<Bundle> bundles) {
+		if (l != null)
+			for(BundleDependencies dependencies: l)
+				bundles.add(dependencies.getBundle());
+	}
+}
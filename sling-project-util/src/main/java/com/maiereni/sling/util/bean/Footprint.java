@@ -0,0 +1,91 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+
+/**
+ * The footprint of a jar, or of the jars of a feature or a run mode, as given by the central directory of the jars 
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class Footprint implements Serializable {
+	private static final long serialVersionUID = -1178046650903924725L;
+	private int bundles, entries, classes, embeddedJars;
+	private long size, compressedSize, uncompressedSize;
+	public int getBundles() {
+		return bundles;
+	}
+	public void setBundles(int bundles) {
+		this.bundles = bundles;
+	}
+	public int getEntries() {
+		return entries;
+	}
+	public void setEntries(int entries) {
+		this.entries = entries;
+	}
+	public int getClasses() {
+		return classes;
+	}
+	public void setClasses(int classes) {
+		this.classes = classes;
+	}
+	public int getEmbeddedJars() {
+		return embeddedJars;
+	}
+	public void setEmbeddedJars(int embeddedJars) {
+		this.embeddedJars = embeddedJars;
+	}
+	/**
+	 * Get the size of the jar files
+	 * @return
+	 */
+	public long getSize() {
+		return size;
+	}
+	public void setSize(long size) {
+		this.size = size;
+	}
+	public long getCompressedSize() {
+		return compressedSize;
+	}
+	public void setCompressedSize(long compressedSize) {
+		this.compressedSize = compressedSize;
+	}
+	public long getUncompressedSize() {
+		return uncompressedSize;
+	}
+	public void setUncompressedSize(long uncompressedSize) {
+		this.uncompressedSize = uncompressedSize;
+	}
+	/**
+	 * Add the footprint of a jar, or of a group of jars, to this one
+	 * @param footprint
+	 */
+	public void add(final Footprint footprint) {
+		bundles += footprint.bundles;
+		entries += footprint.entries;
+		classes += footprint.classes;
+		embeddedJars += footprint.embeddedJars;
+		size += footprint.size;
+		compressedSize += footprint.compressedSize;
+		uncompressedSize += footprint.uncompressedSize;
+	}
+}
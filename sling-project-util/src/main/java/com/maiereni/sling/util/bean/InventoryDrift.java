@@ -0,0 +1,64 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * A bundle which is not installed with the same version on all the nodes compared. The expected version is the 
+ * version installed on most nodes. The deviations give the version installed on each other node, null when the 
+ * bundle is missing
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class InventoryDrift implements Serializable {
+	private static final long serialVersionUID = -7430871145129986342L;
+	private String name, expectedVersion;
+	private int expectedCount;
+	private Map<String, String> deviations;
+	public String getName() {
+		return name;
+	}
+	public void setName(String name) {
+		this.name = name;
+	}
+	public String getExpectedVersion() {
+		return expectedVersion;
+	}
+	public void setExpectedVersion(String expectedVersion) {
+		this.expectedVersion = expectedVersion;
+	}
+	/**
+	 * Get the number of nodes where the expected version is installed
+	 * @return
+	 */
+	public int getExpectedCount() {
+		return expectedCount;
+	}
+	public void setExpectedCount(int expectedCount) {
+		this.expectedCount = expectedCount;
+	}
+	public Map<String, String> getDeviations() {
+		return deviations;
+	}
+	public void setDeviations(Map<String, String> deviations) {
+		this.deviations = deviations;
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A package exported more than once. The package is split when it is exported by different bundles, 
+ * and it has duplicate exporters when several copies of the same bundle export it, as when two versions
+ * of the bundle are installed
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class PackageCollision implements Serializable {
+	private static final long serialVersionUID = 4466001392520737436L;
+	public static final String SPLIT = "split";
+	public static final String DUPLICATE = "duplicate";
+	private String packageName, type;
+	private List<PackageExport> exporters;
+	public String getPackageName() {
+		return packageName;
+	}
+	public void setPackageName(String packageName) {
+		this.packageName = packageName;
+	}
+	public String getType() {
+		return type;
+	}
+	public void setType(String type) {
+		this.type = type;
+	}
+	public List<PackageExport> getExporters() {
+		return exporters;
+	}
+	public void setExporters(List<PackageExport> exporters) {
+		this.exporters = exporters;
+	}
+}
@@ -0,0 +1,64 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The packages referenced by the classes of a bundle compared with the packages it imports
+ * @author Petre Maierean
+ *
+ */
+public class PackageUsage implements Serializable {
+	private static final long serialVersionUID = 5090623343216312745L;
+	private int classCount;
+	private Set<String> containedPackages, usedPackages;
+	private List<String> unusedImports, hiddenDependencies;
+	public int getClassCount() {
+		return classCount;
+	}
+	public void setClassCount(int classCount) {
+		this.classCount = classCount;
+	}
+	public Set<String> getContainedPackages() {
+		return containedPackages;
+	}
+	public void setContainedPackages(Set<String> containedPackages) {
+		this.containedPackages = containedPackages;
+	}
+	public Set<String> getUsedPackages() {
+		return usedPackages;
+	}
+	public void setUsedPackages(Set<String> usedPackages) {
+		this.usedPackages = usedPackages;
+	}
+	public List<String> getUnusedImports() {
+		return unusedImports;
+	}
+	public void setUnusedImports(List<String> unusedImports) {
+		this.unusedImports = unusedImports;
+	}
+	public List<String> getHiddenDependencies() {
+		return hiddenDependencies;
+	}
+	public void setHiddenDependencies(List<String> hiddenDependencies) {
+		this.hiddenDependencies = hiddenDependencies;
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The outcome of the resolution of the bundles of a launchpad, with the time spent by the resolver
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class ResolutionResult implements Serializable {
+	private static final long serialVersionUID = -3318215802318868237L;
+	private List<BundleResolution> bundles;
+	private long resolutionTime;
+	private int resolved;
+	public List<BundleResolution> getBundles() {
+		return bundles;
+	}
+	public void setBundles(List<BundleResolution> bundles) {
+		this.bundles = bundles;
+	}
+	/**
+	 * Get the time spent by the resolver, in milliseconds
+	 * @return
+	 */
+	public long getResolutionTime() {
+		return resolutionTime;
+	}
+	public void setResolutionTime(long resolutionTime) {
+		this.resolutionTime = resolutionTime;
+	}
+	public int getResolved() {
+		return resolved;
+	}
+	public void setResolved(int resolved) {
+		this.resolved = resolved;
+	}
+}
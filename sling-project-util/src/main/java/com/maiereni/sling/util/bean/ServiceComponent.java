@@ -0,0 +1,85 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A Declarative Services component, as described by a descriptor of the Service-Component header of a bundle.
+ * A component is satisfied when it is enabled and each of its mandatory references has a satisfied provider
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class ServiceComponent implements Serializable {
+	private static final long serialVersionUID = -2093174529184603551L;
+	private Bundle bundle;
+	private String name, implementation, descriptor;
+	private boolean enabled, satisfied;
+	private List<String> services;
+	private List<ComponentReference> references;
+	public Bundle getBundle() {
+		return bundle;
+	}
+	public void setBundle(Bundle bundle) {
+		this.bundle = bundle;
+	}
+	public String getName() {
+		return name;
+	}
+	public void setName(String name) {
+		this.name = name;
+	}
+	public String getImplementation() {
+		return implementation;
+	}
+	public void setImplementation(String implementation) {
+		this.implementation = implementation;
+	}
+	public String getDescriptor() {
+		return descriptor;
+	}
+	public void setDescriptor(String descriptor) {
+		this.descriptor = descriptor;
+	}
+	public boolean isEnabled() {
+		return enabled;
+	}
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+	public boolean isSatisfied() {
+		return satisfied;
+	}
+	public void setSatisfied(boolean satisfied) {
+		this.satisfied = satisfied;
+	}
+	public List<String> getServices() {
+		return services;
+	}
+	public void setServices(List<String> services) {
+		this.services = services;
+	}
+	public List<ComponentReference> getReferences() {
+		return references;
+	}
+	public void setReferences(List<ComponentReference> references) {
+		this.references = references;
+	}
+}
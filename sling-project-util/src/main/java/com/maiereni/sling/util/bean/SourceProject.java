@@ -0,0 +1,83 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A Maven project found in a cloned repository. The dependencies are given as groupId:artifactId
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class SourceProject implements Serializable {
+	private static final long serialVersionUID = 1853410632913845226L;
+	private String groupId, artifactId, version, packaging, repository, path;
+	private List<String> dependencies;
+	public String getGroupId() {
+		return groupId;
+	}
+	public void setGroupId(String groupId) {
+		this.groupId = groupId;
+	}
+	public String getArtifactId() {
+		return artifactId;
+	}
+	public void setArtifactId(String artifactId) {
+		this.artifactId = artifactId;
+	}
+	public String getVersion() {
+		return version;
+	}
+	public void setVersion(String version) {
+		this.version = version;
+	}
+	public String getPackaging() {
+		return packaging;
+	}
+	public void setPackaging(String packaging) {
+		this.packaging = packaging;
+	}
+	/**
+	 * Get the directory of the cloned repository
+	 * @return
+	 */
+	public String getRepository() {
+		return repository;
+	}
+	public void setRepository(String repository) {
+		this.repository = repository;
+	}
+	/**
+	 * Get the directory of the project, which is the repository itself or one of its modules
+	 * @return
+	 */
+	public String getPath() {
+		return path;
+	}
+	public void setPath(String path) {
+		this.path = path;
+	}
+	public List<String> getDependencies() {
+		return dependencies;
+	}
+	public void setDependencies(List<String> dependencies) {
+		this.dependencies = dependencies;
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+
+/**
+ * A bundle of a launchpad compared with the project it is built from. The bundle is behind when the version of 
+ * the source is greater, as when the source is at 2.1.1-SNAPSHOT and the bundle at 2.1.0
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class SourceStatus implements Serializable {
+	private static final long serialVersionUID = -4718939517226306364L;
+	public static final String BEHIND = "behind";
+	public static final String CURRENT = "current";
+	public static final String AHEAD = "ahead";
+	private Bundle bundle;
+	private SourceProject project;
+	private String status;
+	public Bundle getBundle() {
+		return bundle;
+	}
+	public void setBundle(Bundle bundle) {
+		this.bundle = bundle;
+	}
+	public SourceProject getProject() {
+		return project;
+	}
+	public void setProject(SourceProject project) {
+		this.project = project;
+	}
+	public String getStatus() {
+		return status;
+	}
+	public void setStatus(String status) {
+		this.status = status;
+	}
+}
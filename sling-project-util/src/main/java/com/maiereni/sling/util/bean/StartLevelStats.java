@@ -0,0 +1,57 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+
+/**
+ * The bundles of a start level. The chain is the length of the longest chain of dependencies between the bundles
+ * of the level, which have to be activated one after the other. The width is the largest number of bundles of the 
+ * level at the same depth of that chain, which can be activated concurrently
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class StartLevelStats implements Serializable {
+	private static final long serialVersionUID = -3816001470285190952L;
+	private int level, bundles, chain, width;
+	public int getLevel() {
+		return level;
+	}
+	public void setLevel(int level) {
+		this.level = level;
+	}
+	public int getBundles() {
+		return bundles;
+	}
+	public void setBundles(int bundles) {
+		this.bundles = bundles;
+	}
+	public int getChain() {
+		return chain;
+	}
+	public void setChain(int chain) {
+		this.chain = chain;
+	}
+	public int getWidth() {
+		return width;
+	}
+	public void setWidth(int width) {
+		this.width = width;
+	}
+}
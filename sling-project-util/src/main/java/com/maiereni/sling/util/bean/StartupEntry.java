@@ -0,0 +1,76 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+
+/**
+ * The place of a bundle in the startup plan. The depth is the length of the longest chain of dependencies 
+ * ending with the bundle, 1 for a bundle which depends on no other bundle
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class StartupEntry implements Serializable {
+	private static final long serialVersionUID = 2801446713370268913L;
+	private Bundle bundle;
+	private int depth, suggestedLevel;
+	private boolean cyclic;
+	public Bundle getBundle() {
+		return bundle;
+	}
+	public void setBundle(Bundle bundle) {
+		this.bundle = bundle;
+	}
+	public int getDepth() {
+		return depth;
+	}
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+	public int getSuggestedLevel() {
+		return suggestedLevel;
+	}
+	public void setSuggestedLevel(int suggestedLevel) {
+		this.suggestedLevel = suggestedLevel;
+	}
+	/**
+	 * Check if the bundle waits for a start level it does not depend on. The bundles at the default start level 0 are not checked
+	 * @return
+	 */
+	public boolean isSerializing() {
+		return bundle.getStartLevel() > 0 && suggestedLevel < bundle.getStartLevel();
+	}
+	/**
+	 * Check if the bundle depends on a bundle of a higher start level
+	 * @return
+	 */
+	public boolean isInverted() {
+		return bundle.getStartLevel() > 0 && suggestedLevel > bundle.getStartLevel();
+	}
+	/**
+	 * Check if the bundle is part of a dependency cycle
+	 * @return
+	 */
+	public boolean isCyclic() {
+		return cyclic;
+	}
+	public void setCyclic(boolean cyclic) {
+		this.cyclic = cyclic;
+	}
+}
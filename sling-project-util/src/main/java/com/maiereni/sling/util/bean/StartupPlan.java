@@ -0,0 +1,69 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The analysis of the startup of a launchpad, for the current and the suggested start levels
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class StartupPlan implements Serializable {
+	private static final long serialVersionUID = 7391850236114580617L;
+	private List<StartupEntry> entries;
+	private List<Bundle> criticalPath;
+	private List<List<Bundle>> cycles;
+	private List<StartLevelStats> currentLevels, suggestedLevels;
+	public List<StartupEntry> getEntries() {
+		return entries;
+	}
+	public void setEntries(List<StartupEntry> entries) {
+		this.entries = entries;
+	}
+	/**
+	 * Get the longest chain of dependencies, starting with the bundle which depends on no other bundle
+	 * @return
+	 */
+	public List<Bundle> getCriticalPath() {
+		return criticalPath;
+	}
+	public void setCriticalPath(List<Bundle> criticalPath) {
+		this.criticalPath = criticalPath;
+	}
+	public List<List<Bundle>> getCycles() {
+		return cycles;
+	}
+	public void setCycles(List<List<Bundle>> cycles) {
+		this.cycles = cycles;
+	}
+	public List<StartLevelStats> getCurrentLevels() {
+		return currentLevels;
+	}
+	public void setCurrentLevels(List<StartLevelStats> currentLevels) {
+		this.currentLevels = currentLevels;
+	}
+	public List<StartLevelStats> getSuggestedLevels() {
+		return suggestedLevels;
+	}
+	public void setSuggestedLevels(List<StartLevelStats> suggestedLevels) {
+		this.suggestedLevels = suggestedLevels;
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.bean;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A pool of canonical strings. The group ids, the versions, the package clauses and the other strings repeated 
+ * across many bundle records are replaced with the instance kept in the pool, so that each distinct value is 
+ * stored once. The pool only holds weak references, so a string is dropped once no bundle record uses it and 
+ * a long running process does not keep the strings of the models it is done with. The pool is split in segments 
+ * locked independently, so that it can be used from several threads
+ * 
+ * @author Petre Maierean
+ *
+ */
+public final class StringPool {
+	private static final int SEGMENTS = 16;
+	private static final Map<String, WeakReference<String>>[] POOL = newPool();
+	
+	private StringPool() {
+	}
+	
+	/**
+	 * Get the canonical instance of a string
+	 * @param s
+	 * @return the canonical instance, or null if s is null
+	 */
+	public static String intern(final String s) {
+		String ret = s;
+		if (s != null) {
+			Map<String, WeakReference<String>> segment = POOL[(s.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+			synchronized(segment) {
+				WeakReference<String> ref = segment.get(s);
+				String prev = ref == null ? null : ref.get();
+				if (prev != null)
+					ret = prev;
+				else
+					segment.put(s, new WeakReference<String>(s));
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Get the number of distinct strings in the pool
+	 * @return
+	 */
+	public static int size() {
+		int ret = 0;
+		for(Map<String, WeakReference<String>> segment: POOL)
+			synchronized(segment) {
+				ret += segment.size();
+			}
+		return ret;
+	}
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static Map<String, WeakReference<String>>[] newPool() {
+		Map<String, WeakReference<String>>[] ret = new Map[SEGMENTS];
+		for(int i=0; i<SEGMENTS; i++)
+			ret[i] = new WeakHashMap<String, WeakReference<String>>();
+		return ret;
+	}
+}
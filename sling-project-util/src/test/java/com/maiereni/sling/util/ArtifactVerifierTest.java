@@ -0,0 +1,89 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.maiereni.sling.util.bean.ArtifactStatus;
+import com.maiereni.sling.util.bean.Bundle;
+
+/**
+ * Tests the reading of the cache of the verified artifacts
+ *
+ * @author Petre Maierean
+ *
+ */
+public class ArtifactVerifierTest {
+	private static final String HASH = "0123456789abcdef0123456789abcdef01234567";
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCache() throws Exception {
+		File jar = getJar("org.example,1.0.jar");
+		File cacheFile = folder.newFile("verified.csv");
+		FileUtils.writeLines(cacheFile, StandardCharsets.UTF_8.name(), Arrays.asList(
+			"garbage",
+			"",
+			"/tmp/x.jar,notanumber,1,sha1," + HASH,
+			"/tmp/x.jar,1,-2,sha1," + HASH,
+			"/tmp/x.jar,1,2,," + HASH,
+			",1,2,sha1," + HASH,
+			"1,2,sha1," + HASH,
+			jar.getAbsolutePath() + "," + jar.length() + "," + jar.lastModified() + ",sha1," + HASH));
+		ArtifactStatus status = new ArtifactVerifier(cacheFile).verify(getBundle(jar));
+		assertTrue(status.isCached());
+		assertEquals(ArtifactStatus.VERIFIED, status.getStatus());
+	}
+
+	@Test
+	public void testStale() throws Exception {
+		File jar = getJar("org.example-1.0.jar");
+		File cacheFile = folder.newFile("verified.csv");
+		FileUtils.writeLines(cacheFile, StandardCharsets.UTF_8.name(), Arrays.asList(
+			jar.getAbsolutePath() + "," + (jar.length() + 1) + "," + jar.lastModified() + ",sha1," + HASH));
+		ArtifactStatus status = new ArtifactVerifier(cacheFile).verify(getBundle(jar));
+		assertFalse(status.isCached());
+		assertEquals(ArtifactStatus.MISMATCH, status.getStatus());
+	}
+
+	private File getJar(final String name) throws Exception {
+		File ret = folder.newFile(name);
+		FileUtils.writeStringToFile(ret, "not really a jar", StandardCharsets.UTF_8);
+		FileUtils.writeStringToFile(new File(ret.getPath() + ".sha1"), HASH + "  " + name + "\n", StandardCharsets.UTF_8);
+		return ret;
+	}
+
+	private Bundle getBundle(final File jar) {
+		Bundle ret = new Bundle();
+		ret.setName("org.example");
+		ret.setLocation(jar.getPath());
+		return ret;
+	}
+}
@@ -0,0 +1,287 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.BundleDependencies;
+import com.maiereni.sling.util.bean.DependencyTree;
+import com.maiereni.sling.util.bean.Dependent;
+import com.maiereni.sling.util.bean.PackageCollision;
+import com.maiereni.sling.util.bean.PackageExport;
+import com.maiereni.sling.util.bean.PackageUsage;
+
+/**
+ * Tests the BinaryDependencyTreeReader on the trees written by the BinaryDependencyTreeWriter and on the streams
+ * of the earlier versions of the format: 1 without the package usage, 2 without the collisions and 3 without the
+ * unresolved requirements
+ *
+ * @author Petre Maierean
+ *
+ */
+public class BinaryDependencyTreeReaderTest {
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		DependencyTree tree = getTree();
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		new BinaryDependencyTreeWriter().write(tree, os);
+		DependencyTree read = new BinaryDependencyTreeReader().read(new ByteArrayInputStream(os.toByteArray()));
+
+		assertBundles(tree.getFeatured(), read.getFeatured(), BinaryDependencyTreeWriter.FORMAT_VERSION);
+		assertBundles(tree.getExtra(), read.getExtra(), BinaryDependencyTreeWriter.FORMAT_VERSION);
+		assertExports(tree, read);
+		assertEquals(1, read.getCollisions().size());
+		PackageCollision collision = read.getCollisions().get(0);
+		assertEquals("org.a.api", collision.getPackageName());
+		assertEquals("split", collision.getType());
+		assertEquals(2, collision.getExporters().size());
+		assertEquals("org.a", collision.getExporters().get(0).getBundle().getName());
+		assertEquals(1, collision.getExporters().get(0).getBundle().getPos());
+		assertEquals("1.0.0", collision.getExporters().get(0).getVersion());
+		assertEquals("org.c", collision.getExporters().get(1).getBundle().getName());
+		assertNull(collision.getExporters().get(1).getVersion());
+	}
+
+	@Test
+	public void testVersions() throws Exception {
+		DependencyTree tree = getTree();
+		for(int version=1; version<=BinaryDependencyTreeWriter.FORMAT_VERSION; version++) {
+			DependencyTree read = new BinaryDependencyTreeReader().read(new ByteArrayInputStream(write(tree, version)));
+			assertBundles(tree.getFeatured(), read.getFeatured(), version);
+			assertBundles(tree.getExtra(), read.getExtra(), version);
+			assertExports(tree, read);
+			if (version > 2)
+				assertEquals(1, read.getCollisions().size());
+			else
+				assertNull(read.getCollisions());
+		}
+	}
+
+	@Test(expected = Exception.class)
+	public void testUnsupportedVersion() throws Exception {
+		new BinaryDependencyTreeReader().read(new ByteArrayInputStream(write(getTree(), BinaryDependencyTreeWriter.FORMAT_VERSION + 1)));
+	}
+
+	@Test(expected = Exception.class)
+	public void testNotBinary() throws Exception {
+		new BinaryDependencyTreeReader().read(new ByteArrayInputStream("<dependencies/>".getBytes("UTF-8")));
+	}
+
+	private void assertBundles(final List<BundleDependencies> expected, final List<BundleDependencies> actual, final int version) {
+		assertEquals(expected.size(), actual.size());
+		for(int i=0; i<expected.size(); i++) {
+			BundleDependencies e = expected.get(i), a = actual.get(i);
+			assertEquals(e.getBundle().getName(), a.getBundle().getName());
+			assertEquals(e.getBundle().getPos(), a.getBundle().getPos());
+			assertEquals(e.getBundle().getPkgName(), a.getBundle().getPkgName());
+			assertEquals(e.getBundle().getArtifactId(), a.getBundle().getArtifactId());
+			assertEquals(e.getBundle().getGroupId(), a.getBundle().getGroupId());
+			assertEquals(e.getBundle().getVersion(), a.getBundle().getVersion());
+			assertEquals(e.getBundle().getFeatureName(), a.getBundle().getFeatureName());
+			assertEquals(e.getDependents().size(), a.getDependents().size());
+			for(int j=0; j<e.getDependents().size(); j++) {
+				assertEquals(e.getDependents().get(j).getName(), a.getDependents().get(j).getName());
+				assertEquals(e.getDependents().get(j).getPos(), a.getDependents().get(j).getPos());
+				assertEquals(e.getDependents().get(j).isTentative(), a.getDependents().get(j).isTentative());
+			}
+			assertEquals(e.getUnresolved(), a.getUnresolved());
+			if (version > 3)
+				assertEquals(e.getUnresolvedRequirements(), a.getUnresolvedRequirements());
+			else
+				assertTrue(a.getUnresolvedRequirements().isEmpty());
+			if (version > 1 && e.getUsage() != null) {
+				assertEquals(e.getUsage().getUnusedImports(), a.getUsage().getUnusedImports());
+				assertEquals(e.getUsage().getHiddenDependencies(), a.getUsage().getHiddenDependencies());
+			}
+			else
+				assertNull(a.getUsage());
+		}
+	}
+
+	private void assertExports(final DependencyTree expected, final DependencyTree actual) {
+		assertEquals(expected.getExports().keySet(), actual.getExports().keySet());
+		for(Map.Entry<String, Bundle> entry: expected.getExports().entrySet()) {
+			assertEquals(entry.getValue().getName(), actual.getExports().get(entry.getKey()).getName());
+			assertEquals(entry.getValue().getPos(), actual.getExports().get(entry.getKey()).getPos());
+		}
+	}
+
+	private DependencyTree getTree() {
+		BundleDependencies a = getBundle("org.a", 1, null);
+		a.setUnresolved(Arrays.asList("org.missing"));
+		a.setUnresolvedRequirements(Arrays.asList("osgi.extender;filter:=\"(osgi.extender=osgi.component)\""));
+		PackageUsage usage = new PackageUsage();
+		usage.setUnusedImports(Arrays.asList("org.b.api"));
+		usage.setHiddenDependencies(new ArrayList<String>());
+		a.setUsage(usage);
+		BundleDependencies b = getBundle("org.b", 2, getDependent("org.a", 1, false));
+		BundleDependencies c = getBundle("org.c", 3, getDependent("org.a", 1, true));
+		c.getBundle().setFeatureName(null);
+		DependencyTree ret = new DependencyTree();
+		ret.setFeatured(Arrays.asList(a, b));
+		ret.setExtra(Arrays.asList(c));
+		Map<String, Bundle> exports = new LinkedHashMap<String, Bundle>();
+		exports.put("org.a.api", a.getBundle());
+		exports.put("org.b.api", b.getBundle());
+		ret.setExports(exports);
+		PackageCollision collision = new PackageCollision();
+		collision.setPackageName("org.a.api");
+		collision.setType("split");
+		collision.setExporters(Arrays.asList(getExport(a.getBundle(), "1.0.0"), getExport(c.getBundle(), null)));
+		ret.setCollisions(Arrays.asList(collision));
+		return ret;
+	}
+
+	private BundleDependencies getBundle(final String name, final int pos, final Dependent dependent) {
+		Bundle bundle = new Bundle();
+		bundle.setName(name);
+		bundle.setPos(pos);
+		bundle.setPkgName(name + ".pkg");
+		bundle.setArtifactId(name);
+		bundle.setGroupId("org.apache.sling");
+		bundle.setVersion("1.0.0");
+		bundle.setFeatureName("sling");
+		BundleDependencies ret = new BundleDependencies();
+		ret.setBundle(bundle);
+		ret.setDependents(new ArrayList<Dependent>());
+		if (dependent != null)
+			ret.getDependents().add(dependent);
+		ret.setUnresolved(new ArrayList<String>());
+		ret.setUnresolvedRequirements(new ArrayList<String>());
+		return ret;
+	}
+
+	private Dependent getDependent(final String name, final int pos, final boolean tentative) {
+		Dependent ret = new Dependent();
+		ret.setName(name);
+		ret.setPos(pos);
+		ret.setTentative(tentative);
+		return ret;
+	}
+
+	private PackageExport getExport(final Bundle bundle, final String version) {
+		PackageExport ret = new PackageExport();
+		ret.setBundle(bundle);
+		ret.setVersion(version);
+		return ret;
+	}
+
+	/**
+	 * Write a tree as the writer of a version of the format did. Each string is written in full
+	 * @param tree
+	 * @param version
+	 * @return
+	 * @throws IOException
+	 */
+	private byte[] write(final DependencyTree tree, final int version) throws IOException {
+		ByteArrayOutputStream ret = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(ret);
+		out.writeInt(BinaryDependencyTreeWriter.MAGIC);
+		out.writeByte(version);
+		writeBundles(out, tree.getFeatured(), version);
+		writeBundles(out, tree.getExtra(), version);
+		writeVarInt(out, tree.getExports().size());
+		for(Map.Entry<String, Bundle> entry: tree.getExports().entrySet()) {
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue().getName());
+			writeVarInt(out, entry.getValue().getPos());
+		}
+		if (version > 2) {
+			writeVarInt(out, tree.getCollisions().size());
+			for(PackageCollision collision: tree.getCollisions()) {
+				writeString(out, collision.getPackageName());
+				writeString(out, collision.getType());
+				writeVarInt(out, collision.getExporters().size());
+				for(PackageExport export: collision.getExporters()) {
+					writeString(out, export.getBundle().getName());
+					writeVarInt(out, export.getBundle().getPos());
+					writeString(out, export.getVersion());
+				}
+			}
+		}
+		out.flush();
+		return ret.toByteArray();
+	}
+
+	private void writeBundles(final DataOutputStream out, final List<BundleDependencies> bundles, final int version) throws IOException {
+		writeVarInt(out, bundles.size());
+		for(BundleDependencies dependencies: bundles) {
+			Bundle bundle = dependencies.getBundle();
+			writeString(out, bundle.getName());
+			writeVarInt(out, bundle.getPos());
+			writeString(out, bundle.getPkgName());
+			writeString(out, bundle.getArtifactId());
+			writeString(out, bundle.getGroupId());
+			writeString(out, bundle.getVersion());
+			writeString(out, bundle.getFeatureName());
+			writeVarInt(out, dependencies.getDependents().size());
+			for(Dependent dependent: dependencies.getDependents()) {
+				writeString(out, dependent.getName());
+				writeVarInt(out, dependent.getPos());
+				out.writeBoolean(dependent.isTentative());
+			}
+			writeStrings(out, dependencies.getUnresolved());
+			if (version > 3)
+				writeStrings(out, dependencies.getUnresolvedRequirements());
+			if (version > 1) {
+				out.writeBoolean(dependencies.getUsage() != null);
+				if (dependencies.getUsage() != null) {
+					writeStrings(out, dependencies.getUsage().getUnusedImports());
+					writeStrings(out, dependencies.getUsage().getHiddenDependencies());
+				}
+			}
+		}
+	}
+
+	private void writeStrings(final DataOutputStream out, final List<String> l) throws IOException {
+		writeVarInt(out, l.size());
+		for(String s: l)
+			writeString(out, s);
+	}
+
+	private void writeString(final DataOutputStream out, final String s) throws IOException {
+		if (s == null)
+			writeVarInt(out, BinaryDependencyTreeWriter.NULL_STRING);
+		else {
+			writeVarInt(out, BinaryDependencyTreeWriter.NEW_STRING);
+			out.writeUTF(s);
+		}
+	}
+
+	private void writeVarInt(final DataOutputStream out, final int value) throws IOException {
+		assertFalse(value > 0x7F);
+		out.writeByte(value);
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.maiereni.sling.util.bean.BuildResult;
+import com.maiereni.sling.util.bean.SourceProject;
+
+/**
+ * Tests the order of the builds and the handling of the failed builds and of the dependency cycles. The builds are
+ * run with true or false as the Maven executable
+ *
+ * @author Petre Maierean
+ *
+ */
+public class BuildPipelineTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() {
+		System.clearProperty(BuildPipeline.MAVEN_EXECUTABLE);
+	}
+
+	@Test
+	public void testGraph() throws Exception {
+		Map<String, SourceProject> index = new HashMap<String, SourceProject>();
+		addProject(index, "a", "a-api");
+		addProject(index, "a", "a-impl", "g:a-api");
+		addProject(index, "b", "b", "g:a-api", "g:external");
+		addProject(index, "c", "c", "g:b");
+		Map<String, Set<String>> graph = getPipeline().getGraph(index, Arrays.asList("a", "b"));
+		assertEquals(Arrays.asList("a", "b"), Arrays.asList(graph.keySet().toArray()));
+		// the dependencies within a repository and on the repositories which are not built are left out
+		assertTrue(graph.get("a").isEmpty());
+		assertEquals(Collections.singleton("a"), graph.get("b"));
+	}
+
+	@Test
+	public void testDiamond() throws Exception {
+		Map<String, Set<String>> graph = getGraph("a", "b:a", "c:a", "d:b,c");
+		List<List<String>> waves = getPipeline().getWaves(graph);
+		assertEquals(Arrays.asList(Arrays.asList(getPath("a")), Arrays.asList(getPath("b"), getPath("c")), Arrays.asList(getPath("d"))), waves);
+	}
+
+	@Test
+	public void testCycle() throws Exception {
+		Map<String, Set<String>> graph = getGraph("a", "x:y", "y:x,a", "z:x");
+		assertEquals(Arrays.asList(Arrays.asList(getPath("a"))), getPipeline().getWaves(graph));
+		Map<String, BuildResult> results = getResults(getPipeline().plan(graph));
+		assertEquals(BuildResult.PLANNED, results.get("a").getStatus());
+		assertEquals(1, results.get("a").getWave());
+		for(String repository: Arrays.asList("x", "y", "z")) {
+			assertEquals(BuildResult.SKIPPED, results.get(repository).getStatus());
+			assertEquals("In a dependency cycle", results.get(repository).getMessage());
+		}
+	}
+
+	@Test
+	public void testBuild() throws Exception {
+		Assume.assumeFalse(SystemUtils.IS_OS_WINDOWS);
+		System.setProperty(BuildPipeline.MAVEN_EXECUTABLE, "true");
+		Map<String, Set<String>> graph = getGraph("a", "b:a", "c:a", "d:b,c", "x:y", "y:x");
+		List<BuildResult> results = getPipeline().build(graph);
+		assertEquals(6, results.size());
+		assertEquals(getPath("a"), results.get(0).getRepository());
+		assertEquals(getPath("d"), results.get(3).getRepository());
+		Map<String, BuildResult> byName = getResults(results);
+		for(String repository: Arrays.asList("a", "b", "c", "d"))
+			assertEquals(BuildResult.SUCCESS, byName.get(repository).getStatus());
+		assertEquals(3, byName.get("d").getWave());
+		assertEquals(BuildResult.SKIPPED, byName.get("x").getStatus());
+		assertEquals(BuildResult.SKIPPED, byName.get("y").getStatus());
+	}
+
+	@Test
+	public void testFailedBuild() throws Exception {
+		Assume.assumeFalse(SystemUtils.IS_OS_WINDOWS);
+		System.setProperty(BuildPipeline.MAVEN_EXECUTABLE, "false");
+		Map<String, Set<String>> graph = getGraph("a", "b:a", "c:b");
+		Map<String, BuildResult> results = getResults(getPipeline().build(graph));
+		assertEquals(BuildResult.FAILED, results.get("a").getStatus());
+		assertEquals(1, results.get("a").getExitCode());
+		assertTrue(new File(results.get("a").getLog()).isFile());
+		assertEquals(BuildResult.SKIPPED, results.get("b").getStatus());
+		assertEquals("Depends on " + getPath("a"), results.get("b").getMessage());
+		assertEquals(BuildResult.SKIPPED, results.get("c").getStatus());
+		assertEquals("Depends on " + getPath("b"), results.get("c").getMessage());
+	}
+
+	private BuildPipeline getPipeline() throws Exception {
+		return new BuildPipeline(new File(folder.getRoot(), ".build-logs"));
+	}
+
+	/**
+	 * Build a graph of repositories given as name:dependency,dependency. The repositories are directories of the
+	 * temporary folder
+	 * @param repositories
+	 * @return
+	 * @throws Exception
+	 */
+	private Map<String, Set<String>> getGraph(final String... repositories) throws Exception {
+		Map<String, Set<String>> ret = new LinkedHashMap<String, Set<String>>();
+		for(String s: repositories) {
+			String[] sp = s.split(":");
+			folder.newFolder(sp[0]);
+			Set<String> dependencies = new LinkedHashSet<String>();
+			if (sp.length > 1)
+				for(String dependency: sp[1].split(","))
+					dependencies.add(getPath(dependency));
+			ret.put(getPath(sp[0]), dependencies);
+		}
+		return ret;
+	}
+
+	private String getPath(final String name) {
+		return new File(folder.getRoot(), name).getPath();
+	}
+
+	private Map<String, BuildResult> getResults(final List<BuildResult> results) {
+		Map<String, BuildResult> ret = new HashMap<String, BuildResult>();
+		for(BuildResult result: results)
+			ret.put(new File(result.getRepository()).getName(), result);
+		return ret;
+	}
+
+	private void addProject(final Map<String, SourceProject> index, final String repository, final String artifactId, final String... dependencies) {
+		SourceProject project = new SourceProject();
+		project.setGroupId("g");
+		project.setArtifactId(artifactId);
+		project.setRepository(repository);
+		project.setDependencies(Arrays.asList(dependencies));
+		index.put("g:" + artifactId, project);
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.maiereni.sling.util.bean.Bundle;
+
+/**
+ * Tests the lookup of the capabilities by the value of their namespace attribute
+ *
+ * @author Petre Maierean
+ *
+ */
+public class CapabilityIndexTest {
+	private static final String EXTENDER = "osgi.extender";
+
+	@Test
+	public void testGetKey() {
+		assertEquals("osgi.component", CapabilityIndex.getKey(EXTENDER, "(osgi.extender=osgi.component)"));
+		assertEquals("osgi.component", CapabilityIndex.getKey(EXTENDER, " (osgi.extender=osgi.component) "));
+		assertEquals("osgi.component", CapabilityIndex.getKey(EXTENDER, "(&(osgi.extender=osgi.component)(version>=1.3)(!(version>=2.0)))"));
+		assertEquals("osgi.component", CapabilityIndex.getKey(EXTENDER, "(&(version>=1.3)(osgi.extender=osgi.component))"));
+		// only the terms of the top level conjunction count
+		assertEquals("c", CapabilityIndex.getKey(EXTENDER, "(&(|(osgi.extender=a)(osgi.extender=b))(osgi.extender=c))"));
+		assertNull(CapabilityIndex.getKey(EXTENDER, "(|(osgi.extender=a)(osgi.extender=b))"));
+		assertNull(CapabilityIndex.getKey(EXTENDER, "(!(osgi.extender=osgi.component))"));
+		assertNull(CapabilityIndex.getKey(EXTENDER, "(&(version>=1.3)(!(osgi.extender=osgi.component)))"));
+	}
+
+	@Test
+	public void testGetKeyNotLiteral() {
+		assertNull(CapabilityIndex.getKey(EXTENDER, "(osgi.extender=osgi.*)"));
+		assertNull(CapabilityIndex.getKey(EXTENDER, "(osgi.extender=*)"));
+		assertNull(CapabilityIndex.getKey(EXTENDER, "(osgi.extender>=osgi.component)"));
+		assertNull(CapabilityIndex.getKey(EXTENDER, "(osgi.extender=a\\)b)"));
+		assertNull(CapabilityIndex.getKey(EXTENDER, "(&(osgi.extender=a\\)b)(version>=1.0))"));
+		assertNull(CapabilityIndex.getKey(EXTENDER, "(osgi.extender.name=osgi.component)"));
+		assertNull(CapabilityIndex.getKey(EXTENDER, "(version>=1.0)"));
+	}
+
+	@Test
+	public void testFind() throws Exception {
+		Bundle scr = getBundle("org.apache.felix.scr", "osgi.extender;osgi.extender=\"osgi.component\";version:Version=\"1.3\"");
+		Bundle models = getBundle("org.apache.sling.models.impl", "osgi.extender;osgi.extender=\"sling.models\";version:Version=\"1.0\"");
+		Bundle all = getBundle("org.example.all", "osgi.extender;osgi.extender:List<String>=\"osgi.component,sling.models\";version:Version=\"1.0\"");
+		Bundle other = getBundle("org.example.other", "osgi.service;objectClass:List<String>=\"org.example.Service\"");
+		CapabilityIndex index = new CapabilityIndex();
+		for(Bundle bundle: Arrays.asList(scr, models, all, other))
+			index.add(bundle);
+		assertEquals(4, index.size());
+
+		assertEquals(Arrays.asList(scr, all), index.find(EXTENDER, "(osgi.extender=osgi.component)"));
+		assertEquals(Arrays.asList(scr), index.find(EXTENDER, "(&(osgi.extender=osgi.component)(version>=1.3))"));
+		assertEquals(Arrays.asList(scr, models, all), index.find(EXTENDER, "(osgi.extender=*)"));
+		assertEquals(Arrays.asList(scr, models, all), index.find(EXTENDER, null));
+		assertEquals(Arrays.asList(other), index.find("osgi.service", "(objectClass=org.example.Service)"));
+		List<Bundle> none = index.find(EXTENDER, "(osgi.extender=osgi.cdi)");
+		assertTrue(none.isEmpty());
+		assertTrue(index.find("osgi.implementation", null).isEmpty());
+	}
+
+	private Bundle getBundle(final String name, final String capability) {
+		Bundle ret = new Bundle();
+		ret.setName(name);
+		ret.setProvideCapabilities(Arrays.asList(capability));
+		return ret;
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.maiereni.sling.util.bean.InventoryDrift;
+
+/**
+ * Tests the comparison of the bundle snapshots of several nodes
+ *
+ * @author Petre Maierean
+ *
+ */
+public class InventoryDiffTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDiff() throws Exception {
+		InventoryDiff diff = new InventoryDiff();
+		diff.add(getSnapshot("n1.csv", "0,System Bundle,a,1.0", "1,B,b,2.0,active", "2,C,c,1.0", "3,E,e,1.0"));
+		diff.add(getSnapshot("n2.csv", "0,System Bundle,a,1.0", "1,B,b, 2.1 ", "2,C,c,1.0", "3,E,e,2.0", "", "malformed,line"));
+		diff.add(getSnapshot("n3.csv", "0,System Bundle,a,1.0", "1,B,b,2.0", "2,D,d,1.0"));
+		assertEquals(Arrays.asList("n1", "n2", "n3"), diff.getNodes());
+		assertEquals(5, diff.size());
+
+		List<InventoryDrift> drifts = diff.diff();
+		assertEquals(4, drifts.size());
+		// a differing version
+		assertDrift(drifts.get(0), "b", "2.0", 2, "n2", "2.1");
+		// a bundle missing from a node
+		assertDrift(drifts.get(1), "c", "1.0", 2, "n3", null);
+		// the first version seen is expected when the counts are equal
+		assertDrift(drifts.get(2), "e", "1.0", 1, "n2", "2.0", "n3", null);
+		// a bundle installed on a single node
+		assertDrift(drifts.get(3), "d", "1.0", 1, "n1", null, "n2", null);
+	}
+
+	@Test
+	public void testNoDrift() throws Exception {
+		InventoryDiff diff = new InventoryDiff();
+		diff.add(getSnapshot("n1.csv", "0,A,a,1.0", "1,B,b,2.0"));
+		diff.add(getSnapshot("n2.csv", "0,B,b,2.0", "1,A,a,1.0"));
+		assertTrue(diff.diff().isEmpty());
+	}
+
+	@Test
+	public void testManyBundles() throws Exception {
+		String[] first = new String[100], second = new String[99];
+		for(int i=0; i<first.length; i++) {
+			first[i] = i + ",B" + i + ",b" + i + ",1.0";
+			if (i < second.length)
+				second[i] = i + ",B" + i + ",b" + i + ",1.0";
+		}
+		InventoryDiff diff = new InventoryDiff();
+		diff.add(getSnapshot("n1.csv", second));
+		diff.add(getSnapshot("n2.csv", first));
+		List<InventoryDrift> drifts = diff.diff();
+		assertEquals(1, drifts.size());
+		assertDrift(drifts.get(0), "b99", "1.0", 1, "n1", null);
+	}
+
+	@Test
+	public void testNodeName() throws Exception {
+		File dir = folder.newFolder("author1");
+		File snapshot = new File(dir, "bundles.csv");
+		FileUtils.writeLines(snapshot, StandardCharsets.UTF_8.name(), Arrays.asList("0,A,a,1.0"));
+		InventoryDiff diff = new InventoryDiff();
+		diff.add(snapshot);
+		diff.add(getSnapshot("publish1.csv", "0,A,a,1.0"));
+		assertEquals(Arrays.asList("author1", "publish1"), diff.getNodes());
+	}
+
+	private void assertDrift(final InventoryDrift drift, final String name, final String expectedVersion, final int expectedCount, final String... deviations) {
+		assertEquals(name, drift.getName());
+		assertEquals(expectedVersion, drift.getExpectedVersion());
+		assertEquals(expectedCount, drift.getExpectedCount());
+		Map<String, String> expected = new LinkedHashMap<String, String>();
+		for(int i=0; i<deviations.length; i+=2)
+			expected.put(deviations[i], deviations[i + 1]);
+		assertEquals(expected, drift.getDeviations());
+	}
+
+	private File getSnapshot(final String name, final String... lines) throws Exception {
+		File ret = folder.newFile(name);
+		FileUtils.writeLines(ret, StandardCharsets.UTF_8.name(), Arrays.asList(lines));
+		return ret;
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.SourceProject;
+import com.maiereni.sling.util.bean.SourceStatus;
+
+/**
+ * Tests the comparison of the versions and the reading of the projects of the cloned repositories
+ *
+ * @author Petre Maierean
+ *
+ */
+public class SourceIndexTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCompareVersions() {
+		// Maven and OSGi qualifiers
+		assertEquals(0, SourceIndex.compareVersions("1.0.2-SNAPSHOT", "1.0.2.SNAPSHOT"));
+		assertEquals(0, SourceIndex.compareVersions("1.0", "1.0.0"));
+		assertEquals(0, SourceIndex.compareVersions(" 1.0.0 ", "1.0.0"));
+		// a qualified version is lower than its release
+		assertEquals(-1, SourceIndex.compareVersions("1.0.2-SNAPSHOT", "1.0.2"));
+		assertEquals(1, SourceIndex.compareVersions("1.0.2", "1.0.2.SNAPSHOT"));
+		// the numbers are not compared as text
+		assertEquals(-1, SourceIndex.compareVersions("1.9.0", "1.10.0"));
+		assertEquals(1, SourceIndex.compareVersions("1.0.3-SNAPSHOT", "1.0.2"));
+		assertEquals(-1, SourceIndex.compareVersions("1.0.0-alpha", "1.0.0-beta"));
+	}
+
+	@Test
+	public void testIndex() throws Exception {
+		File repository = folder.newFolder("org-apache-sling-example");
+		writePom(repository, "<parent><groupId>org.apache.sling</groupId><artifactId>sling</artifactId><version>34</version></parent>" +
+			"<artifactId>example-reactor</artifactId><version>1.0.2-SNAPSHOT</version><packaging>pom</packaging>" +
+			"<modules><module>api</module><module>missing</module></modules>");
+		writePom(new File(repository, "api"), "<parent><groupId>org.apache.sling</groupId><artifactId>example-reactor</artifactId>" +
+			"<version>1.0.2-SNAPSHOT</version></parent><artifactId>org.apache.sling.example.api</artifactId>" +
+			"<dependencies><dependency><groupId>${project.groupId}</groupId><artifactId>org.apache.sling.api</artifactId></dependency>" +
+			"<dependency><groupId>org.osgi</groupId><artifactId>osgi.core</artifactId></dependency></dependencies>");
+		folder.newFolder(".partial");
+		folder.newFolder("not-a-project");
+
+		Map<String, SourceProject> index = new SourceIndex().index(folder.getRoot());
+		assertEquals(2, index.size());
+		SourceProject reactor = index.get("org.apache.sling:example-reactor");
+		assertEquals("1.0.2-SNAPSHOT", reactor.getVersion());
+		assertEquals("pom", reactor.getPackaging());
+		SourceProject api = index.get("org.apache.sling:org.apache.sling.example.api");
+		// the groupId and the version of the parent
+		assertEquals("org.apache.sling", api.getGroupId());
+		assertEquals("1.0.2-SNAPSHOT", api.getVersion());
+		assertEquals(repository.getPath(), api.getRepository());
+		assertEquals(Arrays.asList("org.apache.sling:org.apache.sling.api", "org.osgi:osgi.core"), api.getDependencies());
+
+		List<SourceStatus> statuses = new SourceIndex().compare(index, Arrays.asList(
+			getBundle("org.apache.sling.example.api", "1.0.0"),
+			getBundle("org.apache.sling.example.api", "1.0.2.SNAPSHOT"),
+			getBundle("org.apache.sling.example.api", "1.0.2"),
+			getBundle("org.apache.sling.other", "1.0.0")));
+		assertEquals(3, statuses.size());
+		assertEquals(SourceStatus.BEHIND, statuses.get(0).getStatus());
+		assertEquals(SourceStatus.CURRENT, statuses.get(1).getStatus());
+		assertEquals(SourceStatus.AHEAD, statuses.get(2).getStatus());
+		assertTrue(SourceIndex.getRepositoriesToBuild(statuses).contains(repository.getPath()));
+	}
+
+	private void writePom(final File dir, final String content) throws Exception {
+		FileUtils.writeStringToFile(new File(dir, "pom.xml"), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+			"<project xmlns=\"http://maven.apache.org/POM/4.0.0\"><modelVersion>4.0.0</modelVersion>" + content + "</project>", StandardCharsets.UTF_8);
+	}
+
+	private Bundle getBundle(final String artifactId, final String version) {
+		Bundle ret = new Bundle();
+		ret.setGroupId("org.apache.sling");
+		ret.setArtifactId(artifactId);
+		ret.setVersion(version);
+		return ret;
+	}
+}
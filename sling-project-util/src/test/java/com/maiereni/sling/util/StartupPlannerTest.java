@@ -0,0 +1,164 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.BundleDependencies;
+import com.maiereni.sling.util.bean.DependencyTree;
+import com.maiereni.sling.util.bean.Dependent;
+import com.maiereni.sling.util.bean.StartLevelStats;
+import com.maiereni.sling.util.bean.StartupEntry;
+import com.maiereni.sling.util.bean.StartupPlan;
+
+/**
+ * Tests the startup plan of a small tree: a chain a &lt;- b &lt;- c &lt;- {d, e} &lt;- x where d and e depend on each
+ * other, f depending on a only and g, at level 1, depending on c at level 2
+ *
+ * @author Petre Maierean
+ *
+ */
+public class StartupPlannerTest {
+
+	@Test
+	public void testPlan() {
+		DependencyTree tree = new DependencyTree();
+		tree.setFeatured(Arrays.asList(
+			getBundle("a", 1),
+			getBundle("b", 1, "a"),
+			getBundle("c", 2, "b"),
+			getBundle("d", 5, "c", "e"),
+			getBundle("e", 5, "d"),
+			getBundle("f", 10, "a"),
+			getBundle("g", 1, "c", "unknown")));
+		tree.setExtra(Arrays.asList(getBundle("x", 0, "e")));
+		StartupPlan plan = new StartupPlanner().plan(tree);
+
+		Map<String, StartupEntry> entries = new HashMap<String, StartupEntry>();
+		for(StartupEntry entry: plan.getEntries())
+			entries.put(entry.getBundle().getName(), entry);
+		assertEquals(8, entries.size());
+		assertEntry(entries.get("a"), 1, 1, false);
+		assertEntry(entries.get("b"), 2, 1, false);
+		// b, the only dependency of c, is active at level 1
+		assertEntry(entries.get("c"), 3, 1, false);
+		assertEntry(entries.get("d"), 4, 2, true);
+		assertEntry(entries.get("e"), 4, 2, true);
+		// f waits for levels it does not need
+		assertEntry(entries.get("f"), 2, 1, false);
+		// g depends on a bundle started after it
+		assertEntry(entries.get("g"), 4, 2, false);
+		assertEntry(entries.get("x"), 5, 5, false);
+
+		List<String> path = getNames(plan.getCriticalPath());
+		assertEquals(5, path.size());
+		assertEquals(Arrays.asList("a", "b", "c"), path.subList(0, 3));
+		assertTrue(path.get(3).equals("d") || path.get(3).equals("e"));
+		assertEquals("x", path.get(4));
+
+		assertEquals(1, plan.getCycles().size());
+		assertEquals(new HashSet<String>(Arrays.asList("d", "e")), new HashSet<String>(getNames(plan.getCycles().get(0))));
+
+		List<StartLevelStats> levels = plan.getCurrentLevels();
+		assertEquals(5, levels.size());
+		assertLevel(levels.get(0), 0, 1, 1, 1);
+		// a <- b at level 1, g being the second bundle without dependencies in its level
+		assertLevel(levels.get(1), 1, 3, 2, 2);
+		assertLevel(levels.get(2), 2, 1, 1, 1);
+		// the bundles of a cycle are activated together
+		assertLevel(levels.get(3), 5, 2, 1, 2);
+		assertLevel(levels.get(4), 10, 1, 1, 1);
+
+		levels = plan.getSuggestedLevels();
+		assertEquals(3, levels.size());
+		// a <- b <- c and a <- f at level 1
+		assertLevel(levels.get(0), 1, 4, 3, 2);
+		// {d, e} and g at level 2
+		assertLevel(levels.get(1), 2, 3, 1, 3);
+		assertLevel(levels.get(2), 5, 1, 1, 1);
+	}
+
+	@Test
+	public void testEmpty() {
+		DependencyTree tree = new DependencyTree();
+		tree.setFeatured(new ArrayList<BundleDependencies>());
+		StartupPlan plan = new StartupPlanner().plan(tree);
+		assertTrue(plan.getEntries().isEmpty());
+		assertTrue(plan.getCriticalPath().isEmpty());
+		assertTrue(plan.getCycles().isEmpty());
+		assertTrue(plan.getCurrentLevels().isEmpty());
+	}
+
+	@Test
+	public void testSelfDependency() {
+		DependencyTree tree = new DependencyTree();
+		tree.setFeatured(Arrays.asList(getBundle("a", 1, "a"), getBundle("b", 1, "a", "a")));
+		StartupPlan plan = new StartupPlanner().plan(tree);
+		assertTrue(plan.getCycles().isEmpty());
+		assertFalse(plan.getEntries().get(0).isCyclic());
+		assertEquals(2, plan.getEntries().get(1).getDepth());
+		assertEquals(Arrays.asList("a", "b"), getNames(plan.getCriticalPath()));
+	}
+
+	private void assertEntry(final StartupEntry entry, final int depth, final int suggestedLevel, final boolean cyclic) {
+		assertEquals(entry.getBundle().getName(), depth, entry.getDepth());
+		assertEquals(entry.getBundle().getName(), suggestedLevel, entry.getSuggestedLevel());
+		assertEquals(entry.getBundle().getName(), cyclic, entry.isCyclic());
+	}
+
+	private void assertLevel(final StartLevelStats stats, final int level, final int bundles, final int chain, final int width) {
+		assertEquals(level, stats.getLevel());
+		assertEquals("bundles at " + level, bundles, stats.getBundles());
+		assertEquals("chain at " + level, chain, stats.getChain());
+		assertEquals("width at " + level, width, stats.getWidth());
+	}
+
+	private List<String> getNames(final List<Bundle> bundles) {
+		List<String> ret = new ArrayList<String>();
+		for(Bundle bundle: bundles)
+			ret.add(bundle.getName());
+		return ret;
+	}
+
+	private BundleDependencies getBundle(final String name, final int startLevel, final String... dependencies) {
+		Bundle bundle = new Bundle();
+		bundle.setName(name);
+		bundle.setStartLevel(startLevel);
+		BundleDependencies ret = new BundleDependencies();
+		ret.setBundle(bundle);
+		ret.setDependents(new ArrayList<Dependent>());
+		for(String s: dependencies) {
+			Dependent dependent = new Dependent();
+			dependent.setName(s);
+			ret.getDependents().add(dependent);
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,179 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.StringPool;
+
+/**
+ * Measures the heap retained by the bundle records of several inventories and their serialized size, comparing 
+ * the pooled representation of the Bundle with a plain bean holding its own copies of the strings. Every 
+ * string is copied before it is set, as if each inventory had been read from its own files. The synthetic bundles
+ * are kept as plain beans, so that the pool is empty when the pooled inventories are measured and holds only
+ * the strings of these inventories.
+ * Arguments: the number of bundles per inventory (default 1000) and the number of inventories (default 20)
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class BundleFootprintBenchmark {
+	private static final Logger logger = LoggerFactory.getLogger(BundleFootprintBenchmark.class);
+	private List<PlainBundle> bundles;
+	private int inventories;
+	
+	public BundleFootprintBenchmark(final int bundles, final int inventories) {
+		this.bundles = new ArrayList<PlainBundle>();
+		for(Bundle bundle: new SyntheticData().getBundles(bundles))
+			this.bundles.add(new PlainBundle(bundle));
+		this.inventories = inventories;
+	}
+	
+	public void run() throws Exception {
+		long base = usedMemory();
+		List<List<PlainBundle>> plain = new ArrayList<List<PlainBundle>>();
+		for(int i=0; i<inventories; i++)
+			plain.add(toPlain());
+		long plainHeap = usedMemory() - base;
+		int plainSize = serializedSize(plain.get(0));
+		plain = null;
+		
+		base = usedMemory();
+		logger.debug("The pool holds {} strings before the pooled inventories are built", StringPool.size());
+		List<List<Bundle>> pooled = new ArrayList<List<Bundle>>();
+		for(int i=0; i<inventories; i++)
+			pooled.add(toPooled());
+		long pooledHeap = usedMemory() - base;
+		int pooledSize = serializedSize(pooled.get(0));
+		
+		int records = bundles.size() * inventories;
+		logger.info(String.format("plain  heap %,12d bytes (%,6d per bundle), serialized %,10d bytes", plainHeap, plainHeap / records, plainSize));
+		logger.info(String.format("pooled heap %,12d bytes (%,6d per bundle), serialized %,10d bytes", pooledHeap, pooledHeap / records, pooledSize));
+		logger.debug("Retained {} inventories", pooled.size());
+	}
+	
+	private List<PlainBundle> toPlain() {
+		List<PlainBundle> ret = new ArrayList<PlainBundle>();
+		for(PlainBundle bundle: bundles)
+			ret.add(new PlainBundle(bundle));
+		return ret;
+	}
+	
+	private List<Bundle> toPooled() {
+		List<Bundle> ret = new ArrayList<Bundle>();
+		for(PlainBundle bundle: bundles) {
+			Bundle copy = new Bundle();
+			copy.setText(copy(bundle.text));
+			copy.setName(copy(bundle.name));
+			copy.setVersion(copy(bundle.version));
+			copy.setPkgName(copy(bundle.pkgName));
+			copy.setLocation(copy(bundle.location));
+			copy.setFeatureName(copy(bundle.featureName));
+			copy.setArtifactId(copy(bundle.artifactId));
+			copy.setGroupId(copy(bundle.groupId));
+			copy.setPos(bundle.pos);
+			copy.setExportPackages(copy(bundle.exportPackages));
+			copy.setImportPackages(copy(bundle.importPackages));
+			ret.add(copy);
+		}
+		return ret;
+	}
+	
+	private static String copy(final String s) {
+		return s == null ? null : new String(s.toCharArray());
+	}
+	
+	private static List<String> copy(final List<String> l) {
+		List<String> ret = new ArrayList<String>();
+		for(String s: l)
+			ret.add(copy(s));
+		return ret;
+	}
+	
+	private static int serializedSize(final Object o) throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (ObjectOutputStream os = new ObjectOutputStream(bos)) {
+			os.writeObject(o);
+		}
+		return bos.size();
+	}
+	
+	private static long usedMemory() throws Exception {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i=0; i<5; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	/**
+	 * The bundle as a plain bean
+	 */
+	private static class PlainBundle implements Serializable {
+		private static final long serialVersionUID = -2187419036233591045L;
+		private String text, name, version, pkgName, location, featureName, artifactId, groupId;
+		private List<String> exportPackages, importPackages;
+		private int pos;
+		private PlainBundle(final Bundle bundle) {
+			text = copy(bundle.getText());
+			name = copy(bundle.getName());
+			version = copy(bundle.getVersion());
+			pkgName = copy(bundle.getPkgName());
+			location = copy(bundle.getLocation());
+			featureName = copy(bundle.getFeatureName());
+			artifactId = copy(bundle.getArtifactId());
+			groupId = copy(bundle.getGroupId());
+			pos = bundle.getPos();
+			exportPackages = copy(bundle.getExportPackages());
+			importPackages = copy(bundle.getImportPackages());
+		}
+		private PlainBundle(final PlainBundle bundle) {
+			text = copy(bundle.text);
+			name = copy(bundle.name);
+			version = copy(bundle.version);
+			pkgName = copy(bundle.pkgName);
+			location = copy(bundle.location);
+			featureName = copy(bundle.featureName);
+			artifactId = copy(bundle.artifactId);
+			groupId = copy(bundle.groupId);
+			pos = bundle.pos;
+			exportPackages = copy(bundle.exportPackages);
+			importPackages = copy(bundle.importPackages);
+		}
+	}
+	
+	public static void main(final String[] args) {
+		try {
+			int bundles = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+			int inventories = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+			new BundleFootprintBenchmark(bundles, inventories).run();
+		}
+		catch(Exception e) {
+			logger.error("The benchmark has failed", e);
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.benchmark;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.maiereni.sling.util.SlingGitCloner;
+
+/**
+ * Measures the throughput of the cloner against a local set of bare repositories, without network access. The 
+ * repositories are generated in a working directory, together with an aggregator project whose default.xml lists 
+ * them, and are then cloned with 1 thread and with as many threads as processors (at least 4), without and with a 
+ * shared object store. The projects share the history of a template project, as the Sling projects share the 
+ * history of the repository they have been split from.
+ * Arguments: the working directory, the number of projects (default 50) and the number of commits per project (default 10)
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class CloneBenchmark {
+	private static final Logger logger = LoggerFactory.getLogger(CloneBenchmark.class);
+	private static final PersonIdent AUTHOR = new PersonIdent("bench", "bench@localhost", 1523750400000L, 0);
+	private File workDir, remoteDir, templateDir;
+	private int projects, commits;
+	private Random random = new Random(20180415L);
+	
+	public CloneBenchmark(final File workDir, final int projects, final int commits) {
+		this.workDir = workDir;
+		this.remoteDir = new File(workDir, "remote");
+		this.templateDir = new File(workDir, "template");
+		this.projects = projects;
+		this.commits = commits;
+	}
+	
+	/**
+	 * Generate the bare repositories of the projects and of the aggregator
+	 * @throws Exception
+	 */
+	public void generate() throws Exception {
+		FileUtils.deleteDirectory(remoteDir);
+		FileUtils.deleteDirectory(templateDir);
+		try (Git git = Git.init().setDirectory(templateDir).call()) {
+			commit(git, templateDir, "template", commits * 4);
+		}
+		StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<manifest>\n");
+		for(int i=0; i<projects; i++) {
+			String name = "sling-org-apache-sling-module" + i;
+			createRepository(name, commits, null);
+			sb.append("  <project path=\"").append(name).append("\" name=\"").append(name).append(".git\" group=\"bundles\"/>\n");
+		}
+		sb.append("</manifest>\n");
+		createRepository("sling-aggregator", 1, sb.toString());
+		logger.debug("Generated " + projects + " repositories in " + remoteDir.getPath());
+	}
+	
+	public void run() throws Exception {
+		int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+		System.setProperty(SlingGitCloner.GITHUB_URL, remoteDir.getPath());
+		run(1, false);
+		run(threads, false);
+		run(threads, true);
+	}
+	
+	private void run(final int threads, final boolean objectStore) throws Exception {
+		File cloneDir = new File(workDir, "clone-" + threads + (objectStore ? "-store" : ""));
+		File storeDir = new File(workDir, "store");
+		FileUtils.deleteDirectory(cloneDir);
+		FileUtils.deleteDirectory(storeDir);
+		System.setProperty(SlingGitCloner.GIT_HOME, cloneDir.getPath());
+		System.setProperty(SlingGitCloner.CLONE_THREADS, "" + threads);
+		if (objectStore)
+			System.setProperty(SlingGitCloner.GIT_OBJECT_STORE, storeDir.getPath());
+		else
+			System.clearProperty(SlingGitCloner.GIT_OBJECT_STORE);
+		long start = System.nanoTime();
+		new SlingGitCloner().cloneSling();
+		double time = (System.nanoTime() - start) / 1e9;
+		long size = FileUtils.sizeOfDirectory(cloneDir) + (storeDir.exists() ? FileUtils.sizeOfDirectory(storeDir) : 0);
+		logger.info(String.format("%2d threads%s: cloned %d projects in %,8.2f s, %,8.2f projects/s, %,12d bytes on disk", 
+			threads, objectStore ? ", object store" : "", projects, time, projects / time, size));
+	}
+	
+	private void createRepository(final String name, final int count, final String defaultXml) throws Exception {
+		File src = new File(workDir, "src/" + name);
+		FileUtils.deleteDirectory(src);
+		Git git = defaultXml != null ? Git.init().setDirectory(src).call() : 
+			Git.cloneRepository().setURI(templateDir.toURI().toString()).setDirectory(src).call();
+		try {
+			if (defaultXml != null) {
+				FileUtils.write(new File(src, "default.xml"), defaultXml, StandardCharsets.UTF_8);
+				git.add().addFilepattern(".").call();
+				git.commit().setMessage("Aggregator").setAuthor(AUTHOR).setCommitter(AUTHOR).call();
+			}
+			else
+				commit(git, src, name, count);
+		}
+		finally {
+			git.close();
+		}
+		Git.cloneRepository().setURI(src.toURI().toString()).setDirectory(new File(remoteDir, name + ".git")).setBare(true).call().close();
+		FileUtils.deleteDirectory(src);
+	}
+	
+	private void commit(final Git git, final File dir, final String name, final int count) throws Exception {
+		for(int i=0; i<count; i++) {
+			File f = new File(dir, "src/main/java/Module" + random.nextInt(20) + ".java");
+			FileUtils.write(f, "// revision " + i + " of " + name + "\n" + randomText(4096), StandardCharsets.UTF_8);
+			git.add().addFilepattern(".").call();
+			git.commit().setMessage("Revision " + i).setAuthor(AUTHOR).setCommitter(AUTHOR).call();
+		}
+	}
+	
+	private String randomText(final int length) {
+		StringBuilder sb = new StringBuilder(length);
+		for(int i=0; i<length; i++)
+			sb.append((char)('a' + random.nextInt(26)));
+		return sb.toString();
+	}
+	
+	public static void main(final String[] args) {
+		try {
+			File workDir = new File(args[0]);
+			int projects = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+			int commits = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+			CloneBenchmark benchmark = new CloneBenchmark(workDir, projects, commits);
+			benchmark.generate();
+			benchmark.run();
+		}
+		catch(Exception e) {
+			logger.error("The benchmark has failed", e);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A small JSON parser used to measure how fast a consumer can read the JSON output. Objects are returned 
+ * as maps, arrays as lists, numbers as longs
+ * 
+ * @author Petre Maierean
+ *
+ */
+class JsonParser {
+	private final String s;
+	private int pos;
+	
+	JsonParser(final String s) {
+		this.s = s;
+	}
+	
+	Object parse() throws Exception {
+		Object ret = readValue();
+		skipWhitespace();
+		if (pos != s.length())
+			throw new Exception("Unexpected content at " + pos);
+		return ret;
+	}
+	
+	private Object readValue() throws Exception {
+		skipWhitespace();
+		char c = s.charAt(pos);
+		Object ret = null;
+		if (c == '{') {
+			Map<String, Object> map = new HashMap<String, Object>();
+			pos++;
+			skipWhitespace();
+			if (s.charAt(pos) == '}')
+				pos++;
+			else
+				do {
+					skipWhitespace();
+					String name = readString();
+					skipWhitespace();
+					expect(':');
+					map.put(name, readValue());
+					skipWhitespace();
+				}
+				while(next(',', '}'));
+			ret = map;
+		}
+		else if (c == '[') {
+			List<Object> list = new ArrayList<Object>();
+			pos++;
+			skipWhitespace();
+			if (s.charAt(pos) == ']')
+				pos++;
+			else
+				do {
+					list.add(readValue());
+					skipWhitespace();
+				}
+				while(next(',', ']'));
+			ret = list;
+		}
+		else if (c == '"')
+			ret = readString();
+		else if (s.startsWith("true", pos)) {
+			pos += 4;
+			ret = Boolean.TRUE;
+		}
+		else if (s.startsWith("false", pos)) {
+			pos += 5;
+			ret = Boolean.FALSE;
+		}
+		else if (s.startsWith("null", pos))
+			pos += 4;
+		else {
+			int start = pos;
+			while(pos < s.length() && "-0123456789".indexOf(s.charAt(pos)) >= 0)
+				pos++;
+			ret = Long.parseLong(s.substring(start, pos));
+		}
+		return ret;
+	}
+	
+	private String readString() throws Exception {
+		expect('"');
+		StringBuilder sb = new StringBuilder();
+		char c;
+		while((c = s.charAt(pos++)) != '"') {
+			if (c == '\\') {
+				c = s.charAt(pos++);
+				switch(c) {
+				case 'n': sb.append('\n'); break;
+				case 'r': sb.append('\r'); break;
+				case 't': sb.append('\t'); break;
+				case 'u': sb.append((char)Integer.parseInt(s.substring(pos, pos + 4), 16)); pos += 4; break;
+				default: sb.append(c);
+				}
+			}
+			else
+				sb.append(c);
+		}
+		return sb.toString();
+	}
+	
+	private boolean next(final char more, final char end) throws Exception {
+		char c = s.charAt(pos++);
+		if (c == more)
+			return true;
+		if (c != end)
+			throw new Exception("Unexpected " + c + " at " + (pos - 1));
+		return false;
+	}
+	
+	private void expect(final char c) throws Exception {
+		if (s.charAt(pos) != c)
+			throw new Exception("Expected " + c + " at " + pos);
+		pos++;
+	}
+	
+	private void skipWhitespace() {
+		while(pos < s.length() && Character.isWhitespace(s.charAt(pos)))
+			pos++;
+	}
+}
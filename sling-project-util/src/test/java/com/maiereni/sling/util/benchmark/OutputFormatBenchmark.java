@@ -0,0 +1,106 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.maiereni.sling.util.BinaryDependencyTreeReader;
+import com.maiereni.sling.util.DependencyTreeWriter;
+import com.maiereni.sling.util.OutputFormat;
+import com.maiereni.sling.util.bean.DependencyTree;
+
+/**
+ * Measures the size of the dependency tree in each output format and the time it takes to write it and to read it back.
+ * Arguments: the number of bundles (default 1000) and the number of iterations (default 20)
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class OutputFormatBenchmark {
+	private static final Logger logger = LoggerFactory.getLogger(OutputFormatBenchmark.class);
+	private DependencyTree tree;
+	private int iterations;
+	
+	public OutputFormatBenchmark(final int bundles, final int iterations) {
+		this.tree = new SyntheticData().getDependencyTree(bundles);
+		this.iterations = iterations;
+	}
+	
+	public void run() throws Exception {
+		for(OutputFormat format: OutputFormat.values()) {
+			DependencyTreeWriter writer = format.newWriter();
+			byte[] content = null;
+			// warm up
+			for(int i=0; i<iterations; i++) 
+				content = write(writer);
+			long start = System.nanoTime();
+			for(int i=0; i<iterations; i++) 
+				content = write(writer);
+			long writeTime = (System.nanoTime() - start) / iterations;
+			for(int i=0; i<iterations; i++) 
+				read(format, content);
+			start = System.nanoTime();
+			for(int i=0; i<iterations; i++) 
+				read(format, content);
+			long readTime = (System.nanoTime() - start) / iterations;
+			logger.info(String.format("%-6s size %,10d bytes, write %,8.2f ms, read %,8.2f ms", 
+				format.name(), content.length, writeTime / 1e6, readTime / 1e6));
+		}
+	}
+	
+	private byte[] write(final DependencyTreeWriter writer) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		writer.write(tree, os);
+		return os.toByteArray();
+	}
+	
+	private Object read(final OutputFormat format, final byte[] content) throws Exception {
+		Object ret = null;
+		switch(format) {
+		case json:
+			ret = new JsonParser(new String(content, StandardCharsets.UTF_8)).parse();
+			break;
+		case binary:
+			ret = new BinaryDependencyTreeReader().read(new ByteArrayInputStream(content));
+			break;
+		default:
+			DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			ret = builder.parse(new ByteArrayInputStream(content));
+		}
+		return ret;
+	}
+	
+	public static void main(final String[] args) {
+		try {
+			int bundles = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+			int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+			new OutputFormatBenchmark(bundles, iterations).run();
+		}
+		catch(Exception e) {
+			logger.error("The benchmark has failed", e);
+		}
+	}
+}
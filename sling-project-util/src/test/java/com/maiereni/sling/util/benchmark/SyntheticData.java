@@ -0,0 +1,117 @@
+/**
+ * ================================================================
+ *  Copyright (c) 2017-2018 Maiereni Software and Consulting Inc
+ * ================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.maiereni.sling.util.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.maiereni.sling.util.bean.Bundle;
+import com.maiereni.sling.util.bean.BundleDependencies;
+import com.maiereni.sling.util.bean.DependencyTree;
+import com.maiereni.sling.util.bean.Dependent;
+
+/**
+ * Generates bundles and dependency trees shaped like the ones of a Sling launchpad. The generator is seeded, 
+ * so that every run of a benchmark works on the same data
+ * 
+ * @author Petre Maierean
+ *
+ */
+public class SyntheticData {
+	private static final String[] GROUPS = {"org.apache.sling", "org.apache.felix", "org.apache.jackrabbit", "org.apache.commons", "com.composum"};
+	private Random random = new Random(20180401L);
+	
+	/**
+	 * Generate a list of bundles, each exporting a few packages and importing packages of other bundles
+	 * @param count
+	 * @return
+	 */
+	public List<Bundle> getBundles(final int count) {
+		List<Bundle> ret = new ArrayList<Bundle>(count);
+		for(int i=0; i<count; i++) {
+			String groupId = GROUPS[i % GROUPS.length];
+			String artifactId = groupId + ".module" + i;
+			Bundle bundle = new Bundle();
+			bundle.setPos(i);
+			bundle.setName(artifactId);
+			bundle.setText("Apache Module " + i);
+			bundle.setGroupId(groupId);
+			bundle.setArtifactId(artifactId);
+			bundle.setVersion("1." + (i % 10) + ".0");
+			bundle.setPkgName(i % 3 == 0 ? "sling" : "");
+			bundle.setFeatureName(i % 4 == 0 ? ":boot" : "sling");
+			bundle.setLocation("/home/user/.m2/repository/" + groupId.replace('.', '/') + "/" + artifactId + "/" + bundle.getVersion() + "/" + artifactId + "-" + bundle.getVersion() + ".jar");
+			List<String> exports = new ArrayList<String>();
+			for(int j=0; j<4; j++)
+				exports.add(artifactId + ".api" + j + ";version=\"" + bundle.getVersion() + "\";uses:=\"org.osgi.framework," + artifactId + ".spi\"");
+			bundle.setExportPackages(exports);
+			List<String> imports = new ArrayList<String>();
+			if (i > 0)
+				for(int j=0; j<8; j++) {
+					int k = random.nextInt(i);
+					imports.add(GROUPS[k % GROUPS.length] + ".module" + k + ".api" + random.nextInt(4) + ";version=\"[1.0,2)\"");
+				}
+			imports.add("org.osgi.framework;version=\"[1.8,2)\"");
+			bundle.setImportPackages(imports);
+			ret.add(bundle);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Generate a dependency tree with the given number of featured bundles
+	 * @param count
+	 * @return
+	 */
+	public DependencyTree getDependencyTree(final int count) {
+		List<Bundle> bundles = getBundles(count);
+		List<BundleDependencies> featured = new ArrayList<BundleDependencies>();
+		Map<String, Bundle> exports = new HashMap<String, Bundle>();
+		for(Bundle bundle: bundles) {
+			for(String exp: bundle.getExportPackages())
+				exports.put(exp.substring(0, exp.indexOf(';')) + ":" + bundle.getVersion(), bundle);
+			List<Dependent> dependents = new ArrayList<Dependent>();
+			List<String> unresolved = new ArrayList<String>();
+			for(String imp: bundle.getImportPackages()) {
+				if (imp.startsWith("org.osgi"))
+					unresolved.add(imp);
+				else {
+					Bundle dep = bundles.get(Integer.parseInt(imp.substring(imp.indexOf(".module") + 7, imp.indexOf(".api"))));
+					Dependent dependent = new Dependent();
+					dependent.setName(dep.getName());
+					dependent.setPos(dep.getPos());
+					dependent.setTentative(true);
+					dependents.add(dependent);
+				}
+			}
+			BundleDependencies dependencies = new BundleDependencies();
+			dependencies.setBundle(bundle);
+			dependencies.setDependents(dependents);
+			dependencies.setUnresolved(unresolved);
+			featured.add(dependencies);
+		}
+		DependencyTree ret = new DependencyTree();
+		ret.setFeatured(featured);
+		ret.setExtra(new ArrayList<BundleDependencies>());
+		ret.setExports(exports);
+		return ret;
+	}
+}